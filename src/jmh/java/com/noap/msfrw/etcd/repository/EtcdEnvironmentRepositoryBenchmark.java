@@ -0,0 +1,58 @@
+package com.noap.msfrw.etcd.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.config.environment.Environment;
+
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.util.BenchmarkSupport;
+import com.noap.msfrw.etcd.util.EtcdConfigurationProperties;
+import com.noap.msfrw.etcd.util.EtcdConnector;
+
+/**
+ * Measures building an {@link Environment} with {@link EtcdEnvironmentRepository#findOne(String,
+ * String, String)}, the environment cache being disabled so that every call reads and converts the
+ * key values. Layered property sources are read with a single transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtcdEnvironmentRepositoryBenchmark {
+
+	@Param({ "100", "10000" })
+	private int keyCount;
+
+	@Param({ "false", "true" })
+	private boolean layeredSourcesEnabled;
+
+	private EtcdEnvironmentRepository repository;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.quietLogging();
+		EtcdConfigurationProperties properties = BenchmarkSupport.createProperties(500);
+		properties.setLayeredSourcesEnabled(layeredSourcesEnabled);
+		EtcdConnector connector = new EtcdConnector(null, properties, Boolean.FALSE);
+		repository = new EtcdEnvironmentRepository(connector, "benchmark", EnvironmentCache.disabled());
+		connector.setEtcdClient(BenchmarkSupport.createEtcd(keyCount).client());
+	}
+
+	@Benchmark
+	public Environment findOne() {
+		return repository.findOne(BenchmarkSupport.APPLICATION, BenchmarkSupport.PROFILE, BenchmarkSupport.LABEL);
+	}
+}
@@ -0,0 +1,73 @@
+package com.noap.msfrw.etcd.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.slf4j.LoggerFactory;
+
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Shared fixtures of the benchmarks: an {@link EtcdConnector} reading from an {@link InMemoryEtcd}
+ * populated with the keys of an application, laid out as "{profile}.{application}.{label}.{key}".
+ */
+public final class BenchmarkSupport {
+
+	public static final String APPLICATION = "app";
+	public static final String PROFILE = "dev";
+	public static final String LABEL = "master";
+	// keys of other applications, so that the ranges read are a part of the keyspace
+	private static final int OTHER_APPLICATION_KEY_COUNT = 1000;
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Creates the configuration of the connector as in application.yml, key values being read in pages
+	 * of the given size and from a single property source.
+	 */
+	public static EtcdConfigurationProperties createProperties(int rangePageSize) {
+		EtcdConfigurationProperties properties = new EtcdConfigurationProperties();
+		properties.setUrls(Collections.singletonList("localhost:2379"));
+		properties.setKeyPrefixOrder(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		properties.setRangePageSize(rangePageSize);
+		properties.setReplicaEnabled(false);
+		properties.setLayeredSourcesEnabled(false);
+		properties.setRefreshQuietWindowMillis(0L);
+		return properties;
+	}
+
+	/**
+	 * Creates an in-memory ETCD holding the given number of keys of the benchmarked application.
+	 */
+	public static InMemoryEtcd createEtcd(int keyCount) {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		String prefix = PROFILE + "." + APPLICATION + "." + LABEL + ".";
+		for (int i = 0; i < keyCount; i++) {
+			etcd.put(prefix + "property.group" + (i % 100) + ".key" + i, "value-" + i);
+		}
+		for (int i = 0; i < OTHER_APPLICATION_KEY_COUNT; i++) {
+			etcd.put(PROFILE + ".other" + (i % 10) + "." + LABEL + ".key" + i, "value-" + i);
+		}
+		return etcd;
+	}
+
+	/**
+	 * Creates a connector (without a distributed lock) reading from the in-memory ETCD.
+	 */
+	public static EtcdConnector createConnector(EtcdConfigurationProperties properties, InMemoryEtcd etcd) {
+		EtcdConnector connector = new EtcdConnector(null, properties, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+		return connector;
+	}
+
+	/**
+	 * Keeps the per event info logs out of the measurements and the benchmark output.
+	 */
+	public static void quietLogging() {
+		((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+	}
+}
@@ -0,0 +1,51 @@
+package com.noap.msfrw.etcd.util;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading the key values of an application and rewriting their keys (the search prefix being
+ * removed) through {@link EtcdConnector#getAllKeyValues(String, String, String)}, the range being read
+ * at once or in pages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtcdConnectorBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	private int keyCount;
+
+	@Param({ "0", "500" })
+	private int rangePageSize;
+
+	private EtcdConnector connector;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.quietLogging();
+		connector = BenchmarkSupport.createConnector(BenchmarkSupport.createProperties(rangePageSize),
+				BenchmarkSupport.createEtcd(keyCount));
+	}
+
+	@Benchmark
+	public Map<String, String> getAllKeyValues() {
+		return connector.getAllKeyValues(BenchmarkSupport.APPLICATION, BenchmarkSupport.PROFILE,
+				BenchmarkSupport.LABEL);
+	}
+}
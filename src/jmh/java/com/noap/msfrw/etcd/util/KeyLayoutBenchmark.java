@@ -0,0 +1,54 @@
+package com.noap.msfrw.etcd.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+
+/**
+ * Measures the key layout computations run per request and per watch event: forming the search
+ * prefix of an application and extracting the application name of a modified key with the compiled
+ * {@link KeyLayout}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyLayoutBenchmark {
+
+	private static final String MODIFIED_KEY = "dev.app.master.property.group7.key42";
+
+	private EtcdConnector connector;
+	private KeyLayout keyLayout;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.quietLogging();
+		EtcdConfigurationProperties properties = BenchmarkSupport.createProperties(0);
+		connector = BenchmarkSupport.createConnector(properties, new InMemoryEtcd());
+		keyLayout = connector.getKeyLayout();
+	}
+
+	@Benchmark
+	public String createSearchPrefixFromApplicationParameters() {
+		return connector.createSearchPrefixFromApplicationParameters(BenchmarkSupport.APPLICATION,
+				BenchmarkSupport.PROFILE, BenchmarkSupport.LABEL);
+	}
+
+	@Benchmark
+	public String applicationOf() {
+		return keyLayout.applicationOf(MODIFIED_KEY);
+	}
+}
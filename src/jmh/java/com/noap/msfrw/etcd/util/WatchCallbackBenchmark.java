@@ -0,0 +1,75 @@
+package com.noap.msfrw.etcd.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.repository.cache.CacheEvictionPolicy;
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.shaded.com.google.protobuf.ByteString;
+import io.etcd.jetcd.watch.WatchResponse;
+
+/**
+ * Measures the throughput of the watch callback: replica and cache maintenance, application name
+ * extraction and the refresh event publication of a PUT event, without a distributed lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatchCallbackBenchmark {
+
+	private EtcdConnector connector;
+	private EtcdEnvironmentRepository repository;
+	private KeyLayout keyLayout;
+	private WatchResponse response;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.quietLogging();
+		EtcdConfigurationProperties properties = BenchmarkSupport.createProperties(0);
+		InMemoryEtcd etcd = BenchmarkSupport.createEtcd(100);
+		connector = new EtcdConnector(null, properties, Boolean.FALSE);
+		repository = new EtcdEnvironmentRepository(connector, "benchmark",
+				new EnvironmentCache(true, 1000, CacheEvictionPolicy.LRU));
+		repository.setApplicationEventPublisher(event -> {
+		});
+		connector.setEtcdClient(etcd.client());
+		keyLayout = connector.getKeyLayout();
+		connector.startListening(repository);
+		KeyValue keyValue = KeyValue.newBuilder()
+				.setKey(ByteString.copyFromUtf8("dev.app.master.property.group7.key42"))
+				.setValue(ByteString.copyFromUtf8("changed")).setModRevision(etcd.getRevision() + 1).build();
+		response = new WatchResponse(io.etcd.jetcd.api.WatchResponse.newBuilder()
+				.addEvents(Event.newBuilder().setType(Event.EventType.PUT).setKv(keyValue)).build(),
+				ByteSequence.EMPTY);
+	}
+
+	@TearDown
+	public void tearDown() {
+		connector.close();
+	}
+
+	@Benchmark
+	public void runCallBackForWatchEvent() {
+		connector.runCallBackForWatchEvent(keyLayout, response, repository);
+	}
+}
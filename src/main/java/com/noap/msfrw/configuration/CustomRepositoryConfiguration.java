@@ -1,5 +1,9 @@
 package com.noap.msfrw.configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -8,11 +12,17 @@ import org.springframework.cloud.bus.BusProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.Nullable;
+import com.noap.msfrw.etcd.controller.EnvironmentResponseCacheFilter;
 import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
 import com.noap.msfrw.etcd.util.EtcdConfigurationProperties;
 import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchLifecycle;
 import com.noap.msfrw.etcd.util.watch.lock.EtcdWatchLock;
 import com.noap.msfrw.redis.util.RedisConfigurationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * <p>
@@ -31,6 +41,10 @@ import com.noap.msfrw.redis.util.RedisConfigurationProperties;
 @Configuration
 public class CustomRepositoryConfiguration {
 
+  // paths of the end points serving no environment, next to the actuator ones
+  private static final List<String> NON_ENVIRONMENT_PATHS =
+      Arrays.asList("/etcd", "/async", "/watch", "/monitor", "/encrypt", "/decrypt", "/key");
+
   private EtcdConfigurationProperties etcdProperties;
   private RedisConfigurationProperties redisProperties;
 
@@ -44,46 +58,126 @@ public class CustomRepositoryConfiguration {
    * EtcdEnvironmentRepository bean creator method.
    * @param busProperties bus properties.
    * @param etcdConnector ETCD connector utility object.
+   * @param environmentCache cache of the environments served.
+   * @param responseCache cache of the serialized environment responses.
    * @return an initialized {@link EtcdEnvironmentRepository}
    */
   @Bean
   @ConditionalOnBean(BusProperties.class)
   public EtcdEnvironmentRepository etcdEnvironmentWithBusProperties(BusProperties busProperties,
-      EtcdConnector etcdConnector) {
-    return new EtcdEnvironmentRepository(etcdConnector, busProperties.getId());
+      EtcdConnector etcdConnector, EnvironmentCache environmentCache,
+      ResponseCache responseCache) {
+    return new EtcdEnvironmentRepository(etcdConnector, busProperties.getId(), environmentCache,
+        responseCache);
   }
 
   /**
    * EtcdEnvironmentRepository bean creator method.
    * @param id spring cloud bus id injected.
    * @param etcdConnector ETCD connector utility object.
+   * @param environmentCache cache of the environments served.
+   * @param responseCache cache of the serialized environment responses.
    * @return an initialized {@link EtcdEnvironmentRepository}
    */
   @Bean
   @ConditionalOnMissingBean(BusProperties.class)
   public EtcdEnvironmentRepository etcdEnvironmentWithoutBusProperties(
-      @Value("${spring.cloud.bus.id:application}") String id, EtcdConnector etcdConnector) {
-    return new EtcdEnvironmentRepository(etcdConnector, id);
+      @Value("${spring.cloud.bus.id:application}") String id, EtcdConnector etcdConnector,
+      EnvironmentCache environmentCache, ResponseCache responseCache) {
+    return new EtcdEnvironmentRepository(etcdConnector, id, environmentCache, responseCache);
+  }
+
+  /**
+   * EtcdWatchLifecycle bean creator method.
+   * @param etcdConnector ETCD connector utility object.
+   * @param etcdEnvironmentRepository repository fed by the ETCD watcher.
+   * @return an instance of {@link EtcdWatchLifecycle} that starts and stops the ETCD watcher.
+   */
+  @Bean
+  public EtcdWatchLifecycle etcdWatchLifecycle(EtcdConnector etcdConnector,
+      EtcdEnvironmentRepository etcdEnvironmentRepository) {
+    return new EtcdWatchLifecycle(etcdConnector, etcdEnvironmentRepository);
+  }
+
+  /**
+   * EnvironmentCache bean creator method.
+   * @return an instance of {@link EnvironmentCache}, disabled if etcd.cacheEnabled is false.
+   */
+  @Bean
+  public EnvironmentCache environmentCache() {
+    return new EnvironmentCache(Boolean.TRUE.equals(etcdProperties.getCacheEnabled()),
+        etcdProperties.getCacheMaxSize(), etcdProperties.getCacheEvictionPolicy());
+  }
+
+  /**
+   * ResponseCache bean creator method.
+   * @return an instance of {@link ResponseCache}, disabled if etcd.responseCacheEnabled is false.
+   */
+  @Bean
+  public ResponseCache responseCache() {
+    return new ResponseCache(Boolean.TRUE.equals(etcdProperties.getResponseCacheEnabled()),
+        etcdProperties.getResponseCacheMaxSize(),
+        Boolean.TRUE.equals(etcdProperties.getResponseCacheGzipEnabled()));
+  }
+
+  /**
+   * EnvironmentResponseCacheFilter bean creator method.
+   * @param etcdEnvironmentRepository repository whose serialized responses are cached.
+   * @param actuatorBasePath base path of the actuator end points.
+   * @return an instance of {@link EnvironmentResponseCacheFilter}, filtering the requests other
+   *         than the ones of the actuator, ETCD, asynchronous, long polling, monitor and encryption
+   *         end points.
+   */
+  @Bean
+  public EnvironmentResponseCacheFilter environmentResponseCacheFilter(
+      EtcdEnvironmentRepository etcdEnvironmentRepository,
+      @Value("${management.endpoints.web.base-path:/actuator}") String actuatorBasePath) {
+    List<String> excludedPaths = new ArrayList<>(NON_ENVIRONMENT_PATHS);
+    if (StringUtils.isNotEmpty(actuatorBasePath) && !"/".equals(actuatorBasePath)) {
+      excludedPaths.add(actuatorBasePath);
+    }
+    return new EnvironmentResponseCacheFilter(etcdEnvironmentRepository, excludedPaths);
+  }
+
+  /**
+   * EtcdMetrics bean creator method.
+   * @param meterRegistry registry of the actuator, null if there is none.
+   * @return an instance of {@link EtcdMetrics} recording into the meter registry.
+   */
+  @Bean
+  public EtcdMetrics etcdMetrics(@Nullable MeterRegistry meterRegistry) {
+    return meterRegistry == null ? EtcdMetrics.noop() : new EtcdMetrics(meterRegistry);
   }
 
   /**
    * EtcdConnector bean creator method.
    * @param etcdWatchLock distributed lock utility placed around ETCD functionality.
-   * @return an instance of {@link EtcdConnector}
+   * @param etcdMetrics recorder of the ETCD interaction metrics.
+   * @return an instance of {@link EtcdConnector}, closed when the context is closed.
    */
-  @Bean
-  public EtcdConnector etcdConnector(@Nullable EtcdWatchLock etcdWatchLock) {
-    return new EtcdConnector(etcdWatchLock, etcdProperties,
+  @Bean(destroyMethod = "close")
+  public EtcdConnector etcdConnector(@Nullable EtcdWatchLock etcdWatchLock,
+      @Nullable EtcdMetrics etcdMetrics) {
+    EtcdConnector etcdConnector = new EtcdConnector(etcdWatchLock, etcdProperties,
         redisProperties.getDistributedLockEnabled());
+    if (etcdMetrics != null) {
+      etcdConnector.setMetrics(etcdMetrics);
+    }
+    return etcdConnector;
   }
 
   /**
    * EtcdWatchLock bean (distributed lock wrapper object using redis) creator bean.
+   * @param etcdMetrics recorder of the lock wait metrics.
    * @return an instance of {@link EtcdWatchLock}
    */
   @Bean
   @ConditionalOnProperty(prefix = "redis", name = "distributedlockEnabled", havingValue = "true")
-  public EtcdWatchLock etcdWatchLock() {
-    return new EtcdWatchLock(redisProperties);
+  public EtcdWatchLock etcdWatchLock(@Nullable EtcdMetrics etcdMetrics) {
+    EtcdWatchLock etcdWatchLock = new EtcdWatchLock(redisProperties);
+    if (etcdMetrics != null) {
+      etcdWatchLock.setMetrics(etcdMetrics);
+    }
+    return etcdWatchLock;
   }
 }
@@ -0,0 +1,54 @@
+package com.noap.msfrw.etcd.controller;
+
+import java.util.concurrent.CompletableFuture;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+
+/**
+ * A non-blocking counterpart of the Spring Cloud Config Server's environment end points.
+ * <p>
+ * Environments are served with asynchronous servlet request handling: the servlet container thread
+ * is released as soon as the ETCD request is sent and the response is written once the ETCD cluster
+ * answers. So that the number of concurrent client fetches is not capped by the size of the servlet
+ * thread pool. Clients can use it by setting their config server uri to {server}/async.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+@RestController
+@RequestMapping(path = "/async", produces = MediaType.APPLICATION_JSON_VALUE)
+public class AsyncEnvironmentController {
+
+  private EtcdEnvironmentRepository repository;
+
+  public AsyncEnvironmentController(EtcdEnvironmentRepository repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * Returns the environment of an application profile with the default label ("(_)" stands for "/"
+   * in application names, as in the Spring Cloud Config Server's end points).
+   */
+  @GetMapping(path = "/{application}/{profile}")
+  public CompletableFuture<Environment> defaultLabel(@PathVariable String application,
+      @PathVariable String profile) {
+    return repository.findOneAsync(Environment.normalize(application), profile, null);
+  }
+
+  /**
+   * Returns the environment of an application profile with a label ("(_)" stands for "/" in
+   * application names and labels).
+   */
+  @GetMapping(path = "/{application}/{profile}/{label}")
+  public CompletableFuture<Environment> labelled(@PathVariable String application,
+      @PathVariable String profile, @PathVariable String label) {
+    return repository.findOneAsync(Environment.normalize(application), profile,
+        Environment.normalize(label));
+  }
+}
@@ -0,0 +1,91 @@
+package com.noap.msfrw.etcd.controller;
+
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * A response body advice for the Spring Cloud Config Server's environment end points that exposes the
+ * ETCD revision of the environment served as an ETag.
+ * <p>
+ * The ETag is formed by the environment version (the greatest ETCD modification revision of its key
+ * values) and the number of properties served, so that it changes whenever a key is put or deleted.
+ * If the client sends a matching If-None-Match header, the response is a 304 Not Modified with no
+ * body, the environment is never serialized. Since most of the client polls do not find any change,
+ * this removes almost all payload serialization and transfer.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+@ControllerAdvice(
+    assignableTypes = {EnvironmentController.class, AsyncEnvironmentController.class})
+public class EnvironmentETagAdvice implements ResponseBodyAdvice<Object> {
+
+  private static final String WEAK_ETAG_PREFIX = "W/";
+  private static final String ANY_ETAG = "*";
+
+  @Override
+  public boolean supports(MethodParameter returnType,
+      Class<? extends HttpMessageConverter<?>> converterType) {
+    return Environment.class.isAssignableFrom(returnType.getParameterType());
+  }
+
+  @Override
+  public Object beforeBodyWrite(Object body, MethodParameter returnType,
+      MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType,
+      ServerHttpRequest request, ServerHttpResponse response) {
+    if (!(body instanceof Environment)) {
+      return body;
+    }
+    String eTag = createETag((Environment) body);
+    if (eTag == null) {
+      return body;
+    }
+    response.getHeaders().setETag(eTag);
+    if (isNotModified(request.getHeaders().getIfNoneMatch(), eTag)) {
+      response.setStatusCode(HttpStatus.NOT_MODIFIED);
+      return null; // a null body is never written by the message converters
+    }
+    return body;
+  }
+
+  /**
+   * Creates the (quoted) ETag of an environment, null if the environment has no version.
+   *
+   * @param environment environment served.
+   * @return ETag of the environment.
+   */
+  public static String createETag(Environment environment) {
+    if (StringUtils.isBlank(environment.getVersion())) {
+      return null;
+    }
+    int propertyCount = 0;
+    for (PropertySource propertySource : environment.getPropertySources()) {
+      propertyCount += propertySource.getSource().size();
+    }
+    return "\"" + environment.getVersion() + "-" + propertyCount + "\"";
+  }
+
+  private boolean isNotModified(List<String> ifNoneMatch, String eTag) {
+    for (String clientETag : ifNoneMatch) {
+      String strongClientETag = clientETag.startsWith(WEAK_ETAG_PREFIX)
+          ? clientETag.substring(WEAK_ETAG_PREFIX.length())
+          : clientETag;
+      if (ANY_ETAG.equals(strongClientETag) || eTag.equals(strongClientETag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
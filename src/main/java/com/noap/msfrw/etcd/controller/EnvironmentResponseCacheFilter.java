@@ -0,0 +1,175 @@
+package com.noap.msfrw.etcd.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.WebUtils;
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache.CachedResponse;
+
+/**
+ * A servlet filter that serves the Spring Cloud Config Server's environment end points (JSON, YAML
+ * and properties outputs) from a {@link ResponseCache} of their serialized bytes.
+ * <p>
+ * A GET request is looked up by its path, query and accepted media types. On a hit the cached
+ * bytes (or their GZIP compressed copy, if the client accepts it) are written as they are, the
+ * environment is neither looked up nor serialized. On a miss the response is captured while it is
+ * written and cached with the search prefixes of its environment, taken from the "name", "profiles"
+ * and "label" path variables of the end point. Other end points, failed responses and conditional
+ * requests (answered by {@link EnvironmentETagAdvice}) are never cached.
+ * </p>
+ * <p>
+ * Requests under the excluded paths (the end points other than the environment ones, such as the
+ * actuator and the ETCD end points) are not filtered at all, their responses are neither looked up
+ * nor captured.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EnvironmentResponseCacheFilter extends OncePerRequestFilter {
+
+  private static final String REQUEST_KEY_ATTRIBUTE =
+      EnvironmentResponseCacheFilter.class.getName() + ".REQUEST_KEY";
+  private static final String GENERATION_ATTRIBUTE =
+      EnvironmentResponseCacheFilter.class.getName() + ".GENERATION";
+  private static final String GZIP = "gzip";
+
+  private final ResponseCache responseCache;
+  private final EtcdEnvironmentRepository repository;
+  private final List<String> excludedPaths;
+  private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+  public EnvironmentResponseCacheFilter(EtcdEnvironmentRepository repository) {
+    this(repository, Collections.emptyList());
+  }
+
+  /**
+   * @param repository repository whose serialized responses are cached.
+   * @param excludedPaths paths of the end points other than the environment ones, requests under
+   *        them are not filtered.
+   */
+  public EnvironmentResponseCacheFilter(EtcdEnvironmentRepository repository,
+      List<String> excludedPaths) {
+    this.repository = repository;
+    this.responseCache = repository.getResponseCache();
+    this.excludedPaths = new ArrayList<>(excludedPaths);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !responseCache.isEnabled() || !HttpMethod.GET.matches(request.getMethod())
+        || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || isExcluded(request);
+  }
+
+  // True if the request is under one of the excluded paths.
+  private boolean isExcluded(HttpServletRequest request) {
+    String path = urlPathHelper.getPathWithinApplication(request);
+    return excludedPaths.stream().anyMatch(
+        excludedPath -> path.equals(excludedPath) || path.startsWith(excludedPath + "/"));
+  }
+
+  // the response of an asynchronous request is cached once it is written by the async dispatch
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    HttpServletResponse responseToUse = response;
+    if (!isAsyncDispatch(request)) {
+      String requestKey = createRequestKey(request);
+      CachedResponse cached = responseCache.get(requestKey);
+      if (cached != null) {
+        write(request, response, cached);
+        return;
+      }
+      request.setAttribute(REQUEST_KEY_ATTRIBUTE, requestKey);
+      request.setAttribute(GENERATION_ATTRIBUTE, responseCache.currentGeneration());
+      responseToUse = new ContentCachingResponseWrapper(response);
+    }
+    filterChain.doFilter(request, responseToUse);
+    if (!isAsyncStarted(request)) {
+      cacheResponse(request, responseToUse);
+    }
+  }
+
+  // Caches the response captured if it is a successful environment response, then writes it.
+  private void cacheResponse(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    ContentCachingResponseWrapper wrapper =
+        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+    if (wrapper == null) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, String> variables = (Map<String, String>) request
+        .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+    String requestKey = (String) request.getAttribute(REQUEST_KEY_ATTRIBUTE);
+    Long generation = (Long) request.getAttribute(GENERATION_ATTRIBUTE);
+    if (requestKey != null && generation != null && variables != null
+        && variables.containsKey("name") && variables.containsKey("profiles")
+        && wrapper.getStatus() == HttpServletResponse.SC_OK
+        && wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) == null) {
+      List<String> searchPrefixes =
+          repository.getSearchPrefixes(Environment.normalize(variables.get("name")),
+              variables.get("profiles"), Environment.normalize(variables.get("label")));
+      if (repository.isCacheable(searchPrefixes)) {
+        responseCache.put(requestKey, searchPrefixes, wrapper.getContentType(),
+            wrapper.getHeader(HttpHeaders.ETAG), wrapper.getContentAsByteArray(), generation);
+      }
+    }
+    wrapper.copyBodyToResponse();
+  }
+
+  private void write(HttpServletRequest request, HttpServletResponse response,
+      CachedResponse cached) throws IOException {
+    byte[] body = cached.getBody();
+    if (cached.getGzippedBody() != null) {
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (acceptsGzip(request)) {
+        body = cached.getGzippedBody();
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+      }
+    }
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(cached.getContentType());
+    if (cached.getETag() != null) {
+      response.setHeader(HttpHeaders.ETAG, cached.getETag());
+    }
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+  }
+
+  // The response depends on the path (application, profile, label and output format), the query
+  // (e.g. resolvePlaceholders) and the accepted media types.
+  private static String createRequestKey(HttpServletRequest request) {
+    StringBuilder requestKey = new StringBuilder(request.getRequestURI());
+    if (request.getQueryString() != null) {
+      requestKey.append('?').append(request.getQueryString());
+    }
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    return requestKey.append(' ').append(accept == null ? "" : accept).toString();
+  }
+}
@@ -1,13 +1,28 @@
 package com.noap.msfrw.etcd.controller;
 
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.EtcdException;
+import com.noap.msfrw.etcd.util.bulk.EtcdBulkWriteResult;
+import com.noap.msfrw.etcd.util.bulk.KeyValueDocumentParser;
+import com.noap.msfrw.etcd.util.bulk.KeyValueDocumentParser.DocumentFormat;
 
 /**
  * A controller that controls end points to alter the ETCD cluster this spring cloud config server is connecting to.
@@ -23,9 +38,11 @@ public class Etcd3Controller {
 
   private static final Logger logger = LoggerFactory.getLogger(Etcd3Controller.class);
   private EtcdConnector etcdConnector;
+  private KeyValueDocumentParser documentParser;
 
-  public Etcd3Controller(EtcdConnector etcdConnector) {
+  public Etcd3Controller(EtcdConnector etcdConnector, ObjectMapper objectMapper) {
     this.etcdConnector = etcdConnector;
+    this.documentParser = new KeyValueDocumentParser(objectMapper);
   }
 
   /**
@@ -34,12 +51,55 @@ public class Etcd3Controller {
    * 
    * @param key key to add.
    * @param value value to add.
-   * @return true if key value is added with success.
+   * @return true if key value is added with success, the request thread is released until then.
    */
   @ResponseBody
   @GetMapping(path = "/add/{key}/{value}")
-  public Boolean addKeyValue(@PathVariable String key, @PathVariable String value) {
+  public CompletableFuture<Boolean> addKeyValue(@PathVariable String key,
+      @PathVariable String value) {
     logger.info("A key: {} value: {} pair is being added to ETCD store", key, value);
-    return etcdConnector.addKeyValue(key, value);
+    return etcdConnector.addKeyValueAsync(key, value);
+  }
+
+  /**
+   * Adds or replaces all key value pairs of a JSON, YAML or .properties document streamed in the
+   * request body. Keys are written in chunks, each chunk with a single ETCD transaction, so that a
+   * whole application configuration lands in a few round trips and a few revisions.
+   *
+   * @param document request body.
+   * @param contentType format of the document: application/json, application/x-yaml (or text/yaml),
+   *        text/plain (or text/x-java-properties).
+   * @param prefix prefix put in front of each key (e.g. "dev.sample."), optional.
+   * @param chunkSize maximum number of keys written by a transaction.
+   * @return results of the chunks and the write throughput.
+   * @throws ResponseStatusException with 400 (bad request) if the document can not be parsed.
+   */
+  @ResponseBody
+  @PostMapping(path = "/bulk")
+  public EtcdBulkWriteResult addKeyValues(InputStream document,
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+      @RequestParam(required = false) String prefix,
+      @RequestParam(defaultValue = "128") int chunkSize) {
+    DocumentFormat format = resolveDocumentFormat(contentType);
+    Map<String, String> keyValues;
+    try {
+      keyValues = documentParser.parse(document, format, prefix);
+    } catch (EtcdException ee) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ee.getMessage(), ee);
+    }
+    logger.info("{} key value pairs are being added to ETCD store in chunks of {}",
+        keyValues.size(), chunkSize);
+    return etcdConnector.addKeyValues(keyValues, chunkSize);
+  }
+
+  // Resolves the document format from the request content type, properties if it is not known.
+  private DocumentFormat resolveDocumentFormat(String contentType) {
+    String type = StringUtils.defaultString(contentType).toLowerCase();
+    if (type.contains("json")) {
+      return DocumentFormat.JSON;
+    } else if (type.contains("yaml") || type.contains("yml")) {
+      return DocumentFormat.YAML;
+    }
+    return DocumentFormat.PROPERTIES;
   }
 }
@@ -0,0 +1,110 @@
+package com.noap.msfrw.etcd.controller;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import com.noap.msfrw.etcd.repository.EnvironmentChangeListeners;
+import com.noap.msfrw.etcd.repository.EnvironmentChangeListeners.Listener;
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.EtcdConfigurationProperties;
+
+/**
+ * Long polling end points that wait for the next change of an environment, so that clients catch
+ * the changes a missed refresh event announces without polling on a timer.
+ * <p>
+ * A client passes the revision of the environment it has last seen (the environment version). If
+ * the environment is at another revision already, it is returned right away. Otherwise the
+ * request is held open asynchronously, without a servlet thread, until the ETCD watcher sees a
+ * change of one of its keys after that revision, then the changed environment is returned. If no
+ * change is seen within the timeout, the response is a 304 Not Modified and the client polls again.
+ * </p>
+ * <p>
+ * Changes of an environment outside the watched prefixes (etcd.watchPrefixes) are not seen, a
+ * request for it is held until the timeout. Such an environment is not cached, so the next poll
+ * reads it from the ETCD cluster and returns it right away if it has changed.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+@RestController
+@RequestMapping(path = "/watch", produces = MediaType.APPLICATION_JSON_VALUE)
+public class LongPollEnvironmentController {
+
+  private static final long DEFAULT_TIMEOUT_MILLIS = 30000L;
+
+  private EtcdEnvironmentRepository repository;
+  private long maxTimeoutMillis;
+
+  public LongPollEnvironmentController(EtcdEnvironmentRepository repository,
+      EtcdConfigurationProperties etcdConfigurationProperties) {
+    this.repository = repository;
+    Long configured = etcdConfigurationProperties.getLongPollTimeoutMillis();
+    this.maxTimeoutMillis =
+        configured == null || configured <= 0 ? DEFAULT_TIMEOUT_MILLIS : configured;
+  }
+
+  /**
+   * Waits for a change of the environment of an application profile with the default label.
+   *
+   * @param revision revision of the environment last seen by the client.
+   * @param timeoutMillis time to wait for a change, capped by etcd.longPollTimeoutMillis.
+   */
+  @GetMapping(path = "/{application}/{profile}")
+  public DeferredResult<ResponseEntity<Environment>> defaultLabel(@PathVariable String application,
+      @PathVariable String profile, @RequestParam long revision,
+      @RequestParam(required = false) Long timeoutMillis) {
+    return waitForChange(application, profile, null, revision, timeoutMillis);
+  }
+
+  /**
+   * Waits for a change of the environment of an application profile with a label ("(_)" stands for
+   * "/" in labels).
+   *
+   * @param revision revision of the environment last seen by the client.
+   * @param timeoutMillis time to wait for a change, capped by etcd.longPollTimeoutMillis.
+   */
+  @GetMapping(path = "/{application}/{profile}/{label}")
+  public DeferredResult<ResponseEntity<Environment>> labelled(@PathVariable String application,
+      @PathVariable String profile, @PathVariable String label, @RequestParam long revision,
+      @RequestParam(required = false) Long timeoutMillis) {
+    return waitForChange(application, profile, Environment.normalize(label), revision,
+        timeoutMillis);
+  }
+
+  // The listener is registered before the environment is read, so that a change made in between
+  // is either read or notified.
+  private DeferredResult<ResponseEntity<Environment>> waitForChange(String application,
+      String profile, String label, long revision, Long timeoutMillis) {
+    long timeout = timeoutMillis == null || timeoutMillis <= 0 ? maxTimeoutMillis
+        : Math.min(timeoutMillis, maxTimeoutMillis);
+    DeferredResult<ResponseEntity<Environment>> result =
+        new DeferredResult<>(timeout, ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+    EnvironmentChangeListeners changeListeners = repository.getChangeListeners();
+    Listener listener =
+        changeListeners.register(repository.getSearchPrefixes(application, profile, label),
+            revision, () -> respond(result, application, profile, label, null));
+    result.onCompletion(() -> changeListeners.remove(listener));
+    respond(result, application, profile, label, String.valueOf(revision));
+    return result;
+  }
+
+  // Reads the environment and responds with it, unless it is still at the unchanged revision.
+  private void respond(DeferredResult<ResponseEntity<Environment>> result, String application,
+      String profile, String label, String unchangedRevision) {
+    repository.findOneAsync(application, profile, label).whenComplete((environment, error) -> {
+      if (error != null) {
+        result.setErrorResult(error);
+      } else if (!environment.getVersion().equals(unchangedRevision)) {
+        result.setResult(ResponseEntity.ok(environment));
+      }
+    });
+  }
+}
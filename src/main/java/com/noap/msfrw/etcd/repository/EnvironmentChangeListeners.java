@@ -0,0 +1,113 @@
+package com.noap.msfrw.etcd.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listeners waiting for the next change of an environment, e.g. the long polling requests held
+ * open until the ETCD watcher sees a change of a key they depend on.
+ * <p>
+ * A listener is registered with the search prefixes of its environment and the revision its client
+ * has last seen. It is notified once, by the first change of a key under one of its prefixes made
+ * after that revision, and removed. Changes at or before the revision (e.g. watch events delivered
+ * with a lag) are ignored, the client has already seen them. Listeners are notified on the watcher
+ * thread, so they are expected to hand their work off rather than block.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EnvironmentChangeListeners {
+
+  /**
+   * Revision to notify a change with when the revision of the change is not known (e.g. the
+   * keyspace is resynced), all matching listeners are notified.
+   */
+  public static final long UNKNOWN_REVISION = Long.MAX_VALUE;
+
+  private static final Logger logger = LoggerFactory.getLogger(EnvironmentChangeListeners.class);
+
+  private final Set<Listener> listeners = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Registers a listener to be notified once of the next change of an environment.
+   *
+   * @param searchPrefixes ETCD key prefixes the environment's key values are read with.
+   * @param revision revision of the environment last seen, only later changes are notified.
+   * @param onChange run once a change is notified.
+   * @return the listener registered, to be removed once it is not needed anymore.
+   */
+  public Listener register(Collection<String> searchPrefixes, long revision, Runnable onChange) {
+    Listener listener = new Listener(new ArrayList<>(searchPrefixes), revision, onChange);
+    listeners.add(listener);
+    return listener;
+  }
+
+  public void remove(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Notifies the listeners that a modified ETCD key belongs to.
+   *
+   * @param modifiedKey the ETCD key that is put or deleted, null to notify all listeners.
+   * @param revision revision of the change, {@link #UNKNOWN_REVISION} if it is not known.
+   * @return number of listeners notified.
+   */
+  public int notifyChanged(String modifiedKey, long revision) {
+    int notified = 0;
+    for (Listener listener : listeners) {
+      if (revision > listener.revision
+          && (modifiedKey == null || listener.isReadWith(modifiedKey))
+          && listener.notified.compareAndSet(false, true)) {
+        listeners.remove(listener);
+        notified++;
+        try {
+          listener.onChange.run();
+        } catch (RuntimeException e) {
+          logger.error("An exception occurred while notifying the change of key: {}, detail is: {}",
+              modifiedKey, ExceptionUtils.getStackTrace(e));
+        }
+      }
+    }
+    return notified;
+  }
+
+  public int size() {
+    return listeners.size();
+  }
+
+  /**
+   * A listener waiting for the next change of an environment.
+   */
+  public static final class Listener {
+
+    private final List<String> searchPrefixes;
+    private final long revision;
+    private final Runnable onChange;
+    private final AtomicBoolean notified = new AtomicBoolean();
+
+    private Listener(List<String> searchPrefixes, long revision, Runnable onChange) {
+      this.searchPrefixes = searchPrefixes;
+      this.revision = revision;
+      this.onChange = onChange;
+    }
+
+    // true if the key is in one of the ranges the environment is read from
+    private boolean isReadWith(String key) {
+      for (String searchPrefix : searchPrefixes) {
+        if (key.startsWith(searchPrefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -1,8 +1,18 @@
 package com.noap.msfrw.etcd.repository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.bus.event.PathDestinationFactory;
@@ -12,10 +22,26 @@ import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.util.StringUtils;
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
 import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.EtcdKeyValues;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchLifecycle;
 
 /**
- * A custom EnvironmentRepository for that uses an ETCD Cluster as the property data resource.
+ * A custom EnvironmentRepository for that uses an ETCD Cluster as the property data resource. The
+ * ETCD watcher feeding it is started and stopped by {@link EtcdWatchLifecycle}.
+ * <p>
+ * Concurrent lookups of the same (application, profile, label) environment share a single ETCD
+ * read, e.g. the instances of a service fetching their environment at once after a refresh event.
+ * A lookup made after a key change never joins a read started before it.
+ * </p>
+ * <p>
+ * An environment read (with serializable reads) from an ETCD member that has not applied a change
+ * the watcher has already evicted the caches for, is returned but never cached, so that it is not
+ * served until the next change of its keys.
+ * </p>
  * 
  * @author Umut
  **/
@@ -23,16 +49,39 @@ public class EtcdEnvironmentRepository
     implements EnvironmentRepository, ApplicationEventPublisherAware {
 
   private static final Logger logger = LoggerFactory.getLogger(EtcdEnvironmentRepository.class);
+  private static final String SHARED_APPLICATION = "application";
+  private static final String DEFAULT_PROFILE = "default";
+  private static final String PROPERTY_SOURCE_NAME_PREFIX = "etcd:";
   private String busId;
   private ApplicationEventPublisher applicationEventPublisher;
   private EtcdConnector connector;
+  private EnvironmentCache environmentCache;
+  private ResponseCache responseCache;
+  private final ConcurrentMap<List<Object>, CompletableFuture<Environment>> inFlightLoads =
+      new ConcurrentHashMap<>();
+  // increased on every key change, so that a load started before a change is not joined after it
+  private final AtomicLong changeGeneration = new AtomicLong();
+  // greatest ETCD revision of the changes the caches are evicted for
+  private final AtomicLong evictedRevision = new AtomicLong();
+  private final AtomicLong collapsedCount = new AtomicLong();
+  private final EnvironmentChangeListeners changeListeners = new EnvironmentChangeListeners();
 
   public EtcdEnvironmentRepository(EtcdConnector connector, String busId) {
+    this(connector, busId, EnvironmentCache.disabled());
+  }
+
+  public EtcdEnvironmentRepository(EtcdConnector connector, String busId,
+      EnvironmentCache environmentCache) {
+    this(connector, busId, environmentCache, ResponseCache.disabled());
+  }
+
+  public EtcdEnvironmentRepository(EtcdConnector connector, String busId,
+      EnvironmentCache environmentCache, ResponseCache responseCache) {
     this.busId = busId;
     this.connector = connector;
+    this.environmentCache = environmentCache;
+    this.responseCache = responseCache;
     connector.connect(null, null, null, null);
-    logger.info("Starting listening to the ETCD cluster...");
-    connector.startListening(this);
   }
 
   /**
@@ -52,17 +101,284 @@ public class EtcdEnvironmentRepository
 	  return applicationEventPublisher;
   }
 
+  /**
+   * Getter for the environment cache, mostly for monitoring its hit and miss counters.
+   * @return environmentCache.
+   */
+  public EnvironmentCache getEnvironmentCache() {
+    return environmentCache;
+  }
+
+  /**
+   * Getter for the cache of the serialized environment responses, invalidated along with the
+   * environment cache.
+   * @return responseCache.
+   */
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Getter for the listeners waiting for the next change of an environment, notified by the ETCD
+   * watcher.
+   * @return changeListeners.
+   */
+  public EnvironmentChangeListeners getChangeListeners() {
+    return changeListeners;
+  }
+
+  /**
+   * Number of lookups served by joining a read of the same environment in flight.
+   * @return collapsedCount.
+   */
+  public long getCollapsedCount() {
+    return collapsedCount.get();
+  }
+
   /**
    * Initializes the key values retrieved from ETCD store and make them available through the application.
+   * The greatest ETCD modification revision of the key values is set as the environment version.
    */
   @Override
   public Environment findOne(String application, String profile, String label) {
+    Environment cached = environmentCache.get(application, profile, label);
+    if (cached != null) {
+      return cached;
+    }
+    List<Object> loadKey = Arrays.asList(application, profile, label, changeGeneration.get());
+    CompletableFuture<Environment> load = new CompletableFuture<>();
+    CompletableFuture<Environment> inFlight = inFlightLoads.putIfAbsent(loadKey, load);
+    if (inFlight != null) {
+      collapsedCount.incrementAndGet();
+      try {
+        return copyOf(inFlight.join());
+      } catch (CompletionException ce) {
+        throw ce.getCause() instanceof RuntimeException ? (RuntimeException) ce.getCause() : ce;
+      }
+    }
+    try {
+      load.complete(loadEnvironment(application, profile, label));
+    } catch (RuntimeException e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightLoads.remove(loadKey, load);
+    }
+    return copyOf(load.join());
+  }
+
+  // Reads the key values of an environment from the ETCD cluster.
+  private Environment loadEnvironment(String application, String profile, String label) {
+    long loadGeneration = environmentCache.currentGeneration();
+    if (connector.isLayeredSourcesEnabled() || isMultiProfile(profile)) {
+      Map<String, String> layers = createLayers(application, profile, label);
+      List<EtcdKeyValues> layerKeyValues =
+          connector.getLayeredKeyValues(new ArrayList<>(layers.keySet()));
+      return createLayeredEnvironment(application, profile, label, layers, layerKeyValues,
+          loadGeneration);
+    }
+    EtcdKeyValues keyValues = connector.getKeyValues(application, profile, label);
+    return createEnvironment(application, profile, label, keyValues, loadGeneration);
+  }
+
+  /**
+   * Non-blocking version of {@link #findOne(String, String, String)}, the calling thread does not
+   * wait for the ETCD round trips.
+   * @return a future of the environment.
+   */
+  public CompletableFuture<Environment> findOneAsync(String application, String profile,
+      String label) {
+    Environment cached = environmentCache.get(application, profile, label);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    List<Object> loadKey = Arrays.asList(application, profile, label, changeGeneration.get());
+    CompletableFuture<Environment> load = new CompletableFuture<>();
+    CompletableFuture<Environment> inFlight = inFlightLoads.putIfAbsent(loadKey, load);
+    if (inFlight != null) {
+      collapsedCount.incrementAndGet();
+      return inFlight.thenApply(EtcdEnvironmentRepository::copyOf);
+    }
+    try {
+      loadEnvironmentAsync(application, profile, label).whenComplete((environment, error) -> {
+        inFlightLoads.remove(loadKey, load);
+        if (error != null) {
+          load.completeExceptionally(error);
+        } else {
+          load.complete(environment);
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlightLoads.remove(loadKey, load);
+      load.completeExceptionally(e);
+    }
+    return load.thenApply(EtcdEnvironmentRepository::copyOf);
+  }
+
+  // Non-blocking version of loadEnvironment.
+  private CompletableFuture<Environment> loadEnvironmentAsync(String application, String profile,
+      String label) {
+    long loadGeneration = environmentCache.currentGeneration();
+    if (connector.isLayeredSourcesEnabled() || isMultiProfile(profile)) {
+      Map<String, String> layers = createLayers(application, profile, label);
+      return connector.getLayeredKeyValuesAsync(new ArrayList<>(layers.keySet()))
+          .thenApply(layerKeyValues -> createLayeredEnvironment(application, profile, label,
+              layers, layerKeyValues, loadGeneration));
+    }
+    return connector.getKeyValuesAsync(application, profile, label).thenApply(
+        keyValues -> createEnvironment(application, profile, label, keyValues, loadGeneration));
+  }
+
+  /**
+   * Returns the ETCD key prefixes the key values of an environment are read with, one per property
+   * source layer, a change of a key under any of them changes the environment.
+   * @return search prefixes of the environment.
+   */
+  public List<String> getSearchPrefixes(String application, String profile, String label) {
+    if (connector.isLayeredSourcesEnabled() || isMultiProfile(profile)) {
+      return new ArrayList<>(createLayers(application, profile, label).keySet());
+    }
+    return Collections.singletonList(
+        connector.createSearchPrefixFromApplicationParameters(application, profile, label));
+  }
+
+  /**
+   * True if an environment read with the given search prefixes may be cached, a change of any key
+   * under them is watched and evicts it (see {@link EtcdConnector#isWatched(List)}).
+   */
+  public boolean isCacheable(List<String> searchPrefixes) {
+    return connector.isWatched(searchPrefixes);
+  }
+
+  // Creates the environment of the key values read and caches it.
+  private Environment createEnvironment(String application, String profile, String label,
+      EtcdKeyValues keyValues, long loadGeneration) {
+    Environment environment = new Environment(application, profile);
+    environment.add(new PropertySource("mapPropertySource", keyValues.getKeyValues()));
+    environment.setVersion(String.valueOf(keyValues.getRevision()));
+    String searchPrefix =
+        connector.createSearchPrefixFromApplicationParameters(application, profile, label);
+    if (isReadAfterEvictions(keyValues.getReadRevision()) && environmentCache.isEnabled()
+        && isCacheable(Collections.singletonList(searchPrefix))) {
+      environmentCache.put(application, profile, label, searchPrefix, environment,
+          loadGeneration);
+    }
+    return environment;
+  }
+
+  // Returns the search prefixes of the property source layers mapped to their property source names,
+  // in precedence order: {application}-{profile}, application-{profile}, {application}-default,
+  // application-default. For comma separated profiles (e.g. "prod,eu-west") the profile layers are
+  // repeated per profile, the last profile having the highest precedence as in Spring Cloud Config.
+  // Shared layers are only added if layered sources are enabled. Layers resolving to the same search
+  // prefix are read once.
+  private Map<String, String> createLayers(String application, String profile, String label) {
+    List<String> layerProfiles = new ArrayList<>();
+    String[] profiles = StringUtils.commaDelimitedListToStringArray(profile);
+    for (int i = profiles.length - 1; i >= 0; i--) {
+      if (StringUtils.hasText(profiles[i])) {
+        layerProfiles.add(profiles[i].trim());
+      }
+    }
+    if (layerProfiles.isEmpty()) {
+      layerProfiles.add(profile);
+    }
+    String[] layerApplications = new String[] {application};
+    if (connector.isLayeredSourcesEnabled()) {
+      layerProfiles.add(DEFAULT_PROFILE);
+      layerApplications = new String[] {application, SHARED_APPLICATION};
+    }
+    Map<String, String> layers = new LinkedHashMap<>();
+    for (String layerProfile : layerProfiles) {
+      for (String layerApplication : layerApplications) {
+        String searchPrefix = connector.createSearchPrefixFromApplicationParameters(
+            layerApplication, layerProfile, label);
+        layers.putIfAbsent(searchPrefix,
+            PROPERTY_SOURCE_NAME_PREFIX + layerApplication + "-" + layerProfile);
+      }
+    }
+    return layers;
+  }
+
+  private boolean isMultiProfile(String profile) {
+    return profile != null && profile.indexOf(',') >= 0;
+  }
+
+  // Creates the environment of the layers read, most specific layer first, and caches it.
+  private Environment createLayeredEnvironment(String application, String profile, String label,
+      Map<String, String> layers, List<EtcdKeyValues> layerKeyValues, long loadGeneration) {
     Environment environment = new Environment(application, profile);
-    environment.add(new PropertySource("mapPropertySource",
-        connector.getAllKeyValues(application, profile, label)));
+    long revision = 0L;
+    long readRevision = 0L; // all layers are read with one transaction, at one revision
+    int layerIndex = 0;
+    for (String propertySourceName : layers.values()) {
+      EtcdKeyValues keyValues = layerKeyValues.get(layerIndex++);
+      revision = Math.max(revision, keyValues.getRevision());
+      readRevision = Math.max(readRevision, keyValues.getReadRevision());
+      if (keyValues.size() > 0) {
+        environment.add(new PropertySource(propertySourceName, keyValues.getKeyValues()));
+      }
+    }
+    environment.setVersion(String.valueOf(revision));
+    if (isReadAfterEvictions(readRevision) && environmentCache.isEnabled()
+        && isCacheable(new ArrayList<>(layers.keySet()))) {
+      environmentCache.put(application, profile, label, layers.keySet(), environment,
+          loadGeneration);
+    }
     return environment;
   }
 
+  // True if key values read at the given revision (0 if not known) reflect all the changes the
+  // caches are evicted for. Otherwise the serialized responses in progress are not cached either.
+  private boolean isReadAfterEvictions(long readRevision) {
+    if (readRevision > 0L && readRevision < evictedRevision.get()) {
+      responseCache.discardPending();
+      logger.debug("Key values read at revision: {} are behind the evicted revision: {}",
+          readRevision, evictedRevision.get());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Evicts the cached environments and serialized responses that a modified (put or deleted) ETCD
+   * key belongs to, and notifies the listeners waiting for a change of them. Called by the ETCD
+   * watcher when the revision of the change is not known, e.g. on a resync.
+   * @param modifiedKey the ETCD key modified, null for all keys.
+   */
+  public void evictCachedEnvironments(String modifiedKey) {
+    evictCachedEnvironments(modifiedKey, EnvironmentChangeListeners.UNKNOWN_REVISION);
+  }
+
+  /**
+   * Evicts the cached environments and serialized responses that a modified (put or deleted) ETCD
+   * key belongs to, and notifies the listeners waiting for a change of them. Called by the ETCD
+   * watcher.
+   * @param modifiedKey the ETCD key modified.
+   * @param revision ETCD revision of the modification.
+   */
+  public void evictCachedEnvironments(String modifiedKey, long revision) {
+    if (revision != EnvironmentChangeListeners.UNKNOWN_REVISION) {
+      evictedRevision.accumulateAndGet(revision, Math::max);
+    }
+    changeGeneration.incrementAndGet();
+    int evicted = environmentCache.invalidate(modifiedKey);
+    evicted += responseCache.invalidate(modifiedKey);
+    if (evicted > 0) {
+      logger.debug("{} cached environment(s) and response(s) evicted for the modified key: {}",
+          evicted, modifiedKey);
+    }
+    changeListeners.notifyChanged(modifiedKey, revision);
+  }
+
+  // Environment is mutable, each caller of a shared load gets its own copy sharing the immutable
+  // property sources.
+  private static Environment copyOf(Environment environment) {
+    Environment copy = new Environment(environment);
+    copy.addAll(environment.getPropertySources());
+    return copy;
+  }
+
   // Below code taken from spring cloud monitor project...
   public void publishEventByPath(String... registeredClientAppLicationPaths) {
     if (registeredClientAppLicationPaths != null && this.applicationEventPublisher != null) {
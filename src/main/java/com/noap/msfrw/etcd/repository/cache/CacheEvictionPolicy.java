@@ -0,0 +1,17 @@
+package com.noap.msfrw.etcd.repository.cache;
+
+/**
+ * Enumerator for the eviction policies supported by the {@link EnvironmentCache} when it reaches
+ * its maximum size.
+ * <ul>
+ * <li><b>LRU:</b> the least recently used environment is evicted first.</li>
+ * <li><b>LFU:</b> the least frequently used environment is evicted first, ties are broken by
+ * recency.</li>
+ * </ul>
+ *
+ * @author UMUT
+ *
+ */
+public enum CacheEvictionPolicy {
+  LRU, LFU
+}
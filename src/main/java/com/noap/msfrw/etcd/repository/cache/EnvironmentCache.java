@@ -0,0 +1,289 @@
+package com.noap.msfrw.etcd.repository.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.config.environment.Environment;
+
+/**
+ * A bounded in-memory cache of the {@link Environment} objects built by the ETCD environment
+ * repository, keyed by application, profile and label.
+ * <p>
+ * Each entry remembers the ETCD search prefixes its key values were read with. The ETCD watcher
+ * invalidates the entries precisely: a modified key only evicts the environments having a search
+ * prefix the key starts with. A generation counter is increased on every invalidation so that an
+ * environment loaded concurrently with a change is never put back into the cache as a stale entry.
+ * </p>
+ * <p>
+ * When the cache reaches its maximum size an entry is evicted using the configured
+ * {@link CacheEvictionPolicy}. Hit, miss and eviction counters are kept for monitoring purposes.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EnvironmentCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(EnvironmentCache.class);
+
+  private final boolean enabled;
+  private final int maxSize;
+  private final CacheEvictionPolicy evictionPolicy;
+  // access ordered, so that the eldest entry is always the least recently used one
+  private final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong invalidationCount = new AtomicLong();
+
+  public EnvironmentCache(boolean enabled, int maxSize, CacheEvictionPolicy evictionPolicy) {
+    this.enabled = enabled && maxSize > 0;
+    this.maxSize = maxSize;
+    this.evictionPolicy = evictionPolicy == null ? CacheEvictionPolicy.LRU : evictionPolicy;
+  }
+
+  /**
+   * Creates a cache instance that never holds any environment.
+   *
+   * @return a disabled {@link EnvironmentCache}
+   */
+  public static EnvironmentCache disabled() {
+    return new EnvironmentCache(false, 0, CacheEvictionPolicy.LRU);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the current invalidation generation. Read it before loading an environment and pass it
+   * to {@link #put(String, String, String, String, Environment, long)} afterwards.
+   *
+   * @return current invalidation generation.
+   */
+  public long currentGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Returns a copy of the cached environment, null if there is no cached environment.
+   *
+   * @param application application name.
+   * @param profile profile name.
+   * @param label label name.
+   * @return cached environment or null.
+   */
+  public Environment get(String application, String profile, String label) {
+    if (!enabled) {
+      return null;
+    }
+    CacheEntry entry;
+    synchronized (entries) {
+      entry = entries.get(new CacheKey(application, profile, label));
+      if (entry != null) {
+        entry.frequency++;
+      }
+    }
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return copyOf(entry.environment);
+  }
+
+  /**
+   * Caches an environment if no invalidation occurred since the given generation is read.
+   *
+   * @param application application name.
+   * @param profile profile name.
+   * @param label label name.
+   * @param searchPrefix ETCD key prefix the environment's key values were read with.
+   * @param environment environment to cache.
+   * @param loadGeneration generation read before the environment was loaded.
+   * @return true if the environment is cached.
+   */
+  public boolean put(String application, String profile, String label, String searchPrefix,
+      Environment environment, long loadGeneration) {
+    return put(application, profile, label,
+        Collections.singletonList(searchPrefix == null ? "" : searchPrefix), environment,
+        loadGeneration);
+  }
+
+  /**
+   * Caches an environment whose key values were read with several search prefixes (e.g. one per
+   * property source layer) if no invalidation occurred since the given generation is read.
+   *
+   * @param application application name.
+   * @param profile profile name.
+   * @param label label name.
+   * @param searchPrefixes ETCD key prefixes the environment's key values were read with.
+   * @param environment environment to cache.
+   * @param loadGeneration generation read before the environment was loaded.
+   * @return true if the environment is cached.
+   */
+  public boolean put(String application, String profile, String label,
+      Collection<String> searchPrefixes, Environment environment, long loadGeneration) {
+    if (!enabled || environment == null) {
+      return false;
+    }
+    synchronized (entries) {
+      if (generation.get() != loadGeneration) {
+        logger.debug("Environment of {}/{}/{} is changed while loading, skipped caching",
+            application, profile, label);
+        return false;
+      }
+      CacheKey key = new CacheKey(application, profile, label);
+      if (!entries.containsKey(key) && entries.size() >= maxSize) {
+        evictOne();
+      }
+      entries.put(key, new CacheEntry(new ArrayList<>(searchPrefixes), copyOf(environment)));
+    }
+    return true;
+  }
+
+  /**
+   * Evicts all cached environments that the modified ETCD key belongs to.
+   *
+   * @param modifiedKey the ETCD key that is put or deleted.
+   * @return number of evicted environments.
+   */
+  public int invalidate(String modifiedKey) {
+    if (!enabled) {
+      return 0;
+    }
+    int removed = 0;
+    synchronized (entries) {
+      generation.incrementAndGet();
+      Iterator<CacheEntry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        CacheEntry entry = iterator.next();
+        if (modifiedKey == null || entry.isReadWith(modifiedKey)) {
+          iterator.remove();
+          removed++;
+        }
+      }
+    }
+    invalidationCount.addAndGet(removed);
+    return removed;
+  }
+
+  /**
+   * Evicts all cached environments.
+   */
+  public void invalidateAll() {
+    invalidate(null);
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  // Removes one entry according to the eviction policy, must be called while holding the lock.
+  private void evictOne() {
+    Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+    if (!iterator.hasNext()) {
+      return;
+    }
+    CacheKey victim = iterator.next().getKey();
+    if (CacheEvictionPolicy.LFU.equals(evictionPolicy)) {
+      // iteration is from the least to the most recently used, so ties are broken by recency
+      long minFrequency = Long.MAX_VALUE;
+      for (Map.Entry<CacheKey, CacheEntry> candidate : entries.entrySet()) {
+        if (candidate.getValue().frequency < minFrequency) {
+          minFrequency = candidate.getValue().frequency;
+          victim = candidate.getKey();
+        }
+      }
+    }
+    entries.remove(victim);
+    evictionCount.incrementAndGet();
+  }
+
+  // Environment is mutable, callers get their own copy sharing the immutable property sources.
+  private static Environment copyOf(Environment environment) {
+    Environment copy = new Environment(environment);
+    copy.addAll(environment.getPropertySources());
+    return copy;
+  }
+
+  private static final class CacheKey {
+
+    private final String application;
+    private final String profile;
+    private final String label;
+
+    private CacheKey(String application, String profile, String label) {
+      this.application = application;
+      this.profile = profile;
+      this.label = label;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) other;
+      return Objects.equals(application, that.application) && Objects.equals(profile, that.profile)
+          && Objects.equals(label, that.label);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(application, profile, label);
+    }
+  }
+
+  private static final class CacheEntry {
+
+    private final List<String> searchPrefixes;
+    private final Environment environment;
+    private long frequency;
+
+    private CacheEntry(List<String> searchPrefixes, Environment environment) {
+      this.searchPrefixes = searchPrefixes;
+      this.environment = environment;
+    }
+
+    // true if the key is in one of the ranges the environment is read from
+    private boolean isReadWith(String key) {
+      for (String searchPrefix : searchPrefixes) {
+        if (key.startsWith(searchPrefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.noap.msfrw.etcd.repository.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded in-memory LRU cache of the serialized environment responses (JSON, YAML, properties),
+ * keyed by the request (path, query and accepted media types), so that a hot end point writes the
+ * bytes it has already written instead of serializing the environment again.
+ * <p>
+ * Like the {@link EnvironmentCache}, each entry remembers the ETCD search prefixes of its
+ * environment and the ETCD watcher invalidates the entries a modified key belongs to, so that an
+ * entry always holds the bytes of the current revision of its environment. A generation counter is
+ * increased on every invalidation so that a response serialized concurrently with a change is never
+ * cached. If enabled, a GZIP compressed copy of the bytes is kept as well, for the clients
+ * accepting a compressed response.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class ResponseCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+  private final boolean enabled;
+  private final int maxSize;
+  private final boolean gzipEnabled;
+  // access ordered, so that the eldest entry is always the least recently used one
+  private final LinkedHashMap<String, CachedResponse> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong invalidationCount = new AtomicLong();
+
+  public ResponseCache(boolean enabled, int maxSize, boolean gzipEnabled) {
+    this.enabled = enabled && maxSize > 0;
+    this.maxSize = maxSize;
+    this.gzipEnabled = gzipEnabled;
+  }
+
+  /**
+   * Creates a cache instance that never holds any response.
+   *
+   * @return a disabled {@link ResponseCache}
+   */
+  public static ResponseCache disabled() {
+    return new ResponseCache(false, 0, false);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
+  /**
+   * Returns the current invalidation generation. Read it before serializing a response and pass it
+   * to {@link #put(String, Collection, String, String, byte[], long)} afterwards.
+   *
+   * @return current invalidation generation.
+   */
+  public long currentGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Makes the responses being serialized not to be cached, e.g. since the environment they are
+   * serialized from is found to be stale.
+   */
+  public void discardPending() {
+    synchronized (entries) {
+      generation.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the cached response of a request, null if there is no cached response.
+   *
+   * @param requestKey key of the request, formed by everything the response depends on.
+   * @return cached response or null.
+   */
+  public CachedResponse get(String requestKey) {
+    if (!enabled) {
+      return null;
+    }
+    CachedResponse response;
+    synchronized (entries) {
+      response = entries.get(requestKey);
+    }
+    if (response == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return response;
+  }
+
+  /**
+   * Caches a serialized response if no invalidation occurred since the given generation is read.
+   *
+   * @param requestKey key of the request, formed by everything the response depends on.
+   * @param searchPrefixes ETCD key prefixes the environment's key values were read with.
+   * @param contentType content type of the response.
+   * @param eTag ETag of the response, null if it has none.
+   * @param body serialized response.
+   * @param loadGeneration generation read before the response was serialized.
+   * @return true if the response is cached.
+   */
+  public boolean put(String requestKey, Collection<String> searchPrefixes, String contentType,
+      String eTag, byte[] body, long loadGeneration) {
+    if (!enabled) {
+      return false;
+    }
+    // compressed out of the lock, the generation check below drops it if it is stale
+    CachedResponse response = new CachedResponse(new ArrayList<>(searchPrefixes), contentType, eTag,
+        body, gzipEnabled ? gzip(body) : null);
+    synchronized (entries) {
+      if (generation.get() != loadGeneration) {
+        logger.debug("Response of {} is changed while serializing, skipped caching", requestKey);
+        return false;
+      }
+      if (!entries.containsKey(requestKey) && entries.size() >= maxSize) {
+        Iterator<String> eldest = entries.keySet().iterator();
+        eldest.next();
+        eldest.remove();
+      }
+      entries.put(requestKey, response);
+    }
+    return true;
+  }
+
+  /**
+   * Evicts all cached responses that the modified ETCD key belongs to.
+   *
+   * @param modifiedKey the ETCD key that is put or deleted, null to evict all.
+   * @return number of evicted responses.
+   */
+  public int invalidate(String modifiedKey) {
+    if (!enabled) {
+      return 0;
+    }
+    int removed = 0;
+    synchronized (entries) {
+      generation.incrementAndGet();
+      Iterator<CachedResponse> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        if (modifiedKey == null || iterator.next().isReadWith(modifiedKey)) {
+          iterator.remove();
+          removed++;
+        }
+      }
+    }
+    invalidationCount.addAndGet(removed);
+    return removed;
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  private static byte[] gzip(byte[] body) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return compressed.toByteArray();
+  }
+
+  /**
+   * A serialized response, its bytes are never modified once cached.
+   */
+  public static final class CachedResponse {
+
+    private final List<String> searchPrefixes;
+    private final String contentType;
+    private final String eTag;
+    private final byte[] body;
+    private final byte[] gzippedBody;
+
+    private CachedResponse(List<String> searchPrefixes, String contentType, String eTag,
+        byte[] body, byte[] gzippedBody) {
+      this.searchPrefixes = searchPrefixes;
+      this.contentType = contentType;
+      this.eTag = eTag;
+      this.body = body;
+      this.gzippedBody = gzippedBody;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public String getETag() {
+      return eTag;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    /**
+     * Returns the GZIP compressed body, null if GZIP is not enabled.
+     */
+    public byte[] getGzippedBody() {
+      return gzippedBody;
+    }
+
+    // true if the key is in one of the ranges the environment is read from
+    private boolean isReadWith(String key) {
+      for (String searchPrefix : searchPrefixes) {
+        if (key.startsWith(searchPrefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -5,9 +5,87 @@ import java.util.ArrayList;
 import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import com.noap.msfrw.etcd.repository.cache.CacheEvictionPolicy;
 
 /**
  * ETCD Configuration Property Set Holder.
+ * <p>
+ * Property Declerations:
+ * <ul>
+ * <li><b>keyDelimiter:</b> single character delimiting the key prefix segments, "." by default
+ * (e.g. "/" for keys like dev/sample/master/spring.datasource.url)</li>
+ * <li><b>keyEscapeCharacter:</b> single character that escapes a delimiter within a key prefix
+ * segment (e.g. "\" for dev.my\.app.master.key), empty for no escaping</li>
+ * <li><b>cacheEnabled:</b> if true, environments served are cached in memory until the ETCD watcher
+ * detects a change on one of their keys</li>
+ * <li><b>cacheMaxSize:</b> maximum number of (application, profile, label) environments cached</li>
+ * <li><b>cacheEvictionPolicy:</b> LRU or LFU, policy used when the cache reaches its maximum
+ * size</li>
+ * <li><b>replicaEnabled:</b> if true, the whole keyspace is loaded once at startup and kept current
+ * by the ETCD watcher, so that key values are read from memory instead of the ETCD cluster</li>
+ * <li><b>rangePageSize:</b> maximum number of keys read from the ETCD cluster with a single range
+ * request, larger ranges are read in pages pinned to the same revision. 0 reads a range at once</li>
+ * <li><b>watchReconnectInitialBackoffMillis:</b> wait time before resuming a broken ETCD watch, it is
+ * doubled after each failed attempt</li>
+ * <li><b>watchReconnectMaxBackoffMillis:</b> maximum wait time between the watch resume attempts</li>
+ * <li><b>refreshQuietWindowMillis:</b> refresh events of the changed applications are published once
+ * no key change is observed for this long, so that a bulk edit triggers a single refresh per
+ * application. 0 publishes a refresh event for each key change</li>
+ * <li><b>refreshMaxDelayMillis:</b> maximum time a refresh event is held back by the quiet window</li>
+ * <li><b>layeredSourcesEnabled:</b> if true, an environment is served as layered property sources
+ * in the precedence order of Spring Cloud Config: {application}-{profile}, application-{profile}
+ * (shared by all applications), {application}-default, application-default, read with a single
+ * transaction that is not paged by rangePageSize. Otherwise (the default) only the keys of the
+ * requested application and profile are served as a single property source</li>
+ * <li><b>watchQueueCapacity:</b> maximum number of watch responses waiting to be processed, if it is
+ * exceeded the responses are dropped and the keyspace is resynced</li>
+ * <li><b>watchPrefixes:</b> key prefixes watched for changes (e.g. "dev." and "prod." for the
+ * profiles in use), empty to watch the whole keyspace. Changes of the keys under no prefix listed
+ * neither refresh the applications nor update the environment cache. The replica then holds only
+ * the keys under the prefixes listed, the other keys are read from the ETCD cluster</li>
+ * <li><b>watchShardCount:</b> number of shards the watched prefixes are spread over, each shard
+ * having its own watch streams, response queue and processing thread, so that a burst of changes
+ * under one prefix does not delay the changes under the others</li>
+ * <li><b>watchNoDelete:</b> if true, the ETCD cluster does not send the DELETE events, for key
+ * spaces whose keys are never deleted while the config server runs</li>
+ * <li><b>watchPrevKv:</b> if true, the ETCD cluster sends the previous value of a changed key, so
+ * that a PUT writing the value a key already has publishes no refresh event</li>
+ * <li><b>snapshotPath:</b> file the replica keyspace is persisted to with its revision, so that a
+ * restart serves the last known key values right away and catches up through the watch, even while
+ * the ETCD cluster is unreachable. Only used if replicaEnabled is true, empty disables it</li>
+ * <li><b>snapshotWriteDelayMillis:</b> time the snapshot file is written after a replica change, so
+ * that a burst of changes results in a single write</li>
+ * <li><b>leaderElectionEnabled:</b> if true, the config server instances elect a single refresh
+ * publisher through the ETCD Election API and only the leader publishes refresh events, instead of
+ * racing for a Redis lock per key change. Takes precedence over redis.distributedlockEnabled</li>
+ * <li><b>leaderElectionName:</b> name of the election, shared by the instances of a cluster</li>
+ * <li><b>leaderLeaseTtlSeconds:</b> TTL of the lease the leadership is held with, the time a new
+ * leader is elected after the leader dies</li>
+ * <li><b>readConsistency:</b> LINEARIZABLE or SERIALIZABLE, consistency of the key value reads.
+ * Serializable reads are served by any member of the cluster instead of the leader, possibly a few
+ * revisions behind it</li>
+ * <li><b>readClientPoolEnabled:</b> if true, key value reads are spread over a pool of clients, one
+ * pinned to each ETCD url, preferring the endpoints answering faster. Only useful with serializable
+ * reads, a linearizable read is forwarded to the leader anyway</li>
+ * <li><b>valueCompressionThresholdBytes:</b> values written of at least this many bytes are stored
+ * GZIP compressed with a "gz:" marker, 0 stores values as they are. Compressed values are always
+ * decoded on read, whatever this setting is</li>
+ * <li><b>valueChunkSizeBytes:</b> values written larger than this (after compression) are split
+ * over chunk keys of this size, to stay below the request size limit of ETCD, 0 stores each value
+ * as a single key</li>
+ * <li><b>decodedValueCacheSize:</b> maximum number of decoded (decompressed or assembled from
+ * chunks) values cached by their modification revision, so that an unchanged value is decoded
+ * once</li>
+ * <li><b>responseCacheEnabled:</b> if true, the serialized environment responses (JSON, YAML and
+ * properties outputs) are cached until the ETCD watcher detects a change on one of their keys, so
+ * that a hot end point is served without serializing the environment again</li>
+ * <li><b>responseCacheMaxSize:</b> maximum number of serialized responses cached</li>
+ * <li><b>responseCacheGzipEnabled:</b> if true, a GZIP compressed copy of each cached response is
+ * kept and served to the clients accepting it</li>
+ * <li><b>longPollTimeoutMillis:</b> maximum time a long polling request (/watch/{application}/
+ * {profile}) is held open waiting for a change of its environment, before a 304 is returned</li>
+ * </ul>
+ * </p>
  * 
  * @author UMUT
  *
@@ -21,6 +99,37 @@ public class EtcdConfigurationProperties {
   private List<String> urls = new ArrayList<>();
   private List<KeyPrefix> keyPrefixOrder = new ArrayList<>();
   private Boolean httpsEnabled = false;
+  private String keyDelimiter = "."; // default
+  private String keyEscapeCharacter = ""; // default
+  private Boolean cacheEnabled = true; // default
+  private Integer cacheMaxSize = 1000; // default
+  private CacheEvictionPolicy cacheEvictionPolicy = CacheEvictionPolicy.LRU; // default
+  private Boolean replicaEnabled = false; // default
+  private Integer rangePageSize = 500; // default
+  private Long watchReconnectInitialBackoffMillis = 500L; // default
+  private Long watchReconnectMaxBackoffMillis = 30000L; // default
+  private Long refreshQuietWindowMillis = 200L; // default
+  private Long refreshMaxDelayMillis = 2000L; // default
+  private Integer watchQueueCapacity = 1024; // default
+  private Boolean layeredSourcesEnabled = false; // default
+  private List<String> watchPrefixes = new ArrayList<>();
+  private Integer watchShardCount = 1; // default
+  private Boolean watchNoDelete = false; // default
+  private Boolean watchPrevKv = false; // default
+  private String snapshotPath;
+  private Long snapshotWriteDelayMillis = 5000L; // default
+  private Boolean leaderElectionEnabled = false; // default
+  private String leaderElectionName = "spring-cloud-config-server/refresh-publisher"; // default
+  private Long leaderLeaseTtlSeconds = 10L; // default
+  private ReadConsistency readConsistency = ReadConsistency.LINEARIZABLE; // default
+  private Boolean readClientPoolEnabled = false; // default
+  private Integer valueCompressionThresholdBytes = 0; // default
+  private Integer valueChunkSizeBytes = 0; // default
+  private Integer decodedValueCacheSize = 256; // default
+  private Boolean responseCacheEnabled = true; // default
+  private Integer responseCacheMaxSize = 1000; // default
+  private Boolean responseCacheGzipEnabled = false; // default
+  private Long longPollTimeoutMillis = 30000L; // default
 
   public List<String> getUrls() {
     return urls;
@@ -56,4 +165,252 @@ public class EtcdConfigurationProperties {
   public void setKeyPrefixOrder(List<KeyPrefix> keyPrefixOrder) {
     this.keyPrefixOrder = keyPrefixOrder;
   }
+
+  public Boolean getCacheEnabled() {
+    return cacheEnabled;
+  }
+
+  public void setCacheEnabled(Boolean cacheEnabled) {
+    this.cacheEnabled = cacheEnabled;
+  }
+
+  public Integer getCacheMaxSize() {
+    return cacheMaxSize;
+  }
+
+  public void setCacheMaxSize(Integer cacheMaxSize) {
+    this.cacheMaxSize = cacheMaxSize;
+  }
+
+  public CacheEvictionPolicy getCacheEvictionPolicy() {
+    return cacheEvictionPolicy;
+  }
+
+  public void setCacheEvictionPolicy(CacheEvictionPolicy cacheEvictionPolicy) {
+    this.cacheEvictionPolicy = cacheEvictionPolicy;
+  }
+
+  public Boolean getReplicaEnabled() {
+    return replicaEnabled;
+  }
+
+  public void setReplicaEnabled(Boolean replicaEnabled) {
+    this.replicaEnabled = replicaEnabled;
+  }
+
+  public Integer getRangePageSize() {
+    return rangePageSize;
+  }
+
+  public void setRangePageSize(Integer rangePageSize) {
+    this.rangePageSize = rangePageSize;
+  }
+
+  public Long getWatchReconnectInitialBackoffMillis() {
+    return watchReconnectInitialBackoffMillis;
+  }
+
+  public void setWatchReconnectInitialBackoffMillis(Long watchReconnectInitialBackoffMillis) {
+    this.watchReconnectInitialBackoffMillis = watchReconnectInitialBackoffMillis;
+  }
+
+  public Long getWatchReconnectMaxBackoffMillis() {
+    return watchReconnectMaxBackoffMillis;
+  }
+
+  public void setWatchReconnectMaxBackoffMillis(Long watchReconnectMaxBackoffMillis) {
+    this.watchReconnectMaxBackoffMillis = watchReconnectMaxBackoffMillis;
+  }
+
+  public Long getRefreshQuietWindowMillis() {
+    return refreshQuietWindowMillis;
+  }
+
+  public void setRefreshQuietWindowMillis(Long refreshQuietWindowMillis) {
+    this.refreshQuietWindowMillis = refreshQuietWindowMillis;
+  }
+
+  public Long getRefreshMaxDelayMillis() {
+    return refreshMaxDelayMillis;
+  }
+
+  public void setRefreshMaxDelayMillis(Long refreshMaxDelayMillis) {
+    this.refreshMaxDelayMillis = refreshMaxDelayMillis;
+  }
+
+  public Integer getWatchQueueCapacity() {
+    return watchQueueCapacity;
+  }
+
+  public void setWatchQueueCapacity(Integer watchQueueCapacity) {
+    this.watchQueueCapacity = watchQueueCapacity;
+  }
+
+  public Boolean getLayeredSourcesEnabled() {
+    return layeredSourcesEnabled;
+  }
+
+  public void setLayeredSourcesEnabled(Boolean layeredSourcesEnabled) {
+    this.layeredSourcesEnabled = layeredSourcesEnabled;
+  }
+
+  public String getSnapshotPath() {
+    return snapshotPath;
+  }
+
+  public void setSnapshotPath(String snapshotPath) {
+    this.snapshotPath = snapshotPath;
+  }
+
+  public Long getSnapshotWriteDelayMillis() {
+    return snapshotWriteDelayMillis;
+  }
+
+  public void setSnapshotWriteDelayMillis(Long snapshotWriteDelayMillis) {
+    this.snapshotWriteDelayMillis = snapshotWriteDelayMillis;
+  }
+
+  public Boolean getLeaderElectionEnabled() {
+    return leaderElectionEnabled;
+  }
+
+  public void setLeaderElectionEnabled(Boolean leaderElectionEnabled) {
+    this.leaderElectionEnabled = leaderElectionEnabled;
+  }
+
+  public String getLeaderElectionName() {
+    return leaderElectionName;
+  }
+
+  public void setLeaderElectionName(String leaderElectionName) {
+    this.leaderElectionName = leaderElectionName;
+  }
+
+  public Long getLeaderLeaseTtlSeconds() {
+    return leaderLeaseTtlSeconds;
+  }
+
+  public void setLeaderLeaseTtlSeconds(Long leaderLeaseTtlSeconds) {
+    this.leaderLeaseTtlSeconds = leaderLeaseTtlSeconds;
+  }
+
+  public String getKeyDelimiter() {
+    return keyDelimiter;
+  }
+
+  public void setKeyDelimiter(String keyDelimiter) {
+    this.keyDelimiter = keyDelimiter;
+  }
+
+  public String getKeyEscapeCharacter() {
+    return keyEscapeCharacter;
+  }
+
+  public void setKeyEscapeCharacter(String keyEscapeCharacter) {
+    this.keyEscapeCharacter = keyEscapeCharacter;
+  }
+
+  public ReadConsistency getReadConsistency() {
+    return readConsistency;
+  }
+
+  public void setReadConsistency(ReadConsistency readConsistency) {
+    this.readConsistency = readConsistency;
+  }
+
+  public Boolean getReadClientPoolEnabled() {
+    return readClientPoolEnabled;
+  }
+
+  public void setReadClientPoolEnabled(Boolean readClientPoolEnabled) {
+    this.readClientPoolEnabled = readClientPoolEnabled;
+  }
+
+  public List<String> getWatchPrefixes() {
+    return watchPrefixes;
+  }
+
+  public void setWatchPrefixes(List<String> watchPrefixes) {
+    this.watchPrefixes = watchPrefixes;
+  }
+
+  public Integer getWatchShardCount() {
+    return watchShardCount;
+  }
+
+  public void setWatchShardCount(Integer watchShardCount) {
+    this.watchShardCount = watchShardCount;
+  }
+
+  public Boolean getWatchNoDelete() {
+    return watchNoDelete;
+  }
+
+  public void setWatchNoDelete(Boolean watchNoDelete) {
+    this.watchNoDelete = watchNoDelete;
+  }
+
+  public Boolean getWatchPrevKv() {
+    return watchPrevKv;
+  }
+
+  public void setWatchPrevKv(Boolean watchPrevKv) {
+    this.watchPrevKv = watchPrevKv;
+  }
+
+  public Integer getValueCompressionThresholdBytes() {
+    return valueCompressionThresholdBytes;
+  }
+
+  public void setValueCompressionThresholdBytes(Integer valueCompressionThresholdBytes) {
+    this.valueCompressionThresholdBytes = valueCompressionThresholdBytes;
+  }
+
+  public Integer getValueChunkSizeBytes() {
+    return valueChunkSizeBytes;
+  }
+
+  public void setValueChunkSizeBytes(Integer valueChunkSizeBytes) {
+    this.valueChunkSizeBytes = valueChunkSizeBytes;
+  }
+
+  public Integer getDecodedValueCacheSize() {
+    return decodedValueCacheSize;
+  }
+
+  public void setDecodedValueCacheSize(Integer decodedValueCacheSize) {
+    this.decodedValueCacheSize = decodedValueCacheSize;
+  }
+
+  public Boolean getResponseCacheEnabled() {
+    return responseCacheEnabled;
+  }
+
+  public void setResponseCacheEnabled(Boolean responseCacheEnabled) {
+    this.responseCacheEnabled = responseCacheEnabled;
+  }
+
+  public Integer getResponseCacheMaxSize() {
+    return responseCacheMaxSize;
+  }
+
+  public void setResponseCacheMaxSize(Integer responseCacheMaxSize) {
+    this.responseCacheMaxSize = responseCacheMaxSize;
+  }
+
+  public Boolean getResponseCacheGzipEnabled() {
+    return responseCacheGzipEnabled;
+  }
+
+  public void setResponseCacheGzipEnabled(Boolean responseCacheGzipEnabled) {
+    this.responseCacheGzipEnabled = responseCacheGzipEnabled;
+  }
+
+  public Long getLongPollTimeoutMillis() {
+    return longPollTimeoutMillis;
+  }
+
+  public void setLongPollTimeoutMillis(Long longPollTimeoutMillis) {
+    this.longPollTimeoutMillis = longPollTimeoutMillis;
+  }
 }
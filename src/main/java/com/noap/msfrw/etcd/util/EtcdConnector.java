@@ -1,33 +1,62 @@
 package com.noap.msfrw.etcd.util;
 
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.Nullable;
-import org.springframework.util.CollectionUtils;
 import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.bulk.EtcdBulkWriteResult;
+import com.noap.msfrw.etcd.util.bulk.EtcdBulkWriteResult.ChunkResult;
+import com.noap.msfrw.etcd.util.codec.EtcdValueCodec;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+import com.noap.msfrw.etcd.util.pool.EtcdReadClientPool;
+import com.noap.msfrw.etcd.util.replica.EtcdKeyspaceReplica;
+import com.noap.msfrw.etcd.util.replica.KeyspaceSnapshot;
+import com.noap.msfrw.etcd.util.replica.KeyspaceSnapshotFile;
+import com.noap.msfrw.etcd.util.replica.KeyspaceSnapshotWriter;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchShard;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchSupervisor;
+import com.noap.msfrw.etcd.util.watch.RefreshCoalescer;
+import com.noap.msfrw.etcd.util.watch.election.EtcdLeaderElection;
+import com.noap.msfrw.etcd.util.watch.election.FollowerRefreshBacklog;
 import com.noap.msfrw.etcd.util.watch.lock.EtcdWatchLock;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
 import io.etcd.jetcd.ClientBuilder;
+import io.etcd.jetcd.KV;
 import io.etcd.jetcd.KeyValue;
-import io.etcd.jetcd.Watch.Watcher;
+import io.etcd.jetcd.Response;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.common.exception.ErrorCode;
 import io.etcd.jetcd.kv.GetResponse;
-import io.etcd.jetcd.kv.PutResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Op;
 import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.GetOption.Builder;
-import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.options.OptionsUtil;
 import io.etcd.jetcd.watch.WatchEvent;
 import io.etcd.jetcd.watch.WatchEvent.EventType;
 import io.etcd.jetcd.watch.WatchResponse;
@@ -41,20 +70,87 @@ import io.etcd.jetcd.watch.WatchResponse;
 public class EtcdConnector {
 
   private static final Logger logger = LoggerFactory.getLogger(EtcdConnector.class);
+  private static final ByteSequence KEY_SUCCESSOR_SUFFIX = ByteSequence.from(new byte[] {0});
+  private static final long DEFAULT_WATCH_RECONNECT_INITIAL_BACKOFF_MILLIS = 500L;
+  private static final long DEFAULT_WATCH_RECONNECT_MAX_BACKOFF_MILLIS = 30000L;
+  private static final int DEFAULT_WATCH_QUEUE_CAPACITY = 1024;
+  private static final int DEFAULT_TXN_CHUNK_SIZE = 128;
+  private static final int MAX_TXN_OPERATIONS = 128;
+  private static final long DEFAULT_SNAPSHOT_WRITE_DELAY_MILLIS = 5000L;
+  private static final long SNAPSHOT_REVISION_CHECK_TIMEOUT_MILLIS = 2000L;
+  private static final String DEFAULT_LEADER_ELECTION_NAME =
+      "spring-cloud-config-server/refresh-publisher";
+  private static final long DEFAULT_LEADER_LEASE_TTL_SECONDS = 10L;
+  private static final int DEFAULT_DECODED_VALUE_CACHE_SIZE = 256;
+  private static final String READ_MODE_SINGLE = "single";
+  private static final String READ_MODE_PAGED = "paged";
+  private static final String READ_MODE_TXN = "txn";
+  private static final String READ_MODE_REPLICA = "replica";
+  private static final String WRITE_OPERATION_PUT = "put";
+  private static final String WRITE_OPERATION_TXN = "txn";
 
   private String[] etcdUrls;
   private Client etcdClient;
-  private boolean isListening = false;
+  private EtcdReadClientPool readClientPool;
+  private volatile boolean isListening = false;
   private EtcdWatchLock etcdWatchLock;
   private Boolean watchLockEnabled;
   private EtcdConfigurationProperties etcdConfigurationProperties;
+  private EtcdKeyspaceReplica keyspaceReplica;
+  private volatile List<String> replicaPrefixes = new ArrayList<>();
+  private EtcdValueCodec valueCodec;
+  private ByteSequence electionKeyPrefix;
+  private volatile KeyLayout keyLayout;
+  private KeyspaceSnapshotFile snapshotFile;
+  private KeyspaceSnapshotWriter snapshotWriter;
+  private RefreshCoalescer refreshCoalescer;
+  private EtcdLeaderElection leaderElection;
+  private FollowerRefreshBacklog followerRefreshBacklog;
+  private volatile List<EtcdWatchShard> watchShards;
+  private EtcdMetrics metrics = EtcdMetrics.noop();
 
   public Client getEtcdClient() {
     return etcdClient;
   }
 
+  /**
+   * Sets the client of the ETCD cluster, the client it replaces (the one built by
+   * {@link #connect(String, String, Long, Long)} for instance) is closed.
+   */
   public void setEtcdClient(Client etcdClient) {
+    Client replaced = this.etcdClient;
     this.etcdClient = etcdClient;
+    if (replaced != null && replaced != etcdClient) {
+      replaced.close();
+    }
+  }
+
+  /**
+   * Returns the key layout compiled from the current key prefix order, delimiter and escape
+   * character properties. It is compiled again only if one of them is changed.
+   */
+  public KeyLayout getKeyLayout() {
+    List<KeyPrefix> keyPrefixOrder = etcdConfigurationProperties.getKeyPrefixOrder();
+    String delimiter = etcdConfigurationProperties.getKeyDelimiter();
+    String escape = etcdConfigurationProperties.getKeyEscapeCharacter();
+    KeyLayout layout = keyLayout;
+    if (layout == null || !layout.isCompiledFrom(keyPrefixOrder, delimiter, escape)) {
+      layout = KeyLayout.of(keyPrefixOrder, delimiter, escape);
+      keyLayout = layout;
+    }
+    return layout;
+  }
+
+  public EtcdKeyspaceReplica getKeyspaceReplica() {
+    return keyspaceReplica;
+  }
+
+  public EtcdMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(EtcdMetrics metrics) {
+    this.metrics = metrics;
   }
 
   public EtcdConnector(@Nullable EtcdWatchLock etcdWatchLock,
@@ -63,6 +159,21 @@ public class EtcdConnector {
     this.etcdConfigurationProperties = etcdConfigurationProperties;
     this.etcdWatchLock = etcdWatchLock;
     this.watchLockEnabled = watchLockEnabled;
+    Integer decodedValueCacheSize = etcdConfigurationProperties.getDecodedValueCacheSize();
+    this.valueCodec = new EtcdValueCodec(
+        getBytes(etcdConfigurationProperties.getValueCompressionThresholdBytes()),
+        getBytes(etcdConfigurationProperties.getValueChunkSizeBytes()),
+        decodedValueCacheSize == null ? DEFAULT_DECODED_VALUE_CACHE_SIZE : decodedValueCacheSize);
+    this.electionKeyPrefix =
+        ByteSequence.from(getLeaderElectionName() + "/", StandardCharsets.UTF_8);
+    KeyLayout layout = getKeyLayout();
+    this.keyspaceReplica =
+        new EtcdKeyspaceReplica(layout.getSegmentCount(), layout.getDelimiter());
+    if (Boolean.TRUE.equals(etcdConfigurationProperties.getReplicaEnabled())
+        && StringUtils.isNotBlank(etcdConfigurationProperties.getSnapshotPath())) {
+      this.snapshotFile =
+          new KeyspaceSnapshotFile(Paths.get(etcdConfigurationProperties.getSnapshotPath()));
+    }
   }
 
   /**
@@ -76,6 +187,23 @@ public class EtcdConnector {
    */
   public boolean connect(String username, String pssword, Long keepAliveTimeInSeconds,
       Long keepAliveTimeoutInSeconds) {
+    etcdClient = createClientBuilder(username, pssword, keepAliveTimeInSeconds,
+        keepAliveTimeoutInSeconds).endpoints(etcdUrls).build();
+    if (Boolean.TRUE.equals(etcdConfigurationProperties.getReadClientPoolEnabled())
+        && etcdUrls.length > 1) {
+      Map<String, Client> readClients = new LinkedHashMap<>();
+      for (String etcdUrl : etcdUrls) {
+        readClients.put(etcdUrl, createClientBuilder(username, pssword, keepAliveTimeInSeconds,
+            keepAliveTimeoutInSeconds).endpoints(etcdUrl).build());
+      }
+      readClientPool = new EtcdReadClientPool(readClients);
+    }
+    return true;
+  }
+
+  // Builder of a client with the given credentials and keep alive settings, endpoints not set yet.
+  private ClientBuilder createClientBuilder(String username, String pssword,
+      Long keepAliveTimeInSeconds, Long keepAliveTimeoutInSeconds) {
     ClientBuilder builder = Client.builder();
     if (StringUtils.isNotEmpty(username)) {
       ByteSequence userNameByteSeq = ByteSequence.from(username.getBytes());
@@ -91,8 +219,15 @@ public class EtcdConnector {
     if (keepAliveTimeoutInSeconds != null) {
       builder = builder.keepaliveTimeout(Duration.ofSeconds(keepAliveTimeoutInSeconds));
     }
-    etcdClient = builder.endpoints(etcdUrls).build();
-    return true;
+    return builder;
+  }
+
+  public EtcdReadClientPool getReadClientPool() {
+    return readClientPool;
+  }
+
+  public void setReadClientPool(EtcdReadClientPool readClientPool) {
+    this.readClientPool = readClientPool;
   }
 
   /**
@@ -101,26 +236,69 @@ public class EtcdConnector {
    * @return map of key value pairs stored.
    */
   public Map<String, String> getAllKeyValues(String application, String profile, String label) {
+    return getKeyValues(application, profile, label).getKeyValues();
+  }
 
-    checkConnection();
+  /**
+   * Returns all key values stored in the ETCD cluster connected together with their greatest
+   * modification revision.
+   *
+   * @return key value pairs stored and their revision.
+   */
+  public EtcdKeyValues getKeyValues(String application, String profile, String label) {
 
-    Map<String, String> keyValueMap = new ConcurrentHashMap<>();
+    long start = System.nanoTime();
     String searchKeyPrefix =
         createSearchPrefixFromApplicationParameters(application, profile, label);
-    String replaceablePrefix = searchKeyPrefix;
+    if (isReplicaServing(searchKeyPrefix)) {
+      return recordRangeRead(READ_MODE_REPLICA, start,
+          keyspaceReplica.getKeyValues(searchKeyPrefix));
+    }
+
+    checkConnection();
+
+    Map<String, String> keyValueMap = new ConcurrentHashMap<>();
+    int replaceablePrefixLength = searchKeyPrefix.getBytes(StandardCharsets.UTF_8).length;
+    AtomicLong maxModRevision = new AtomicLong();
+    int pageSize = getRangePageSize();
+    if (pageSize > 0) {
+      ByteSequence startKey;
+      ByteSequence endKey;
+      if (StringUtils.isNoneBlank(searchKeyPrefix)) {
+        startKey = ByteSequence.from(searchKeyPrefix.getBytes());
+        endKey = OptionsUtil.prefixEndOf(startKey);
+      } else {
+        startKey = ByteSequence.from("\0".getBytes());
+        endKey = startKey;
+      }
+      // pages are fed straight into the property map, no full range response is ever held
+      long readRevision = read(kvClient -> CompletableFuture.completedFuture(
+          readRangeInPages(kvClient, isSerializableRead(), startKey, endKey, pageSize, 0L, kv -> {
+            putDecodedValue(keyValueMap,
+                KeyLayout.stripPrefix(kv.getKey(), replaceablePrefixLength), kv);
+            maxModRevision.accumulateAndGet(kv.getModRevision(), Math::max);
+          }))).join();
+      if (keyValueMap.isEmpty() && logger.isInfoEnabled()) {
+        logger.info(
+            "Etcd cluster at: {} contains no key (starting with: '{}') and value data yet...",
+            String.join(",", etcdUrls), searchKeyPrefix);
+      }
+      return recordRangeRead(READ_MODE_PAGED, start,
+          new EtcdKeyValues(keyValueMap, maxModRevision.get(), readRevision));
+    }
     CompletableFuture<GetResponse> futureSearchResponse;
     Builder etcdGetBuilder = GetOption.newBuilder().withSortField(GetOption.SortTarget.KEY)
-        .withSortOrder(GetOption.SortOrder.DESCEND);
+        .withSortOrder(GetOption.SortOrder.DESCEND).withSerializable(isSerializableRead());
 
     if (StringUtils.isNoneBlank(searchKeyPrefix)) {
       GetOption option = etcdGetBuilder.isPrefix(true).build();
-      futureSearchResponse =
-          etcdClient.getKVClient().get(ByteSequence.from(searchKeyPrefix.getBytes()), option);
+      ByteSequence searchKeyPrefixAsBytes = ByteSequence.from(searchKeyPrefix.getBytes());
+      futureSearchResponse = read(kv -> kv.get(searchKeyPrefixAsBytes, option));
     } else {
       searchKeyPrefix = "\0";
       ByteSequence searchKeyPrefixAsBytes = ByteSequence.from(searchKeyPrefix.getBytes());
       GetOption option = etcdGetBuilder.withRange(searchKeyPrefixAsBytes).build();
-      futureSearchResponse = etcdClient.getKVClient().get(searchKeyPrefixAsBytes, option);
+      futureSearchResponse = read(kv -> kv.get(searchKeyPrefixAsBytes, option));
     }
 
     GetResponse response = null;
@@ -142,15 +320,117 @@ public class EtcdConnector {
             "Etcd cluster at: {} contains no key (starting with: '{}') and value data yet...",
             String.join(",", etcdUrls), searchKeyPrefix);
       }
-      return keyValueMap;
+      return recordRangeRead(READ_MODE_SINGLE, start, new EtcdKeyValues(keyValueMap, 0L,
+          response == null ? 0L : response.getHeader().getRevision()));
     }
 
     for (KeyValue kv : response.getKvs()) {
-      // replace key with previously calculated prefix
-      String keyToAdd = kv.getKey().toString().replaceFirst(replaceablePrefix, "");
-      keyValueMap.put(keyToAdd, kv.getValue().toString());
+      // remove previously calculated prefix, all keys in a prefix range read start with it
+      String keyToAdd = KeyLayout.stripPrefix(kv.getKey(), replaceablePrefixLength);
+      putDecodedValue(keyValueMap, keyToAdd, kv);
+      maxModRevision.accumulateAndGet(kv.getModRevision(), Math::max);
+    }
+    return recordRangeRead(READ_MODE_SINGLE, start,
+        new EtcdKeyValues(keyValueMap, maxModRevision.get(), response.getHeader().getRevision()));
+  }
+
+  /**
+   * Returns the key values under each of the given search prefixes (e.g. one per property source
+   * layer). All prefixes are read with a single ETCD transaction, so that they form one consistent
+   * snapshot at a single revision and cost a single round trip.
+   *
+   * @param searchKeyPrefixes search prefixes formed by
+   *        {@link #createSearchPrefixFromApplicationParameters(String, String, String)}.
+   * @return key value pairs of each prefix (the prefix being removed from the keys), in the order of
+   *         the prefixes.
+   */
+  public List<EtcdKeyValues> getLayeredKeyValues(List<String> searchKeyPrefixes) {
+    try {
+      return getLayeredKeyValuesAsync(searchKeyPrefixes).get();
+    } catch (InterruptedException ie) {
+      logger.warn("An Interruption : ", ie);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ee) {
+      throw ee.getCause() instanceof EtcdException ? (EtcdException) ee.getCause()
+          : new EtcdException(ee.getMessage(), ee.getCause());
     }
-    return keyValueMap;
+    List<EtcdKeyValues> empty = new ArrayList<>();
+    searchKeyPrefixes.forEach(prefix -> empty.add(new EtcdKeyValues(new HashMap<>(), 0L)));
+    return empty;
+  }
+
+  /**
+   * Non-blocking version of {@link #getLayeredKeyValues(List)}.
+   *
+   * @return a future of the key value pairs of each prefix, in the order of the prefixes.
+   */
+  public CompletableFuture<List<EtcdKeyValues>> getLayeredKeyValuesAsync(
+      List<String> searchKeyPrefixes) {
+    long start = System.nanoTime();
+    if (isReplicaServing() && searchKeyPrefixes.stream().allMatch(this::isReplicaServing)) {
+      List<EtcdKeyValues> layers = new ArrayList<>();
+      searchKeyPrefixes.forEach(prefix -> layers
+          .add(recordRangeRead(READ_MODE_REPLICA, start, keyspaceReplica.getKeyValues(prefix))));
+      return CompletableFuture.completedFuture(layers);
+    }
+
+    checkConnection();
+
+    boolean serializable = isSerializableRead();
+    Op[] gets = searchKeyPrefixes.stream().map(prefix -> {
+      if (StringUtils.isNoneBlank(prefix)) {
+        ByteSequence key = ByteSequence.from(prefix.getBytes());
+        return Op.get(key, GetOption.newBuilder().withRange(OptionsUtil.prefixEndOf(key))
+            .withSerializable(serializable).build());
+      }
+      ByteSequence key = ByteSequence.from("\0".getBytes());
+      return Op.get(key,
+          GetOption.newBuilder().withRange(key).withSerializable(serializable).build());
+    }).toArray(Op[]::new);
+    String errorMessage = String.format(
+        "An exception occurred while retrieving the key value pairs of prefixes: %s from the etcd cluster: %s",
+        searchKeyPrefixes, String.join(",", etcdUrls));
+    // a transaction of serializable reads only is served locally by the member it is sent to
+    return withEtcdException(read(kv -> kv.txn().Then(gets).commit()), errorMessage)
+        .thenCompose(response -> {
+          List<GetResponse> getResponses = response.getGetResponses();
+          List<EtcdKeyValues> layers = new ArrayList<>();
+          List<CompletableFuture<Void>> chunkReads = new ArrayList<>();
+          for (int i = 0; i < searchKeyPrefixes.size(); i++) {
+            int replaceablePrefixLength =
+                searchKeyPrefixes.get(i).getBytes(StandardCharsets.UTF_8).length;
+            Map<String, String> keyValueMap = new ConcurrentHashMap<>();
+            long maxModRevision = 0L;
+            for (KeyValue kv : getResponses.get(i).getKvs()) {
+              putDecodedValue(keyValueMap,
+                  KeyLayout.stripPrefix(kv.getKey(), replaceablePrefixLength), kv, chunkReads);
+              maxModRevision = Math.max(maxModRevision, kv.getModRevision());
+            }
+            layers.add(new EtcdKeyValues(keyValueMap, maxModRevision,
+                response.getHeader().getRevision()));
+          }
+          return withEtcdException(allOf(chunkReads), errorMessage).thenApply(read -> {
+            layers.forEach(layer -> recordRangeRead(READ_MODE_TXN, start, layer));
+            return layers;
+          });
+        });
+  }
+
+  /**
+   * True if environments are served as layered property sources (see
+   * {@link EtcdConfigurationProperties}).
+   */
+  public boolean isLayeredSourcesEnabled() {
+    return Boolean.TRUE.equals(etcdConfigurationProperties.getLayeredSourcesEnabled());
+  }
+
+  /**
+   * True if a change of any key under the given search prefixes is watched, either the whole
+   * keyspace is watched or each prefix is under a watched prefix. Only what is read with watched
+   * search prefixes may be cached, nothing evicts the rest once it changes.
+   */
+  public boolean isWatched(List<String> searchKeyPrefixes) {
+    return isCoveredBy(searchKeyPrefixes, getWatchedPrefixes());
   }
 
   /**
@@ -163,8 +443,9 @@ public class EtcdConnector {
     checkConnection();
 
     ByteSequence key = ByteSequence.from(keyString.getBytes());
-    GetOption option = GetOption.newBuilder().withRange(key).build();
-    CompletableFuture<GetResponse> futureResponse = etcdClient.getKVClient().get(key, option);
+    GetOption option =
+        GetOption.newBuilder().withRange(key).withSerializable(isSerializableRead()).build();
+    CompletableFuture<GetResponse> futureResponse = read(kv -> kv.get(key, option));
 
     GetResponse response = null;
     try {
@@ -182,7 +463,7 @@ public class EtcdConnector {
     if (response == null || response.getKvs().isEmpty()) {
       return null;
     }
-    return response.getKvs().get(0).getValue().toString();
+    return decodeValue(response.getKvs().get(0));
   }
 
   /**
@@ -193,14 +474,13 @@ public class EtcdConnector {
   public boolean addKeyValue(String key, String value) {
 
     checkConnection();
-    ByteSequence keyBSeq = ByteSequence.from(key.getBytes());
-    ByteSequence valueBSeq = ByteSequence.from(value.getBytes());
-    CompletableFuture<PutResponse> futureResponse =
-        etcdClient.getKVClient().put(keyBSeq, valueBSeq);
+    long start = System.nanoTime();
+    CompletableFuture<? extends Response> futureResponse = writeValue(key, value);
 
-    PutResponse response = null;
+    Response response = null;
     try {
       response = futureResponse.get();
+      metrics.recordPut(WRITE_OPERATION_PUT, System.nanoTime() - start);
     } catch (InterruptedException ie) {
       logger.warn("An Interruption: ", ie);
       Thread.currentThread().interrupt();
@@ -215,7 +495,207 @@ public class EtcdConnector {
   }
 
   /**
-   * A watcher initialization for all keys in the ETCD cluster.
+   * Adds or replaces many key value pairs in chunks, each chunk is written with a single transaction
+   * so that it is applied atomically at a single revision. A failed chunk does not stop the next
+   * ones, it is reported in the result. A chunk never holds more than 128 operations (the default
+   * maximum number of operations in an ETCD transaction), so that chunked values, each written with
+   * several operations, spread the keys over more chunks.
+   *
+   * @param keyValues key value pairs to write.
+   * @param chunkSize maximum number of keys written by a transaction, 0 or less for the default
+   *        (128).
+   * @return results of the chunks and the write throughput.
+   */
+  public EtcdBulkWriteResult addKeyValues(Map<String, String> keyValues, int chunkSize) {
+
+    checkConnection();
+    int effectiveChunkSize = chunkSize > 0 ? chunkSize : DEFAULT_TXN_CHUNK_SIZE;
+    EtcdBulkWriteResult result = new EtcdBulkWriteResult();
+    long start = System.currentTimeMillis();
+    Set<String> chunkedKeys = valueCodec.isChunkingEnabled() ? readChunkedKeys() : new HashSet<>();
+    List<Op> ops = new ArrayList<>();
+    String firstKey = null;
+    int keyCount = 0;
+    boolean interrupted = false;
+    for (Map.Entry<String, String> entry : keyValues.entrySet()) {
+      List<Op> keyOps = valueCodec.encode(entry.getKey(), entry.getValue(),
+          chunkedKeys == null || chunkedKeys.contains(entry.getKey()));
+      if (keyCount > 0 && (keyCount == effectiveChunkSize
+          || ops.size() + keyOps.size() > MAX_TXN_OPERATIONS)) {
+        if (!writeChunk(result, firstKey, keyCount, ops)) {
+          interrupted = true;
+          break;
+        }
+        ops = new ArrayList<>();
+        keyCount = 0;
+      }
+      if (keyCount == 0) {
+        firstKey = entry.getKey();
+      }
+      ops.addAll(keyOps);
+      keyCount++;
+    }
+    if (keyCount > 0 && !interrupted) {
+      writeChunk(result, firstKey, keyCount, ops);
+    }
+    result.setElapsedMillis(System.currentTimeMillis() - start);
+    logger.info("{} key value pairs are added to etcd store in {} chunks within {} ms",
+        result.getKeysWritten(), result.getChunks().size(), result.getElapsedMillis());
+    return result;
+  }
+
+  // Writes a chunk of a bulk write with a single transaction and adds its result, returns false if
+  // the write is interrupted.
+  private boolean writeChunk(EtcdBulkWriteResult result, String firstKey, int keyCount,
+      List<Op> ops) {
+    int index = result.getChunks().size();
+    try {
+      long chunkStart = System.nanoTime();
+      TxnResponse response =
+          etcdClient.getKVClient().txn().Then(ops.toArray(new Op[0])).commit().get();
+      metrics.recordPut(WRITE_OPERATION_TXN, System.nanoTime() - chunkStart);
+      result.addChunk(new ChunkResult(index, firstKey, keyCount, response.isSucceeded(),
+          response.getHeader().getRevision(), null));
+    } catch (InterruptedException ie) {
+      logger.warn("An Interruption: ", ie);
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException ee) {
+      logger.error(
+          "An exception occurred while adding {} key value pairs starting with key: {} to the etcd cluster: {}",
+          keyCount, firstKey, String.join(",", etcdUrls), ee);
+      result.addChunk(new ChunkResult(index, firstKey, keyCount, false, 0L,
+          ExceptionUtils.getRootCauseMessage(ee)));
+    }
+    return true;
+  }
+
+  // Returns the keys whose values are chunked in the ETCD cluster, reading the chunk keys only,
+  // null if they can not be read (all keys are then written as if they may have chunks).
+  private Set<String> readChunkedKeys() {
+    ByteSequence chunkKeys =
+        ByteSequence.from(EtcdValueCodec.CHUNK_KEY_PREFIX, StandardCharsets.UTF_8);
+    GetOption option = GetOption.newBuilder().withRange(OptionsUtil.prefixEndOf(chunkKeys))
+        .withKeysOnly(true).build();
+    try {
+      Set<String> keys = new HashSet<>();
+      etcdClient.getKVClient().get(chunkKeys, option).get().getKvs()
+          .forEach(kv -> keys.add(valueCodec.keyOfChunk(kv.getKey())));
+      return keys;
+    } catch (InterruptedException ie) {
+      logger.warn("An Interruption: ", ie);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ee) {
+      logger.warn("Chunked keys could not be read from the etcd cluster: {}, detail is: {}",
+          String.join(",", etcdUrls), ExceptionUtils.getRootCauseMessage(ee));
+    }
+    return null;
+  }
+
+  /**
+   * Non-blocking version of {@link #getKeyValues(String, String, String)}, no thread waits for the
+   * ETCD round trips. The range is read in pages pinned to one revision.
+   *
+   * @return a future of the key value pairs stored and their revision, completed exceptionally with
+   *         an {@link EtcdException} if the ETCD cluster can not be read.
+   */
+  public CompletableFuture<EtcdKeyValues> getKeyValuesAsync(String application, String profile,
+      String label) {
+
+    long start = System.nanoTime();
+    String searchKeyPrefix =
+        createSearchPrefixFromApplicationParameters(application, profile, label);
+    if (isReplicaServing(searchKeyPrefix)) {
+      return CompletableFuture.completedFuture(
+          recordRangeRead(READ_MODE_REPLICA, start, keyspaceReplica.getKeyValues(searchKeyPrefix)));
+    }
+
+    checkConnection();
+
+    Map<String, String> keyValueMap = new ConcurrentHashMap<>();
+    int replaceablePrefixLength = searchKeyPrefix.getBytes(StandardCharsets.UTF_8).length;
+    AtomicLong maxModRevision = new AtomicLong();
+    ByteSequence startKey;
+    ByteSequence endKey;
+    if (StringUtils.isNoneBlank(searchKeyPrefix)) {
+      startKey = ByteSequence.from(searchKeyPrefix.getBytes());
+      endKey = OptionsUtil.prefixEndOf(startKey);
+    } else {
+      startKey = ByteSequence.from("\0".getBytes());
+      endKey = startKey;
+    }
+    List<CompletableFuture<Void>> chunkReads = new ArrayList<>();
+    CompletableFuture<Long> futureRevision =
+        read(kvClient -> readRangeInPagesAsync(kvClient, isSerializableRead(), startKey, endKey,
+            Math.max(getRangePageSize(), 0), 0L, kv -> {
+              putDecodedValue(keyValueMap,
+                  KeyLayout.stripPrefix(kv.getKey(), replaceablePrefixLength), kv, chunkReads);
+              maxModRevision.accumulateAndGet(kv.getModRevision(), Math::max);
+            })).thenCompose(revision -> allOf(chunkReads).thenApply(read -> revision));
+    String errorMessage = String.format(
+        "An exception occurred while retrieving all the key value pairs from the etcd cluster: %s",
+        String.join(",", etcdUrls));
+    return withEtcdException(futureRevision, errorMessage)
+        .thenApply(revision -> recordRangeRead(READ_MODE_PAGED, start,
+            new EtcdKeyValues(keyValueMap, maxModRevision.get(), revision)));
+  }
+
+  /**
+   * Non-blocking version of {@link #getValue(String)}.
+   *
+   * @return a future of the value, null if no key is found.
+   */
+  public CompletableFuture<String> getValueAsync(String keyString) {
+
+    checkConnection();
+
+    ByteSequence key = ByteSequence.from(keyString.getBytes());
+    GetOption option =
+        GetOption.newBuilder().withRange(key).withSerializable(isSerializableRead()).build();
+    String errorMessage = String.format(
+        "An exception occurred while retrieving key value pair with key: %s from the etcd cluster: %s",
+        keyString, String.join(",", etcdUrls));
+    return withEtcdException(read(kv -> kv.get(key, option)).thenCompose(response -> {
+      if (response == null || response.getKvs().isEmpty()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      KeyValue keyValue = response.getKvs().get(0);
+      String value = valueCodec.decode(keyValue);
+      return value != null ? CompletableFuture.completedFuture(value)
+          : readChunkedValue(keyValue);
+    }), errorMessage);
+  }
+
+  /**
+   * Non-blocking version of {@link #addKeyValue(String, String)}.
+   *
+   * @return a future completed with true once the key value is added.
+   */
+  public CompletableFuture<Boolean> addKeyValueAsync(String key, String value) {
+
+    checkConnection();
+    String errorMessage = String.format(
+        "An exception occurred while adding key value pair with key: %s to the etcd cluster: %s",
+        key, String.join(",", etcdUrls));
+    long start = System.nanoTime();
+    return withEtcdException(writeValue(key, value), errorMessage)
+        .thenApply(response -> {
+          metrics.recordPut(WRITE_OPERATION_PUT, System.nanoTime() - start);
+          logger.info("Add key value pair to etcd store response is: {}", response);
+          return true;
+        });
+  }
+
+  /**
+   * A watcher initialization for the watched key prefixes (all keys in the ETCD cluster if none is
+   * configured). Each watch is supervised, if its stream breaks it is resumed right after the last
+   * revision processed (see {@link EtcdWatchSupervisor}). The prefixes are spread over the
+   * configured number of {@link EtcdWatchShard}s, each handing the responses off from the jetcd
+   * callback thread to its own processing thread through a bounded queue. If a keyspace snapshot
+   * file is configured, the replica is loaded from it and the watches catch up from the revision
+   * stored, instead of reading the whole keyspace again. If watch prefixes are configured, the
+   * replica holds only the keys under them, since only those are kept current: the other keys are
+   * read from the ETCD cluster.
    */
   public synchronized void startListening(EtcdEnvironmentRepository repository) {
 
@@ -224,71 +704,149 @@ public class EtcdConnector {
       return;
     }
     checkConnection();
-    ExecutorService es = Executors.newSingleThreadExecutor();
-
+    List<String> prefixes = getWatchedPrefixes();
+    replicaPrefixes = prefixes;
+    long watchStartRevision = 0L;
+    if (Boolean.TRUE.equals(etcdConfigurationProperties.getReplicaEnabled())) {
+      if (snapshotFile != null) {
+        snapshotWriter = new KeyspaceSnapshotWriter(snapshotFile, this::createKeyspaceSnapshot,
+            getMillis(etcdConfigurationProperties.getSnapshotWriteDelayMillis(),
+                DEFAULT_SNAPSHOT_WRITE_DELAY_MILLIS));
+      }
+      long replicaRevision = loadKeyspaceReplicaFromSnapshot();
+      if (replicaRevision == 0L) {
+        replicaRevision = loadKeyspaceReplica();
+      }
+      watchStartRevision = replicaRevision > 0 ? replicaRevision + 1 : 0L;
+    }
+    // PUT events of a bulk edit are merged into a single refresh event per application
+    refreshCoalescer = new RefreshCoalescer(
+        getMillis(etcdConfigurationProperties.getRefreshQuietWindowMillis(), 0L),
+        getMillis(etcdConfigurationProperties.getRefreshMaxDelayMillis(), 0L),
+        repository::publishEventByPath, metrics);
+    if (Boolean.TRUE.equals(etcdConfigurationProperties.getLeaderElectionEnabled())) {
+      startLeaderElection();
+    }
+    Integer queueCapacity = etcdConfigurationProperties.getWatchQueueCapacity();
+    int capacity = queueCapacity == null || queueCapacity <= 0 ? DEFAULT_WATCH_QUEUE_CAPACITY
+        : queueCapacity;
+    PropertyChangedConsumer propertyChangedConsumer =
+        new PropertyChangedConsumer(repository, getKeyLayout());
+    Integer configuredShardCount = etcdConfigurationProperties.getWatchShardCount();
+    int shardCount = Math.max(1, Math.min(configuredShardCount == null ? 1 : configuredShardCount,
+        prefixes.size()));
+    List<EtcdWatchShard> shards = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new EtcdWatchShard(shardCount == 1 ? "etcd-watch" : "etcd-watch-" + i, capacity,
+          watchStartRevision, propertyChangedConsumer, () -> resyncKeyspace(repository), metrics));
+    }
+    if (prefixes.isEmpty()) {
+      ByteSequence keyString = ByteSequence.from("\0".getBytes());
+      EtcdWatchShard shard = shards.get(0);
+      shard.addWatch(
+          createWatchSupervisor(keyString, keyString, watchStartRevision, shard, repository));
+    }
+    for (int i = 0; i < prefixes.size(); i++) {
+      EtcdWatchShard shard = shards.get(i % shardCount);
+      ByteSequence prefix = ByteSequence.from(prefixes.get(i), StandardCharsets.UTF_8);
+      shard.addWatch(createWatchSupervisor(prefix, OptionsUtil.prefixEndOf(prefix),
+          watchStartRevision, shard, repository));
+    }
+    watchShards = shards;
     try {
-      es.execute(() -> {
-
-        CountDownLatch latch = new CountDownLatch(Integer.MAX_VALUE);
-        ByteSequence keyString = ByteSequence.from("\0".getBytes());
-        Watcher watcher = null;
-        try {
-          WatchOption option = WatchOption.newBuilder().withRange(keyString).build();
-          watcher =
-              etcdClient.getWatchClient().watch(keyString, option, new PropertyChangedConsumer(
-                  repository, latch, etcdConfigurationProperties.getKeyPrefixOrder()));
-          latch.await();
-        } catch (InterruptedException ie) {
-          logger.warn("An Interruption: ", ie);
-          Thread.currentThread().interrupt();
-        } catch (Exception e) {
-          String errorMessage =
-              String.format("An exception occurred while watching ETCD @: %s, detail is: %s",
-                  String.join(",", etcdUrls), ExceptionUtils.getStackTrace(e));
-          logger.error(errorMessage);
-        } finally {
-          if (watcher != null) {
-            watcher.close();
-          }
-        }
-      });
+      shards.forEach(EtcdWatchShard::start);
     } finally {
       isListening = true;
-      es.shutdown();
     }
   }
 
+  /**
+   * Stops the watcher, publishes the refresh events still pending. Can be started again with
+   * {@link #startListening(EtcdEnvironmentRepository)}.
+   */
+  public synchronized void stopListening() {
+    if (!isListening) {
+      return;
+    }
+    watchShards.forEach(EtcdWatchShard::stop);
+    if (leaderElection != null) {
+      leaderElection.stop();
+      leaderElection = null;
+    }
+    refreshCoalescer.shutdown();
+    if (snapshotWriter != null) {
+      snapshotWriter.shutdown();
+      snapshotWriter = null;
+    }
+    isListening = false;
+    logger.info("Stopped listening to the etcd cluster: {}", String.join(",", etcdUrls));
+  }
+
+  /**
+   * Stops the watcher and closes the connection to the ETCD cluster.
+   */
+  public synchronized void close() {
+    stopListening();
+    if (readClientPool != null) {
+      readClientPool.close();
+      readClientPool = null;
+    }
+    if (etcdClient != null) {
+      etcdClient.close();
+      etcdClient = null;
+    }
+  }
+
+  public boolean isListening() {
+    return isListening;
+  }
+
   // An inner class that holds a key value change information in itself and has a callback trigger
   // functionality after a change in key value store occurs.
   private class PropertyChangedConsumer implements Consumer<WatchResponse> {
 
     private EtcdEnvironmentRepository repository;
-    private CountDownLatch latch;
-    private List<KeyPrefix> keyPrefixOrder;
+    private KeyLayout keyLayout;
 
-    public PropertyChangedConsumer(EtcdEnvironmentRepository repository, CountDownLatch latch,
-        List<KeyPrefix> keyPrefixOrder) {
-      this.keyPrefixOrder = keyPrefixOrder;
+    public PropertyChangedConsumer(EtcdEnvironmentRepository repository,
+        KeyLayout keyLayout) {
+      this.keyLayout = keyLayout;
       this.repository = repository;
-      this.latch = latch;
     }
 
     @Override
     public void accept(WatchResponse response) {
-      runCallBackForWatchEvent(keyPrefixOrder, latch, response, repository);
+      runCallBackForWatchEvent(keyLayout, response, repository);
     }
   }
 
-  // Callback trigger after a property change in ETCD occurs.
-  private void runCallBackForWatchEvent(List<KeyPrefix> keyPrefixOrder, CountDownLatch latch,
-      WatchResponse response, EtcdEnvironmentRepository repository) {
+  // Callback trigger after a property change in ETCD occurs, package-private for the benchmarks.
+  void runCallBackForWatchEvent(KeyLayout keyLayout, WatchResponse response,
+      EtcdEnvironmentRepository repository) {
 
     logger.info("******************* CALLBACK CALLED: *************************************");
+    // with lock batching, one lock is taken for all the applications changed in the response
+    Set<String> batchedApplications = isLockBatching() ? new LinkedHashSet<>() : null;
+    long firstRevision = Long.MAX_VALUE;
+    long lastRevision = 0L;
+    boolean replicaBehind = false;
     for (WatchEvent event : response.getEvents()) {
+      if (isInternalKey(event.getKeyValue().getKey())) {
+        continue; // a chunk changes together with its key, an election key is no configuration
+      }
       logger.info("Event type: {}", event.getEventType());
+      metrics.countWatchEvent(event.getEventType().name());
       logger.info("Watching for key: {}", event.getKeyValue().getKey());
       logger.info("Value altered: {}", event.getKeyValue().getValue());
-      logger.info("Current latch value: {}", latch.getCount());
+      try {
+        applyToKeyspaceReplica(event);
+      } catch (EtcdException ee) { // the other events of the response are still processed
+        logger.error("Change of key: {} could not be applied to the keyspace replica",
+            event.getKeyValue().getKey(), ee);
+        replicaBehind = true;
+      }
+      repository.evictCachedEnvironments(event.getKeyValue().getKey().toString(),
+          event.getKeyValue().getModRevision());
 
       // if not delete event, call the monitor to trigger event to bus
       if (EventType.DELETE.equals(event.getEventType())
@@ -297,76 +855,556 @@ public class EtcdConnector {
             "Unexpected (or Deletion) Operation When Spring Cloud Config Server is RUNNING: Operation Type: {}, Key: {}. Restart might be needed for the client Microservices, since a delete or an unrecognized property operation is done on the ETCD cluster",
             event.getEventType(), event.getKeyValue().getKey());
       } else if (EventType.PUT.equals(event.getEventType())) {
+        if (isValueUnchanged(event)) {
+          logger.debug("Value of key: {} is written again unchanged, no refresh is needed",
+              event.getKeyValue().getKey());
+          continue;
+        }
         String keyModified = event.getKeyValue().getKey().toString();
-        String applicationName = extractApplicationName(keyModified, keyPrefixOrder);
+        String applicationName = keyLayout.applicationOf(keyModified);
+        if (batchedApplications != null) {
+          batchedApplications.add(applicationName);
+          firstRevision = Math.min(firstRevision, event.getKeyValue().getModRevision());
+          lastRevision = Math.max(lastRevision, event.getKeyValue().getModRevision());
+          continue;
+        }
         String lockString = keyModified + ":" + event.getKeyValue().getValue().toString();
-        if (!Boolean.TRUE.equals(watchLockEnabled)) {
-          repository.publishEventByPath(applicationName);
-        } else {// distributed lock enabled
-          etcdWatchLock.processWithLock(lockString, () -> {
-            repository.publishEventByPath(applicationName);
-          });
+        submitRefresh(lockString, applicationName);
+      }
+    }
+    if (batchedApplications != null && !batchedApplications.isEmpty()) {
+      RefreshCoalescer coalescer = refreshCoalescer;
+      etcdWatchLock.processWithLockAsync("revisions:" + firstRevision + "-" + lastRevision,
+          () -> batchedApplications.forEach(coalescer::submit));
+    }
+    if (replicaBehind) { // the replica misses a change, it is reloaded rather than served stale
+      resyncKeyspace(repository);
+    }
+  }
+
+  // True if the event carries the previous key value (watchPrevKv) and the value is not changed.
+  private static boolean isValueUnchanged(WatchEvent event) {
+    KeyValue previous = event.getPrevKV();
+    return previous != null && previous.getVersion() > 0
+        && previous.getValue().equals(event.getKeyValue().getValue());
+  }
+
+  // True if the Redis lock of the refresh events is taken once per watch response.
+  private boolean isLockBatching() {
+    return leaderElection == null && Boolean.TRUE.equals(watchLockEnabled)
+        && etcdWatchLock != null && etcdWatchLock.isBatchingEnabled();
+  }
+
+  // Catches up after watch events are lost (ETCD has compacted the missed revisions, or a response
+  // queue overflowed): reloads the replica, drops all cached environments and publishes a single
+  // refresh event for all applications, since the keys changed in the meantime can not be known
+  // anymore. Returns the revision the watch continues after.
+  private long resyncKeyspace(EtcdEnvironmentRepository repository) {
+    long revision = Boolean.TRUE.equals(etcdConfigurationProperties.getReplicaEnabled())
+        ? loadKeyspaceReplica()
+        : getCurrentRevision();
+    repository.evictCachedEnvironments(null);
+    submitRefresh("*:" + revision, "*");
+    return revision;
+  }
+
+  // Submits a refresh event so that it is published by one instance of the config server cluster:
+  // the elected leader if leader election is enabled, otherwise the instance holding the Redis lock
+  // of the change, or this instance if neither is enabled.
+  private void submitRefresh(String lockName, String destination) {
+    if (leaderElection != null) {
+      if (leaderElection.isLeader()) {
+        refreshCoalescer.submit(destination);
+      } else {
+        followerRefreshBacklog.add(destination);
+      }
+    } else if (!Boolean.TRUE.equals(watchLockEnabled)) {
+      refreshCoalescer.submit(destination);
+    } else {// distributed lock enabled
+      etcdWatchLock.processWithLock(lockName, () -> {
+        refreshCoalescer.submit(destination);
+      });
+    }
+  }
+
+  // Campaigns for the refresh publisher election. Once elected, the refresh events held back while
+  // following are published, in case the previous leader died before publishing them.
+  private void startLeaderElection() {
+    Long configuredTtl = etcdConfigurationProperties.getLeaderLeaseTtlSeconds();
+    long leaseTtlSeconds = configuredTtl == null || configuredTtl <= 0
+        ? DEFAULT_LEADER_LEASE_TTL_SECONDS
+        : configuredTtl;
+    followerRefreshBacklog =
+        new FollowerRefreshBacklog(TimeUnit.SECONDS.toMillis(2 * leaseTtlSeconds));
+    leaderElection = new EtcdLeaderElection(this::getEtcdClient, getLeaderElectionName(),
+        ManagementFactory.getRuntimeMXBean().getName(), leaseTtlSeconds);
+    RefreshCoalescer coalescer = refreshCoalescer;
+    FollowerRefreshBacklog backlog = followerRefreshBacklog;
+    leaderElection.setElectedListener(() -> backlog.drain().forEach(coalescer::submit));
+    leaderElection.start();
+  }
+
+  // Creates the supervised watch of a key range, handing its responses off to the given shard.
+  private EtcdWatchSupervisor createWatchSupervisor(ByteSequence key, ByteSequence rangeEnd,
+      long startRevision, EtcdWatchShard shard, EtcdEnvironmentRepository repository) {
+    EtcdWatchSupervisor supervisor = new EtcdWatchSupervisor(etcdClient::getWatchClient, key,
+        rangeEnd, startRevision, shard.openStream(), () -> resyncKeyspace(repository),
+        this::getCurrentRevision,
+        getMillis(etcdConfigurationProperties.getWatchReconnectInitialBackoffMillis(),
+            DEFAULT_WATCH_RECONNECT_INITIAL_BACKOFF_MILLIS),
+        getMillis(etcdConfigurationProperties.getWatchReconnectMaxBackoffMillis(),
+            DEFAULT_WATCH_RECONNECT_MAX_BACKOFF_MILLIS));
+    supervisor.setFilters(Boolean.TRUE.equals(etcdConfigurationProperties.getWatchNoDelete()),
+        Boolean.TRUE.equals(etcdConfigurationProperties.getWatchPrevKv()));
+    return supervisor;
+  }
+
+  // Returns the configured watch prefixes, leaving out the ones under another prefix (their keys
+  // are already watched). Empty if the whole keyspace is watched.
+  private List<String> getWatchedPrefixes() {
+    List<String> configured = etcdConfigurationProperties.getWatchPrefixes();
+    List<String> prefixes = new ArrayList<>();
+    if (configured == null) {
+      return prefixes;
+    }
+    for (String prefix : configured) {
+      if (StringUtils.isEmpty(prefix)) {
+        return new ArrayList<>();
+      }
+      if (configured.stream().noneMatch(other -> StringUtils.isNotEmpty(other)
+          && !other.equals(prefix) && prefix.startsWith(other)) && !prefixes.contains(prefix)) {
+        prefixes.add(prefix);
+      }
+    }
+    return prefixes;
+  }
+
+  // Snapshot of the replica to be persisted. The snapshot revision is the revision all watch shards
+  // have processed, since the shards progress independently, a restart resuming the watches from it
+  // misses no change of a shard lagging behind.
+  private KeyspaceSnapshot createKeyspaceSnapshot() {
+    long processedRevision = Long.MAX_VALUE;
+    List<EtcdWatchShard> shards = watchShards;
+    if (shards != null) { // read before the snapshot is taken, it holds all changes processed
+      for (EtcdWatchShard shard : shards) {
+        processedRevision = Math.min(processedRevision, shard.getProcessedRevision());
+      }
+    }
+    KeyspaceSnapshot snapshot = keyspaceReplica.createSnapshot();
+    return new KeyspaceSnapshot(snapshot.getKeyValues(), snapshot.getModRevisions(),
+        processedRevision > 0L && processedRevision < snapshot.getRevision() ? processedRevision
+            : snapshot.getRevision(),
+        replicaPrefixes);
+  }
+
+  // Returns the current revision of the ETCD cluster, reading no key value.
+  private long getCurrentRevision() {
+    return getCurrentRevision(0L);
+  }
+
+  // Same as above, waits at most the given time (0 waits as long as it takes) for the cluster.
+  private long getCurrentRevision(long timeoutMillis) {
+    ByteSequence key = ByteSequence.from("\0".getBytes());
+    GetOption option = GetOption.newBuilder().withRange(key).withCountOnly(true).build();
+    try {
+      CompletableFuture<GetResponse> response = etcdClient.getKVClient().get(key, option);
+      return (timeoutMillis > 0 ? response.get(timeoutMillis, TimeUnit.MILLISECONDS)
+          : response.get()).getHeader().getRevision();
+    } catch (InterruptedException ie) {
+      logger.warn("An Interruption: ", ie);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ee) {
+      String errorMessage =
+          String.format("An exception occurred while retrieving the revision of the etcd cluster: %s",
+              String.join(",", etcdUrls));
+      throw new EtcdException(errorMessage, ee);
+    } catch (TimeoutException te) {
+      String errorMessage = String.format(
+          "The revision of the etcd cluster: %s could not be retrieved in %d ms",
+          String.join(",", etcdUrls), timeoutMillis);
+      throw new EtcdException(errorMessage, te);
+    }
+    return 0L;
+  }
+
+  // Returns the name of the refresh publisher election, the prefix of the keys of its candidates.
+  private String getLeaderElectionName() {
+    return StringUtils.defaultIfBlank(etcdConfigurationProperties.getLeaderElectionName(),
+        DEFAULT_LEADER_ELECTION_NAME);
+  }
+
+  // True if a key is written by the server itself and holds no configuration: a chunk of a chunked
+  // value, or the key of a candidate of the refresh publisher election (name/lease id).
+  private boolean isInternalKey(ByteSequence key) {
+    return valueCodec.isChunkKey(key) || key.startsWith(electionKeyPrefix);
+  }
+
+  // Returns a configured duration, the default value if it is not configured.
+  private long getMillis(Long configured, long defaultValue) {
+    return configured == null || configured <= 0 ? defaultValue : configured;
+  }
+
+  // Keeps the local keyspace replica current with the changes observed by the watcher.
+  private void applyToKeyspaceReplica(WatchEvent event) {
+    if (!isReplicaServing() || isInternalKey(event.getKeyValue().getKey())) {
+      return;
+    }
+    KeyValue keyValue = event.getKeyValue();
+    boolean applied = false;
+    if (EventType.PUT.equals(event.getEventType())) {
+      applied = keyspaceReplica.put(keyValue.getKey().toString(), decodeValue(keyValue),
+          keyValue.getModRevision());
+    } else if (EventType.DELETE.equals(event.getEventType())) {
+      applied = keyspaceReplica.delete(keyValue.getKey().toString(), keyValue.getModRevision());
+    }
+    if (applied && snapshotWriter != null) {
+      snapshotWriter.changed();
+    }
+  }
+
+  // Loads the local replica from the keyspace snapshot file, returns the revision stored, 0 if there
+  // is no usable snapshot. A snapshot newer than the ETCD cluster (e.g. the cluster is restored from
+  // a backup) is discarded. If the cluster can not be reached, the snapshot is served until it can.
+  private long loadKeyspaceReplicaFromSnapshot() {
+    KeyspaceSnapshot snapshot = snapshotFile == null ? null : snapshotFile.read();
+    if (snapshot == null || snapshot.getRevision() <= 0L) {
+      return 0L;
+    }
+    if (!isCoveredBy(replicaPrefixes, snapshot.getPrefixes())) {
+      logger.info(
+          "Keyspace snapshot holds only the keys under: {}, it is discarded since the keys under: {} are watched",
+          snapshot.getPrefixes(), replicaPrefixes);
+      return 0L;
+    }
+    try {
+      long currentRevision = getCurrentRevision(SNAPSHOT_REVISION_CHECK_TIMEOUT_MILLIS);
+      if (currentRevision < snapshot.getRevision()) {
+        logger.warn(
+            "Keyspace snapshot revision: {} is ahead of the etcd cluster revision: {}, it is discarded",
+            snapshot.getRevision(), currentRevision);
+        return 0L;
+      }
+    } catch (EtcdException ee) {
+      logger.warn(
+          "The etcd cluster: {} can not be reached, key values are served from the keyspace snapshot: {}",
+          String.join(",", etcdUrls), snapshotFile.getPath());
+    }
+    keyspaceReplica.load(snapshot);
+    snapshotWriter.written();
+    return snapshot.getRevision();
+  }
+
+  // Loads the keyspace into the local replica, only the keys under the watched prefixes if any are
+  // configured, returns the revision the keyspace is read at. If the ETCD cluster can not be
+  // reached, reads continue to be served by the cluster itself.
+  private long loadKeyspaceReplica() {
+    List<String> prefixes = replicaPrefixes;
+    Map<String, String> snapshot = new HashMap<>();
+    Map<String, Long> snapshotModRevisions = new HashMap<>();
+    Consumer<KeyValue> keyValueConsumer = kv -> {
+      if (!isInternalKey(kv.getKey())) {
+        snapshot.put(kv.getKey().toString(), decodeValue(kv));
+        snapshotModRevisions.put(kv.getKey().toString(), kv.getModRevision());
+      }
+    };
+    KV kvClient = etcdClient.getKVClient();
+    int pageSize = Math.max(getRangePageSize(), 0);
+    try {
+      // linearizable, the replica is kept current by a watch starting right after this revision
+      long revision;
+      if (prefixes.isEmpty()) {
+        ByteSequence key = ByteSequence.from("\0".getBytes());
+        revision = readRangeInPages(kvClient, false, key, key, pageSize, 0L, keyValueConsumer);
+      } else { // all prefixes are read at the revision of the first one, as a single snapshot
+        revision = 0L;
+        for (int i = 0; i < prefixes.size() && (i == 0 || revision > 0); i++) {
+          ByteSequence prefix = ByteSequence.from(prefixes.get(i), StandardCharsets.UTF_8);
+          revision = readRangeInPages(kvClient, false, prefix, OptionsUtil.prefixEndOf(prefix),
+              pageSize, revision, keyValueConsumer);
         }
       }
+      if (revision > 0) {
+        keyspaceReplica.load(snapshot, snapshotModRevisions, revision);
+        if (snapshotWriter != null) {
+          snapshotWriter.changed();
+        }
+      }
+      return revision;
+    } catch (EtcdException ee) {
+      logger.error(
+          "Keyspace replica could not be loaded from the etcd cluster: {}, key values will be read from the cluster",
+          String.join(",", etcdUrls), ee);
+    }
+    return 0L;
+  }
+
+  // Reads a key range page by page (a page size of 0 reads the range at once), so that a very large
+  // range never arrives as a single huge gRPC message. Every page after the first one is pinned to
+  // the revision of the first page, so that all pages form one consistent snapshot of the range.
+  // Returns the revision the range is read at (the given one unless it is 0, the current revision),
+  // 0 if the read is interrupted.
+  private long readRangeInPages(KV kvClient, boolean serializable, ByteSequence startKey,
+      ByteSequence endKey, int pageSize, long atRevision, Consumer<KeyValue> keyValueConsumer) {
+    long revision = atRevision;
+    ByteSequence pageStartKey = startKey;
+    boolean more = true;
+    while (more) {
+      GetResponse page;
+      try {
+        page = kvClient
+            .get(pageStartKey, createPageOption(endKey, pageSize, revision, serializable)).get();
+      } catch (InterruptedException ie) {
+        logger.warn("An Interruption: ", ie);
+        Thread.currentThread().interrupt();
+        return 0L;
+      } catch (ExecutionException ee) {
+        String errorMessage = String.format(
+            "An exception occurred while retrieving a page of key value pairs starting with key: %s from the etcd cluster: %s",
+            pageStartKey, String.join(",", etcdUrls));
+        throw new EtcdException(errorMessage, ee);
+      }
+      if (revision == 0L) {
+        revision = page.getHeader().getRevision();
+      }
+      List<KeyValue> kvs = page.getKvs();
+      kvs.forEach(keyValueConsumer);
+      more = page.isMore() && !kvs.isEmpty();
+      if (more) { // continue right after the last key read
+        pageStartKey = kvs.get(kvs.size() - 1).getKey().concat(KEY_SUCCESSOR_SUFFIX);
+      }
     }
-    latch.countDown();
+    return revision;
   }
 
-  // Extracts the application name from the key name by using the key order list that is configured
-  // in application yaml/properties in this project.
-  private String extractApplicationName(String modifiedKey, List<KeyPrefix> keyPrefixOrder) {
+  // Non-blocking version of readRangeInPages, each page is requested once the previous one arrives.
+  // Returns a future of the revision the range is read at.
+  private CompletableFuture<Long> readRangeInPagesAsync(KV kvClient, boolean serializable,
+      ByteSequence pageStartKey, ByteSequence endKey, int pageSize, long revision,
+      Consumer<KeyValue> keyValueConsumer) {
+    return kvClient.get(pageStartKey, createPageOption(endKey, pageSize, revision, serializable))
+        .thenCompose(page -> {
+          long pageRevision = revision == 0L ? page.getHeader().getRevision() : revision;
+          List<KeyValue> kvs = page.getKvs();
+          kvs.forEach(keyValueConsumer);
+          if (!page.isMore() || kvs.isEmpty()) {
+            return CompletableFuture.completedFuture(pageRevision);
+          }
+          ByteSequence nextPageStartKey =
+              kvs.get(kvs.size() - 1).getKey().concat(KEY_SUCCESSOR_SUFFIX);
+          return readRangeInPagesAsync(kvClient, serializable, nextPageStartKey, endKey, pageSize,
+              pageRevision, keyValueConsumer);
+        });
+  }
 
-    int applicationIndexInKeyPrefix = keyPrefixOrder.indexOf(KeyPrefix.APPLICATION);
-    if (applicationIndexInKeyPrefix == -1) { // No application name should exist in keys
-      return "*";
+  // Option of a single page read, pinned to the given revision unless it is 0.
+  private GetOption createPageOption(ByteSequence endKey, int pageSize, long revision,
+      boolean serializable) {
+    Builder pageOptionBuilder = GetOption.newBuilder().withRange(endKey).withLimit(pageSize)
+        .withSortField(GetOption.SortTarget.KEY).withSortOrder(GetOption.SortOrder.ASCEND)
+        .withSerializable(serializable);
+    if (revision > 0) {
+      pageOptionBuilder = pageOptionBuilder.withRevision(revision);
     }
-    String[] tokens = modifiedKey.split("\\.");
-    if (tokens.length > applicationIndexInKeyPrefix + 1) { // +1 reserved for actual key itself
-      return tokens[applicationIndexInKeyPrefix];
+    return pageOptionBuilder.build();
+  }
+
+  // Writes a value encoded by the value codec, with a transaction if values may be chunked.
+  private CompletableFuture<? extends Response> writeValue(String key, String value) {
+    if (!valueCodec.isChunkingEnabled()) {
+      return etcdClient.getKVClient().put(ByteSequence.from(key.getBytes()),
+          valueCodec.encodeValue(value));
     }
-    return "*";
+    return etcdClient.getKVClient().txn()
+        .Then(valueCodec.encode(key, value).toArray(new Op[0])).commit();
   }
 
-  // Checks whether an ETCD client is configured with necessary connection properties or not.
-  private void checkConnection() {
-    if (etcdClient == null) {
-      throw new EtcdException(
-          "Connection to the ETCD cluster is null, call connect() method first.");
+  // Puts the decoded value of a key value read into the map, leaving chunk and election keys out.
+  // The chunks of a chunked value are read right away, blocking the calling thread.
+  private void putDecodedValue(Map<String, String> keyValueMap, String key, KeyValue keyValue) {
+    if (!isInternalKey(keyValue.getKey())) {
+      keyValueMap.put(key, decodeValue(keyValue));
     }
   }
 
-  // Appends application, profile and label in given key order (as the order in application yaml) to
-  // group and detect all the key value set that belongs to an application (client) with its
-  // environment (e.g. dev, prod etc...)
-  private String createSearchPrefixFromApplicationParameters(String application, String profile,
-      String label) {
-    List<KeyPrefix> keyPrefixOrder = etcdConfigurationProperties.getKeyPrefixOrder();
-    StringBuilder keyPrefixFormation = new StringBuilder("");
-    if (CollectionUtils.isEmpty(keyPrefixOrder)) {
-      return keyPrefixFormation.toString();
+  // Non-blocking version of the above, the chunks of a chunked value not cached are read
+  // asynchronously and the future of the read is added to the chunk reads.
+  private void putDecodedValue(Map<String, String> keyValueMap, String key, KeyValue keyValue,
+      List<CompletableFuture<Void>> chunkReads) {
+    if (isInternalKey(keyValue.getKey())) {
+      return;
     }
-    for (KeyPrefix currentPrefix : keyPrefixOrder) {
-      appendWithParameter(keyPrefixFormation, currentPrefix, application, profile, label);
+    String value = valueCodec.decode(keyValue);
+    if (value != null) {
+      keyValueMap.put(key, value);
+    } else {
+      chunkReads.add(
+          readChunkedValue(keyValue).thenAccept(decoded -> keyValueMap.put(key, decoded)));
     }
-    return keyPrefixFormation.toString();
+  }
 
+  // Decodes a value read, reading the chunks of a chunked value not cached, blocking the calling
+  // thread (never a jetcd callback thread).
+  private String decodeValue(KeyValue keyValue) {
+    String value = valueCodec.decode(keyValue);
+    if (value != null) {
+      return value;
+    }
+    try {
+      return readChunkedValue(keyValue).get();
+    } catch (InterruptedException ie) {
+      logger.warn("An Interruption: ", ie);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof EtcdException) {
+        throw (EtcdException) ee.getCause();
+      }
+      String errorMessage = String.format(
+          "An exception occurred while retrieving the chunks of the value of key: %s from the etcd cluster: %s",
+          keyValue.getKey(), String.join(",", etcdUrls));
+      throw new EtcdException(errorMessage, ee);
+    }
+    return null;
   }
 
-  private void appendWithParameter(StringBuilder origin, KeyPrefix currentPrefix,
-      String application, String profile, String label) {
-    switch (currentPrefix) {
-      case APPLICATION:
-        origin.append(StringUtils.isNotBlank(application) ? (application + ".") : "");
-        break;
-      case LABEL:
-        origin.append(StringUtils.isNotBlank(label) ? (label + ".") : "");
-        break;
-      case PROFILE:
-        origin.append(StringUtils.isNotBlank(profile) ? (profile + ".") : "");
-        break;
-      default:
-        throw new EtcdException(
-            "Key Prefix Order retrieved from application.yaml contains wrong key, only application, label and profile words are allowed.");
+  // Reads the chunks of a chunked value and decodes it. The chunks are read at the modification
+  // revision of the manifest, so that they are the chunks written together with it even if the key
+  // is written again meanwhile. If that revision is already compacted, they are read at the current
+  // revision, the manifest tells whether they still belong to it.
+  private CompletableFuture<String> readChunkedValue(KeyValue manifest) {
+    return readChunkedValue(manifest, manifest.getModRevision())
+        .handle((value, throwable) -> {
+          if (throwable == null) {
+            return CompletableFuture.completedFuture(value);
+          }
+          if (isCompacted(throwable)) {
+            return readChunkedValue(manifest, 0L);
+          }
+          CompletableFuture<String> failed = new CompletableFuture<>();
+          failed.completeExceptionally(
+              throwable instanceof CompletionException && throwable.getCause() != null
+                  ? throwable.getCause()
+                  : throwable);
+          return failed;
+        }).thenCompose(Function.identity());
+  }
+
+  // Reads the chunks of a chunked value at the given revision (0 for the current one), linearizable
+  // through the client connected to all endpoints.
+  private CompletableFuture<String> readChunkedValue(KeyValue manifest, long revision) {
+    ByteSequence key = manifest.getKey();
+    Builder optionBuilder = GetOption.newBuilder().withRange(valueCodec.chunkRangeEnd(key))
+        .withSortField(GetOption.SortTarget.KEY).withSortOrder(GetOption.SortOrder.ASCEND);
+    if (revision > 0) {
+      optionBuilder = optionBuilder.withRevision(revision);
     }
+    return etcdClient.getKVClient().get(valueCodec.chunkRangeStart(key), optionBuilder.build())
+        .thenApply(response -> valueCodec.decodeChunks(manifest, response.getKvs()));
+  }
+
+  // True if a read failed since the revision it is pinned to is compacted.
+  private static boolean isCompacted(Throwable throwable) {
+    for (Throwable cause : ExceptionUtils.getThrowables(throwable)) {
+      if (cause instanceof CompactedException) {
+        return true;
+      }
+      if (cause instanceof io.etcd.jetcd.common.exception.EtcdException) {
+        ErrorCode code = ((io.etcd.jetcd.common.exception.EtcdException) cause).getErrorCode();
+        return ErrorCode.OUT_OF_RANGE.equals(code);
+      }
+    }
+    return false;
+  }
+
+  private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+  }
+
+  // Returns a configured size in bytes, 0 if it is not configured.
+  private static int getBytes(Integer configured) {
+    return configured == null ? 0 : configured;
+  }
+
+  // Sends a key value read through the read client pool if there is one, otherwise through the
+  // client connected to all endpoints.
+  private <T> CompletableFuture<T> read(Function<KV, CompletableFuture<T>> read) {
+    EtcdReadClientPool pool = readClientPool;
+    return pool != null ? pool.read(read) : read.apply(etcdClient.getKVClient());
+  }
+
+  private boolean isSerializableRead() {
+    return ReadConsistency.SERIALIZABLE.equals(etcdConfigurationProperties.getReadConsistency());
+  }
+
+  // Completes with an EtcdException carrying the given message if the ETCD request fails.
+  private <T> CompletableFuture<T> withEtcdException(CompletableFuture<T> future,
+      String errorMessage) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    future.whenComplete((value, throwable) -> {
+      if (throwable == null) {
+        result.complete(value);
+        return;
+      }
+      Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+          ? throwable.getCause()
+          : throwable;
+      result.completeExceptionally(
+          cause instanceof EtcdException ? cause : new EtcdException(errorMessage, cause));
+    });
+    return result;
+  }
+
+  // Records the latency and size of a range read, returns the key values read.
+  private EtcdKeyValues recordRangeRead(String mode, long startNanos, EtcdKeyValues keyValues) {
+    metrics.recordRangeRead(mode, System.nanoTime() - startNanos, keyValues.size());
+    return keyValues;
+  }
+
+  // Page size of the paginated range reads, 0 or less means a range is read at once.
+  private int getRangePageSize() {
+    Integer rangePageSize = etcdConfigurationProperties.getRangePageSize();
+    return rangePageSize == null ? 0 : rangePageSize;
+  }
+
+  // True if the local replica is loaded and kept current instead of reading the ETCD cluster.
+  private boolean isReplicaServing() {
+    return Boolean.TRUE.equals(etcdConfigurationProperties.getReplicaEnabled())
+        && keyspaceReplica.isLoaded();
+  }
+
+  // True if the key values under a prefix can be read from the local replica, it holds only the
+  // keys under the watched prefixes if any are configured.
+  private boolean isReplicaServing(String searchKeyPrefix) {
+    return isReplicaServing()
+        && isCoveredBy(Collections.singletonList(searchKeyPrefix), replicaPrefixes);
+  }
+
+  // True if all keys under the given prefixes are under the covering prefixes, an empty list of
+  // prefixes stands for the whole keyspace.
+  private static boolean isCoveredBy(List<String> prefixes, List<String> coveringPrefixes) {
+    if (coveringPrefixes.isEmpty()) {
+      return true;
+    }
+    return !prefixes.isEmpty() && prefixes.stream().allMatch(prefix -> coveringPrefixes.stream()
+        .anyMatch(coveringPrefix -> StringUtils.startsWith(prefix, coveringPrefix)));
+  }
+
+  // Checks whether an ETCD client is configured with necessary connection properties or not.
+  private void checkConnection() {
+    if (etcdClient == null) {
+      throw new EtcdException(
+          "Connection to the ETCD cluster is null, call connect() method first.");
+    }
+  }
+
+  /**
+   * Appends application, profile and label in given key order (as the order in application yaml) to
+   * group and detect all the key value set that belongs to an application (client) with its
+   * environment (e.g. dev, prod etc...), see {@link KeyLayout}.
+   *
+   * @return the ETCD key prefix all the keys of the application environment start with.
+   */
+  public String createSearchPrefixFromApplicationParameters(String application, String profile,
+      String label) {
+    return getKeyLayout().searchPrefix(application, profile, label);
   }
 }
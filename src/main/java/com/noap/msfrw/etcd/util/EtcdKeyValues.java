@@ -0,0 +1,60 @@
+package com.noap.msfrw.etcd.util;
+
+import java.util.Map;
+
+/**
+ * Holder of the key value pairs read for an application environment together with the greatest
+ * ETCD modification revision among them and the ETCD revision they are read at.
+ * <p>
+ * Since any put into the range produces a greater modification revision and any delete decreases the
+ * number of keys, the (revision, size) pair changes whenever the content of the range changes. So
+ * that both can be used to detect whether a client already holds the current key values. The read
+ * revision tells whether a serializable read has been served by a member lagging behind a change.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdKeyValues {
+
+  private final Map<String, String> keyValues;
+  private final long revision;
+  private final long readRevision;
+
+  public EtcdKeyValues(Map<String, String> keyValues, long revision) {
+    this(keyValues, revision, 0L);
+  }
+
+  public EtcdKeyValues(Map<String, String> keyValues, long revision, long readRevision) {
+    this.keyValues = keyValues;
+    this.revision = revision;
+    this.readRevision = readRevision;
+  }
+
+  public Map<String, String> getKeyValues() {
+    return keyValues;
+  }
+
+  /**
+   * Returns the greatest modification revision of the key values, 0 if there is no key value.
+   *
+   * @return modification revision.
+   */
+  public long getRevision() {
+    return revision;
+  }
+
+  /**
+   * Returns the ETCD revision the key values are read at (the revision of the response header), 0
+   * if it is not known (e.g. they are read from the local replica).
+   *
+   * @return read revision.
+   */
+  public long getReadRevision() {
+    return readRevision;
+  }
+
+  public int size() {
+    return keyValues.size();
+  }
+}
@@ -0,0 +1,218 @@
+package com.noap.msfrw.etcd.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import io.etcd.jetcd.ByteSequence;
+
+/**
+ * The layout of the ETCD keys, compiled once from the configured key prefix order, key delimiter and
+ * escape character.
+ * <p>
+ * A key is formed as one segment per {@link KeyPrefix} of the order, each followed by the delimiter,
+ * and then the property key itself (which may contain the delimiter freely, e.g.
+ * "dev/sample/master/spring.datasource.url"). If an escape character is configured, a delimiter (or
+ * the escape character) preceded by the escape character is part of a segment value instead of its
+ * end, e.g. "dev.my\.app.master.key" belongs to the application "my.app".
+ * </p>
+ * <p>
+ * The position of each prefix is resolved when the layout is compiled. Extracting a segment of a
+ * key is a single scan of the key that stops at the segment, it allocates nothing but the segment
+ * value returned.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public final class KeyLayout {
+
+  public static final char DEFAULT_DELIMITER = '.';
+  public static final char NO_ESCAPE = '\0';
+  private static final String ALL_APPLICATIONS = "*";
+
+  private final List<KeyPrefix> keyPrefixOrder;
+  private final char delimiter;
+  private final char escape;
+  private final int applicationIndex;
+  private final int profileIndex;
+  private final int labelIndex;
+
+  /**
+   * Compiles a layout.
+   *
+   * @param keyPrefixOrder order of the prefix segments, null or empty if keys have no prefix.
+   * @param delimiter delimiter of the segments.
+   * @param escape escape character of the delimiter within a segment, {@link #NO_ESCAPE} if none.
+   */
+  public KeyLayout(List<KeyPrefix> keyPrefixOrder, char delimiter, char escape) {
+    if (delimiter == escape) {
+      throw new EtcdException("Key delimiter and escape character can not be the same character");
+    }
+    this.keyPrefixOrder =
+        keyPrefixOrder == null ? Collections.<KeyPrefix>emptyList() : keyPrefixOrder;
+    this.delimiter = delimiter;
+    this.escape = escape;
+    this.applicationIndex = this.keyPrefixOrder.indexOf(KeyPrefix.APPLICATION);
+    this.profileIndex = this.keyPrefixOrder.indexOf(KeyPrefix.PROFILE);
+    this.labelIndex = this.keyPrefixOrder.indexOf(KeyPrefix.LABEL);
+  }
+
+  /**
+   * Compiles a layout from the property values, a blank delimiter is the default delimiter and a
+   * blank escape character disables escaping.
+   */
+  public static KeyLayout of(List<KeyPrefix> keyPrefixOrder, String delimiter, String escape) {
+    return new KeyLayout(keyPrefixOrder, toChar(delimiter, DEFAULT_DELIMITER, "keyDelimiter"),
+        toChar(escape, NO_ESCAPE, "keyEscapeCharacter"));
+  }
+
+  /**
+   * True if this layout is compiled from the given property values.
+   */
+  public boolean isCompiledFrom(List<KeyPrefix> keyPrefixOrder, String delimiter, String escape) {
+    return (this.keyPrefixOrder == keyPrefixOrder
+        || (keyPrefixOrder == null && this.keyPrefixOrder.isEmpty()))
+        && this.delimiter == toChar(delimiter, DEFAULT_DELIMITER, "keyDelimiter")
+        && this.escape == toChar(escape, NO_ESCAPE, "keyEscapeCharacter");
+  }
+
+  public List<KeyPrefix> getKeyPrefixOrder() {
+    return keyPrefixOrder;
+  }
+
+  public char getDelimiter() {
+    return delimiter;
+  }
+
+  public int getSegmentCount() {
+    return keyPrefixOrder.size();
+  }
+
+  /**
+   * Forms the prefix of the keys of an application environment in the configured order. A blank
+   * parameter is left out of the prefix, delimiters within the parameters are escaped.
+   */
+  public String searchPrefix(String application, String profile, String label) {
+    StringBuilder prefix = new StringBuilder();
+    for (KeyPrefix keyPrefix : keyPrefixOrder) {
+      String segment;
+      switch (keyPrefix) {
+        case APPLICATION:
+          segment = application;
+          break;
+        case PROFILE:
+          segment = profile;
+          break;
+        case LABEL:
+          segment = label;
+          break;
+        default:
+          throw new EtcdException(
+              "Key Prefix Order retrieved from application.yaml contains wrong key, only application, label and profile words are allowed.");
+      }
+      if (StringUtils.isNotBlank(segment)) {
+        appendEscaped(prefix, segment).append(delimiter);
+      }
+    }
+    return prefix.toString();
+  }
+
+  /**
+   * Returns the application a key belongs to, "*" (all applications) if the layout or the key has
+   * no application segment.
+   */
+  public String applicationOf(String key) {
+    String application = segmentOf(key, applicationIndex);
+    return application == null ? ALL_APPLICATIONS : application;
+  }
+
+  /**
+   * Returns the value of a prefix segment of a key, null if the layout or the key has no such
+   * segment. A segment exists only if it is followed by a delimiter and a property key.
+   */
+  public String segmentOf(String key, KeyPrefix keyPrefix) {
+    switch (keyPrefix) {
+      case APPLICATION:
+        return segmentOf(key, applicationIndex);
+      case PROFILE:
+        return segmentOf(key, profileIndex);
+      default:
+        return segmentOf(key, labelIndex);
+    }
+  }
+
+  /**
+   * Returns the key with the given number of leading bytes removed, decoding only the rest. Used to
+   * turn the keys of a prefix range read into property keys.
+   */
+  public static String stripPrefix(ByteSequence key, int prefixByteLength) {
+    ByteSequence propertyKey = prefixByteLength > 0 ? key.substring(prefixByteLength) : key;
+    return propertyKey.toString(StandardCharsets.UTF_8);
+  }
+
+  private String segmentOf(String key, int segmentIndex) {
+    if (segmentIndex < 0 || key == null) {
+      return null;
+    }
+    int segment = 0;
+    int segmentStart = 0;
+    boolean escaped = false;
+    int length = key.length();
+    for (int i = 0; i < length; i++) {
+      char c = key.charAt(i);
+      if (c == escape && escape != NO_ESCAPE) {
+        escaped = true;
+        i++; // the next character belongs to the segment
+      } else if (c == delimiter) {
+        if (segment == segmentIndex) {
+          if (i + 1 >= length) { // no property key follows
+            return null;
+          }
+          return escaped ? unescape(key, segmentStart, i) : key.substring(segmentStart, i);
+        }
+        segment++;
+        segmentStart = i + 1;
+        escaped = false;
+      }
+    }
+    return null;
+  }
+
+  private String unescape(String key, int start, int end) {
+    StringBuilder segment = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char c = key.charAt(i);
+      if (c == escape && i + 1 < end) {
+        c = key.charAt(++i);
+      }
+      segment.append(c);
+    }
+    return segment.toString();
+  }
+
+  private StringBuilder appendEscaped(StringBuilder prefix, String segment) {
+    if (escape == NO_ESCAPE) {
+      return prefix.append(segment);
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (c == delimiter || c == escape) {
+        prefix.append(escape);
+      }
+      prefix.append(c);
+    }
+    return prefix;
+  }
+
+  private static char toChar(String value, char defaultValue, String propertyName) {
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    if (value.length() != 1) {
+      throw new EtcdException(
+          String.format("etcd.%s should be a single character, it is: '%s'", propertyName, value));
+    }
+    return value.charAt(0);
+  }
+}
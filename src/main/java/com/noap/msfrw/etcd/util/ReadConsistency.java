@@ -0,0 +1,18 @@
+package com.noap.msfrw.etcd.util;
+
+/**
+ * Enumerator for the consistency of the key value reads sent to the ETCD cluster.
+ * <ul>
+ * <li><b>LINEARIZABLE:</b> a read goes through the consensus of the cluster (i.e. the leader), it
+ * returns the latest committed key values.</li>
+ * <li><b>SERIALIZABLE:</b> a read is served locally by the member it is sent to, a follower may
+ * return key values a few revisions behind the leader but the read load is spread across the
+ * cluster.</li>
+ * </ul>
+ *
+ * @author UMUT
+ *
+ */
+public enum ReadConsistency {
+  LINEARIZABLE, SERIALIZABLE
+}
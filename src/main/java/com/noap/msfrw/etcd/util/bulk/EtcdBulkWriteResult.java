@@ -0,0 +1,105 @@
+package com.noap.msfrw.etcd.util.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a bulk write to the ETCD cluster, done in chunks each written with a single atomic
+ * transaction.
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdBulkWriteResult {
+
+  private final List<ChunkResult> chunks = new ArrayList<>();
+  private long elapsedMillis;
+
+  public void addChunk(ChunkResult chunk) {
+    chunks.add(chunk);
+  }
+
+  public List<ChunkResult> getChunks() {
+    return chunks;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Returns the number of keys written.
+   */
+  public int getKeysWritten() {
+    return chunks.stream().filter(ChunkResult::isSucceeded).mapToInt(ChunkResult::getKeyCount)
+        .sum();
+  }
+
+  /**
+   * Returns the write throughput in keys per second.
+   */
+  public double getKeysPerSecond() {
+    return elapsedMillis == 0 ? getKeysWritten() : getKeysWritten() * 1000d / elapsedMillis;
+  }
+
+  /**
+   * Returns true if all chunks are written.
+   */
+  public boolean isSucceeded() {
+    return chunks.stream().allMatch(ChunkResult::isSucceeded);
+  }
+
+  /**
+   * Result of a single chunk, a chunk is either written as a whole or not at all.
+   */
+  public static class ChunkResult {
+
+    private final int index;
+    private final String firstKey;
+    private final int keyCount;
+    private final boolean succeeded;
+    private final long revision;
+    private final String error;
+
+    public ChunkResult(int index, String firstKey, int keyCount, boolean succeeded, long revision,
+        String error) {
+      this.index = index;
+      this.firstKey = firstKey;
+      this.keyCount = keyCount;
+      this.succeeded = succeeded;
+      this.revision = revision;
+      this.error = error;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public String getFirstKey() {
+      return firstKey;
+    }
+
+    public int getKeyCount() {
+      return keyCount;
+    }
+
+    public boolean isSucceeded() {
+      return succeeded;
+    }
+
+    /**
+     * Returns the ETCD revision the chunk is written at, 0 if the chunk failed.
+     */
+    public long getRevision() {
+      return revision;
+    }
+
+    public String getError() {
+      return error;
+    }
+  }
+}
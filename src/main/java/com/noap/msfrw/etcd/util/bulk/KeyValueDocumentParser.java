@@ -0,0 +1,117 @@
+package com.noap.msfrw.etcd.util.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.lang3.StringUtils;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noap.msfrw.etcd.util.EtcdException;
+
+/**
+ * Parses a JSON, YAML or .properties document into flat key value pairs to be written to ETCD.
+ * <p>
+ * Nested objects are flattened into dotted keys (e.g. {"server": {"port": 8080}} becomes
+ * "server.port=8080") and list elements are indexed (e.g. "hosts[0]"), the same way Spring Boot binds
+ * them. An optional prefix (e.g. "dev.sample.") is put in front of each key, so that a document can be
+ * loaded for any application/profile/label combination. The document is read from a stream, it is
+ * never held as a whole string.
+ * </p>
+ * <p>
+ * YAML documents are loaded with the safe constructor, so that a document can only build standard
+ * types (maps, lists, scalars), never an arbitrary Java type named by a tag.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class KeyValueDocumentParser {
+
+  private final ObjectMapper objectMapper;
+
+  public KeyValueDocumentParser(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Parses a document.
+   *
+   * @param document stream of the document.
+   * @param format format of the document.
+   * @param keyPrefix prefix put in front of each key, may be null.
+   * @return flat key value pairs in document order.
+   */
+  public Map<String, String> parse(InputStream document, DocumentFormat format, String keyPrefix) {
+    Map<String, String> keyValues = new LinkedHashMap<>();
+    String prefix = StringUtils.defaultString(keyPrefix);
+    try {
+      switch (format) {
+        case PROPERTIES:
+          OrderedProperties properties = new OrderedProperties();
+          properties.load(new InputStreamReader(document, StandardCharsets.UTF_8));
+          properties.ordered.forEach((key, value) -> keyValues.put(prefix + key, value));
+          break;
+        case JSON:
+          flatten(prefix, objectMapper.readValue(document, Object.class), keyValues);
+          break;
+        case YAML:
+          for (Object yamlDocument : new Yaml(new SafeConstructor())
+              .loadAll(new InputStreamReader(document, StandardCharsets.UTF_8))) {
+            flatten(prefix, yamlDocument, keyValues);
+          }
+          break;
+        default:
+          throw new EtcdException("Unsupported document format: " + format);
+      }
+    } catch (IOException | YAMLException e) {
+      throw new EtcdException("Key value document could not be parsed as " + format, e);
+    }
+    return keyValues;
+  }
+
+  // Flattens a parsed tree into dotted keys.
+  private void flatten(String key, Object node, Map<String, String> keyValues) {
+    if (node instanceof Map) {
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+        String childKey = key.isEmpty() || key.endsWith(".") ? key + entry.getKey()
+            : key + "." + entry.getKey();
+        flatten(childKey, entry.getValue(), keyValues);
+      }
+    } else if (node instanceof Collection) {
+      int index = 0;
+      for (Object element : (Collection<?>) node) {
+        flatten(key + "[" + index++ + "]", element, keyValues);
+      }
+    } else if (!key.isEmpty()) {
+      keyValues.put(key, node == null ? "" : node.toString());
+    }
+  }
+
+  // Properties keeping the keys in document order, Properties#load puts them one by one.
+  private static final class OrderedProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Map<String, String> ordered = new LinkedHashMap<>();
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+      ordered.put(String.valueOf(key), String.valueOf(value));
+      return super.put(key, value);
+    }
+  }
+
+  /**
+   * Formats of the documents parsed.
+   */
+  public enum DocumentFormat {
+    JSON, YAML, PROPERTIES;
+  }
+}
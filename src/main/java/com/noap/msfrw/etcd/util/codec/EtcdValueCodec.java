@@ -0,0 +1,318 @@
+package com.noap.msfrw.etcd.util.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.noap.msfrw.etcd.util.EtcdException;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.OptionsUtil;
+import io.etcd.jetcd.options.PutOption;
+
+/**
+ * Encodes the values written to and decodes the values read from the ETCD cluster, so that large
+ * values (e.g. JSON or YAML blobs) can be stored compressed and/or split over several keys.
+ * <ul>
+ * <li><b>Compressed:</b> "gz:" followed by the GZIP compressed UTF-8 bytes of the value.</li>
+ * <li><b>Chunked:</b> the (possibly compressed) value bytes are split over chunk keys, each one
+ * "__chunks__/{key}\0" followed by the zero padded chunk index (000000, 000001, ...), written in
+ * the same transaction as the key itself, whose value is the manifest
+ * "chunked:{chunk count}:{byte count}:{CRC32}". Chunk keys
+ * live outside the configuration keys, so that a prefix read of the configuration keys never
+ * carries the chunks.</li>
+ * </ul>
+ * Values without a marker are plain values. A plain value that happens to start with a marker is
+ * always written compressed, so that it is read back as it is written. Decoded values are cached by
+ * key and modification revision, so that an unchanged blob is decompressed (and its chunks are
+ * read) once.
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdValueCodec {
+
+  public static final String GZIP_MARKER = "gz:";
+  public static final String CHUNKED_MARKER = "chunked:";
+  public static final String CHUNK_KEY_PREFIX = "__chunks__/";
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdValueCodec.class);
+  private static final ByteSequence GZIP = ByteSequence.from(GZIP_MARKER, StandardCharsets.UTF_8);
+  private static final ByteSequence CHUNKED =
+      ByteSequence.from(CHUNKED_MARKER, StandardCharsets.UTF_8);
+  private static final ByteSequence CHUNK_KEYS =
+      ByteSequence.from(CHUNK_KEY_PREFIX, StandardCharsets.UTF_8);
+  // separates the key from the chunk index, a key never contains it so that the chunk range of a
+  // key never covers the chunks of a longer key
+  private static final ByteSequence CHUNK_INDEX_SEPARATOR = ByteSequence.from(new byte[] {0});
+  private static final int BUFFER_SIZE = 8192;
+
+  private final int compressionThresholdBytes;
+  private final int chunkSizeBytes;
+  private final int cacheSize;
+  private final Map<String, DecodedValue> decodedValues;
+
+  /**
+   * Creates a codec.
+   *
+   * @param compressionThresholdBytes values of at least this many bytes are written compressed, 0
+   *        or less to write values uncompressed.
+   * @param chunkSizeBytes values (after compression) larger than this are split over chunk keys of
+   *        this size, 0 or less to write values as a single key.
+   * @param cacheSize maximum number of decoded values cached, 0 or less for no cache.
+   */
+  public EtcdValueCodec(int compressionThresholdBytes, int chunkSizeBytes, int cacheSize) {
+    this.compressionThresholdBytes = compressionThresholdBytes;
+    this.chunkSizeBytes = chunkSizeBytes;
+    this.cacheSize = cacheSize;
+    this.decodedValues = new LinkedHashMap<String, DecodedValue>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DecodedValue> eldest) {
+        return size() > EtcdValueCodec.this.cacheSize;
+      }
+    };
+  }
+
+  public boolean isChunkingEnabled() {
+    return chunkSizeBytes > 0;
+  }
+
+  /**
+   * True if the key is a chunk key of a chunked value, not a configuration key.
+   */
+  public boolean isChunkKey(ByteSequence key) {
+    return key.startsWith(CHUNK_KEYS);
+  }
+
+  /**
+   * True if the value is the manifest of a chunked value, its chunks are needed to decode it.
+   */
+  public boolean isChunked(ByteSequence value) {
+    return value.startsWith(CHUNKED);
+  }
+
+  /**
+   * Decodes a value read, unless it is a chunked value not cached yet.
+   *
+   * @return the decoded value, null if the chunks of the value are to be read and passed to
+   *         {@link #decodeChunks(KeyValue, List)}.
+   */
+  public String decode(KeyValue keyValue) {
+    ByteSequence value = keyValue.getValue();
+    boolean chunked = isChunked(value);
+    if (!chunked && !value.startsWith(GZIP)) {
+      return value.toString();
+    }
+    String key = keyValue.getKey().toString();
+    String cached = getCached(key, keyValue.getModRevision());
+    if (cached != null || chunked) {
+      return cached;
+    }
+    return cache(key, keyValue.getModRevision(), decodePayload(key, value.getBytes()));
+  }
+
+  /**
+   * Decodes a chunked value from its chunks.
+   *
+   * @param manifest key value holding the manifest of the chunked value.
+   * @param chunks chunk key values, in key order.
+   * @return the decoded value.
+   * @throws EtcdException if the chunks do not match the manifest, e.g. the value is written again
+   *         while its chunks are read.
+   */
+  public String decodeChunks(KeyValue manifest, List<KeyValue> chunks) {
+    String key = manifest.getKey().toString();
+    String[] fields = manifest.getValue().toString().substring(CHUNKED_MARKER.length()).split(":");
+    int count;
+    int length;
+    long checksum;
+    try {
+      count = Integer.parseInt(fields[0]);
+      length = Integer.parseInt(fields[1]);
+      checksum = Long.parseLong(fields[2], 16);
+    } catch (RuntimeException e) {
+      logger.warn("Value of key: {} is not a valid chunked value manifest, it is read as it is",
+          key);
+      return manifest.getValue().toString();
+    }
+    if (chunks.size() != count) {
+      throw new EtcdException(String.format(
+          "Value of key: %s has %d chunks instead of %d, it is written again while being read", key,
+          chunks.size(), count));
+    }
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(length);
+    for (KeyValue chunk : chunks) {
+      byte[] bytes = chunk.getValue().getBytes();
+      payload.write(bytes, 0, bytes.length);
+    }
+    byte[] bytes = payload.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    if (bytes.length != length || crc.getValue() != checksum) {
+      throw new EtcdException(String.format(
+          "Chunks of the value of key: %s do not match its manifest, it is written again while being read",
+          key));
+    }
+    return cache(key, manifest.getModRevision(), decodePayload(key, bytes));
+  }
+
+  /**
+   * Returns the first chunk key of a chunked value, chunk keys range up to
+   * {@link #chunkRangeEnd(ByteSequence)}.
+   */
+  public ByteSequence chunkRangeStart(ByteSequence key) {
+    return chunkKey(key, 0);
+  }
+
+  public ByteSequence chunkRangeEnd(ByteSequence key) {
+    return OptionsUtil.prefixEndOf(CHUNK_KEYS.concat(key).concat(CHUNK_INDEX_SEPARATOR));
+  }
+
+  /**
+   * Encodes a value to be written as a single key, compressed if it is large enough.
+   */
+  public ByteSequence encodeValue(String value) {
+    return ByteSequence.from(encodePayload(value));
+  }
+
+  /**
+   * Returns the key of the chunked value a chunk key belongs to.
+   */
+  public String keyOfChunk(ByteSequence chunkKey) {
+    byte[] bytes = chunkKey.getBytes();
+    int end = CHUNK_KEYS.size();
+    while (end < bytes.length && bytes[end] != 0) { // the key ends at the chunk index separator
+      end++;
+    }
+    return new String(bytes, CHUNK_KEYS.size(), end - CHUNK_KEYS.size(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the operations writing a value, to be committed within a single transaction: the puts
+   * of its chunks and of its manifest if it is chunked, then the deletion of the chunks left from a
+   * previous, larger value of the key.
+   */
+  public List<Op> encode(String key, String value) {
+    return encode(key, value, true);
+  }
+
+  /**
+   * Same as {@link #encode(String, String)}, leaving the deletion of the chunks left out if the key
+   * is known to have no chunks, so that a value takes a single operation unless it is chunked.
+   *
+   * @param mayHaveChunks false if no previous value of the key is chunked.
+   */
+  public List<Op> encode(String key, String value, boolean mayHaveChunks) {
+    ByteSequence keyBytes = ByteSequence.from(key, StandardCharsets.UTF_8);
+    byte[] payload = encodePayload(value);
+    List<Op> ops = new ArrayList<>();
+    int count = 0;
+    if (isChunkingEnabled() && payload.length > chunkSizeBytes) {
+      for (int from = 0; from < payload.length; from += chunkSizeBytes) {
+        byte[] chunk = new byte[Math.min(chunkSizeBytes, payload.length - from)];
+        System.arraycopy(payload, from, chunk, 0, chunk.length);
+        ops.add(Op.put(chunkKey(keyBytes, count++), ByteSequence.from(chunk), PutOption.DEFAULT));
+      }
+      CRC32 crc = new CRC32();
+      crc.update(payload, 0, payload.length);
+      String manifest = CHUNKED_MARKER + count + ":" + payload.length + ":"
+          + Long.toHexString(crc.getValue());
+      ops.add(Op.put(keyBytes, ByteSequence.from(manifest, StandardCharsets.UTF_8),
+          PutOption.DEFAULT));
+    } else {
+      ops.add(Op.put(keyBytes, ByteSequence.from(payload), PutOption.DEFAULT));
+    }
+    if (isChunkingEnabled() && mayHaveChunks) {
+      ops.add(Op.delete(chunkKey(keyBytes, count),
+          DeleteOption.newBuilder().withRange(chunkRangeEnd(keyBytes)).build()));
+    }
+    return ops;
+  }
+
+  public synchronized int getCachedCount() {
+    return decodedValues.size();
+  }
+
+  private ByteSequence chunkKey(ByteSequence key, int index) {
+    return CHUNK_KEYS.concat(key).concat(CHUNK_INDEX_SEPARATOR)
+        .concat(ByteSequence.from(String.format("%06d", index), StandardCharsets.UTF_8));
+  }
+
+  private byte[] encodePayload(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    boolean marked = value.startsWith(GZIP_MARKER) || value.startsWith(CHUNKED_MARKER);
+    if (!marked && (compressionThresholdBytes <= 0 || bytes.length < compressionThresholdBytes)) {
+      return bytes;
+    }
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 16);
+    byte[] marker = GZIP.getBytes();
+    compressed.write(marker, 0, marker.length);
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // a compressed value larger than the plain one is not worth it, unless it escapes a marker
+    return marked || compressed.size() < bytes.length ? compressed.toByteArray() : bytes;
+  }
+
+  // Decodes the bytes of a value that is not chunked: compressed or plain.
+  private String decodePayload(String key, byte[] bytes) {
+    if (bytes.length < GZIP.size() || !ByteSequence.from(bytes).startsWith(GZIP)) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+    ByteArrayOutputStream decompressed = new ByteArrayOutputStream(bytes.length * 4);
+    try (InputStream in = new GZIPInputStream(
+        new ByteArrayInputStream(bytes, GZIP.size(), bytes.length - GZIP.size()))) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        decompressed.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      logger.warn("Value of key: {} is not a valid compressed value, it is read as it is", key);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+    return new String(decompressed.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private synchronized String getCached(String key, long modRevision) {
+    DecodedValue decoded = cacheSize > 0 ? decodedValues.get(key) : null;
+    return decoded != null && decoded.modRevision == modRevision ? decoded.value : null;
+  }
+
+  private synchronized String cache(String key, long modRevision, String value) {
+    if (cacheSize > 0) {
+      decodedValues.put(key, new DecodedValue(modRevision, value));
+    }
+    return value;
+  }
+
+  // A decoded value together with the modification revision of the key it is decoded at.
+  private static final class DecodedValue {
+
+    private final long modRevision;
+    private final String value;
+
+    private DecodedValue(long modRevision, String value) {
+      this.modRevision = modRevision;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.noap.msfrw.etcd.util.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Micrometer instrumentation of the ETCD and REDIS interactions of this server.
+ * <p>
+ * Meters recorded (exposed by the actuator metrics and prometheus end points):
+ * <ul>
+ * <li><b>etcd.range.read:</b> latency of the key range reads, tagged by the read mode (single, paged,
+ * txn, replica)</li>
+ * <li><b>etcd.range.read.keys:</b> number of keys returned by a range read</li>
+ * <li><b>etcd.put:</b> latency of the writes, tagged by the operation (put, txn)</li>
+ * <li><b>etcd.watch.events:</b> number of watch events received, tagged by the event type (its rate
+ * is the watch events per second)</li>
+ * <li><b>etcd.watch.lag:</b> time from a watch response arriving from ETCD to its processing being
+ * completed</li>
+ * <li><b>etcd.refresh.delay:</b> time a refresh event is held back by the refresh coalescing</li>
+ * <li><b>etcd.refresh.published:</b> number of refresh events published, tagged by application</li>
+ * <li><b>redis.lock.wait:</b> time spent waiting for the REDIS distributed lock, tagged by the
+ * outcome (acquired, not_acquired, interrupted)</li>
+ * </ul>
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdMetrics {
+
+  private final MeterRegistry registry;
+  // meters are registered once per tag value, recording is a map lookup and a record call only
+  private final Map<String, Timer> rangeReadTimers = new ConcurrentHashMap<>();
+  private final Map<String, DistributionSummary> rangeReadKeySummaries = new ConcurrentHashMap<>();
+  private final Map<String, Timer> putTimers = new ConcurrentHashMap<>();
+  private final Map<String, Counter> watchEventCounters = new ConcurrentHashMap<>();
+  private final Map<String, Counter> refreshPublishedCounters = new ConcurrentHashMap<>();
+  private final Map<String, Timer> lockWaitTimers = new ConcurrentHashMap<>();
+  private final Timer watchLagTimer;
+  private final Timer refreshDelayTimer;
+
+  public EtcdMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.watchLagTimer = Timer.builder("etcd.watch.lag")
+        .description("Time from a watch response arriving to its processing being completed")
+        .register(registry);
+    this.refreshDelayTimer = Timer.builder("etcd.refresh.delay")
+        .description("Time a refresh event is held back by the refresh coalescing")
+        .register(registry);
+  }
+
+  /**
+   * Creates an instance that records nothing, for the components created without a meter registry.
+   *
+   * @return a no-op {@link EtcdMetrics}
+   */
+  public static EtcdMetrics noop() {
+    return new EtcdMetrics(new CompositeMeterRegistry());
+  }
+
+  public void recordRangeRead(String mode, long elapsedNanos, int keyCount) {
+    rangeReadTimers.computeIfAbsent(mode,
+        tag -> Timer.builder("etcd.range.read").description("Latency of the ETCD key range reads")
+            .tag("mode", tag).register(registry))
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    rangeReadKeySummaries.computeIfAbsent(mode,
+        tag -> DistributionSummary.builder("etcd.range.read.keys")
+            .description("Number of keys returned by an ETCD key range read").tag("mode", tag)
+            .register(registry))
+        .record(keyCount);
+  }
+
+  public void recordPut(String operation, long elapsedNanos) {
+    putTimers.computeIfAbsent(operation,
+        tag -> Timer.builder("etcd.put").description("Latency of the ETCD writes")
+            .tag("operation", tag).register(registry))
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void countWatchEvent(String eventType) {
+    watchEventCounters.computeIfAbsent(eventType,
+        tag -> Counter.builder("etcd.watch.events")
+            .description("Number of ETCD watch events received").tag("type", tag)
+            .register(registry))
+        .increment();
+  }
+
+  public void recordWatchLag(long elapsedNanos) {
+    watchLagTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordRefreshDelay(long elapsedMillis) {
+    refreshDelayTimer.record(elapsedMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void countRefreshPublished(String application) {
+    refreshPublishedCounters.computeIfAbsent(application,
+        tag -> Counter.builder("etcd.refresh.published")
+            .description("Number of refresh events published").tag("application", tag)
+            .register(registry))
+        .increment();
+  }
+
+  public void recordLockWait(long elapsedNanos, String outcome) {
+    lockWaitTimers.computeIfAbsent(outcome,
+        tag -> Timer.builder("redis.lock.wait")
+            .description("Time spent waiting for the REDIS distributed lock").tag("outcome", tag)
+            .register(registry))
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public MeterRegistry getRegistry() {
+    return registry;
+  }
+}
@@ -0,0 +1,167 @@
+package com.noap.msfrw.etcd.util.pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+
+/**
+ * A pool of ETCD clients, each pinned to a single endpoint of the cluster, that key value reads are
+ * spread over. Combined with serializable reads, which any member serves locally, the read load is
+ * spread across the cluster instead of piling onto the leader.
+ * <p>
+ * Each endpoint keeps an exponentially weighted moving average of its read latency and the number
+ * of its reads in flight. A read picks two random endpoints and is sent to the one with the lower
+ * <i>latency x (in flight + 1)</i> score ("power of two choices"), so that a slow or busy member gets
+ * less load without all reads rushing to the single fastest one. An endpoint whose read fails is
+ * left out for a while, unless all endpoints are left out.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdReadClientPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdReadClientPool.class);
+  private static final double LATENCY_SMOOTHING = 0.2;
+  private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final List<Endpoint> endpoints = new ArrayList<>();
+
+  /**
+   * Creates a pool of the given clients.
+   *
+   * @param clientsByEndpoint clients mapped to the single endpoint each one is connected to.
+   */
+  public EtcdReadClientPool(Map<String, Client> clientsByEndpoint) {
+    if (clientsByEndpoint.isEmpty()) {
+      throw new IllegalArgumentException("A read client pool needs at least one endpoint");
+    }
+    clientsByEndpoint.forEach((endpoint, client) -> endpoints.add(new Endpoint(endpoint, client)));
+  }
+
+  /**
+   * Sends a read to the endpoint currently preferred and records its latency once it completes.
+   *
+   * @param read read to send, given the KV client of the endpoint picked. Multiple requests sent by
+   *        it (e.g. the pages of a range) all go to the same endpoint and are measured as one.
+   * @return the future of the read.
+   */
+  public <T> CompletableFuture<T> read(Function<KV, CompletableFuture<T>> read) {
+    Endpoint endpoint = pick();
+    long start = endpoint.started();
+    CompletableFuture<T> future;
+    try {
+      future = read.apply(endpoint.client.getKVClient());
+    } catch (RuntimeException e) {
+      endpoint.completed(start, false);
+      throw e;
+    }
+    return future.whenComplete((value, throwable) -> endpoint.completed(start, throwable == null));
+  }
+
+  /**
+   * Returns the moving average read latency of each endpoint in milliseconds, 0 for an endpoint not
+   * read yet.
+   */
+  public Map<String, Double> getLatencyMillis() {
+    Map<String, Double> latencies = new LinkedHashMap<>();
+    endpoints.forEach(endpoint -> latencies.put(endpoint.name, endpoint.latencyNanos / 1e6));
+    return Collections.unmodifiableMap(latencies);
+  }
+
+  public int size() {
+    return endpoints.size();
+  }
+
+  /**
+   * Closes the clients of the pool.
+   */
+  public void close() {
+    for (Endpoint endpoint : endpoints) {
+      try {
+        endpoint.client.close();
+      } catch (RuntimeException e) {
+        logger.warn("Read client of the etcd endpoint: {} could not be closed", endpoint.name, e);
+      }
+    }
+  }
+
+  // Power of two choices among the endpoints not backing off after a failure (all if none is).
+  private Endpoint pick() {
+    long now = System.nanoTime();
+    List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.isAvailable(now)) {
+        candidates.add(endpoint);
+      }
+    }
+    if (candidates.isEmpty()) {
+      candidates = endpoints;
+    }
+    int size = candidates.size();
+    if (size == 1) {
+      return candidates.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    Endpoint a = candidates.get(first);
+    Endpoint b = candidates.get(second);
+    return a.score() <= b.score() ? a : b;
+  }
+
+  private static final class Endpoint {
+
+    private final String name;
+    private final Client client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double latencyNanos; // 0 until the first read completes
+    private volatile long backoffUntilNanos;
+    private volatile boolean backingOff = false;
+
+    private Endpoint(String name, Client client) {
+      this.name = name;
+      this.client = client;
+    }
+
+    private long started() {
+      inFlight.incrementAndGet();
+      return System.nanoTime();
+    }
+
+    private synchronized void completed(long start, boolean succeeded) {
+      inFlight.decrementAndGet();
+      long now = System.nanoTime();
+      if (!succeeded) {
+        backoffUntilNanos = now + FAILURE_BACKOFF_NANOS;
+        backingOff = true;
+        return;
+      }
+      long latency = now - start;
+      latencyNanos = latencyNanos == 0 ? latency
+          : latencyNanos + LATENCY_SMOOTHING * (latency - latencyNanos);
+    }
+
+    private boolean isAvailable(long now) {
+      return !backingOff || now - backoffUntilNanos >= 0;
+    }
+
+    private double score() {
+      return latencyNanos * (inFlight.get() + 1);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.noap.msfrw.etcd.util.EtcdKeyValues;
+
+/**
+ * A local materialized view of the ETCD keyspace.
+ * <p>
+ * The replica is loaded once with a full range read of the keyspace and then kept current by
+ * applying the PUT and DELETE events of the ETCD watcher. Each key remembers the revision it is
+ * modified at, so that events already reflected by the loaded snapshot (or delivered twice after a
+ * watcher reconnects) are ignored. Reads are served from memory and do not need a network round trip
+ * to the ETCD cluster. Key values are indexed by a {@link KeyPrefixTrie}, so that the key values of
+ * any application/profile/label combination are found with a single lookup.
+ * </p>
+ * <p>
+ * Events may be applied by several watchers over disjoint key ranges, each one in revision order but
+ * not in order with the others, so an event of a key unknown to the replica is only considered stale
+ * against the revision the replica is loaded at.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdKeyspaceReplica {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdKeyspaceReplica.class);
+
+  private final int indexDepth;
+  private final char delimiter;
+  private volatile KeyPrefixTrie keyValues;
+  private volatile long revision = 0L;
+  private long loadedRevision = 0L; // guarded by this
+  private volatile boolean loaded = false;
+
+  /**
+   * Creates an empty replica.
+   *
+   * @param indexDepth number of key segments indexed, the size of the key prefix order.
+   * @param delimiter delimiter of the key segments.
+   */
+  public EtcdKeyspaceReplica(int indexDepth, char delimiter) {
+    this.indexDepth = indexDepth;
+    this.delimiter = delimiter;
+    this.keyValues = new KeyPrefixTrie(indexDepth, delimiter);
+  }
+
+  /**
+   * Replaces the content of the replica with a full snapshot of the keyspace.
+   *
+   * @param snapshot all key value pairs of the keyspace.
+   * @param snapshotModRevisions modification revision of each key in the snapshot.
+   * @param snapshotRevision ETCD revision the snapshot is read at.
+   */
+  public synchronized void load(Map<String, String> snapshot, Map<String, Long> snapshotModRevisions,
+      long snapshotRevision) {
+    KeyPrefixTrie newKeyValues = new KeyPrefixTrie(indexDepth, delimiter);
+    for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+      Long modRevision = snapshotModRevisions.get(entry.getKey());
+      newKeyValues.put(entry.getKey(), entry.getValue(), modRevision == null ? 0L : modRevision);
+    }
+    this.keyValues = newKeyValues;
+    this.revision = snapshotRevision;
+    this.loadedRevision = snapshotRevision;
+    this.loaded = true;
+    logger.info("ETCD keyspace replica is loaded with {} keys at revision: {}", snapshot.size(),
+        snapshotRevision);
+  }
+
+  /**
+   * Replaces the content of the replica with a snapshot persisted earlier.
+   *
+   * @param snapshot keyspace snapshot.
+   */
+  public void load(KeyspaceSnapshot snapshot) {
+    load(snapshot.getKeyValues(), snapshot.getModRevisions(), snapshot.getRevision());
+  }
+
+  /**
+   * Takes a consistent snapshot of the replica, to be persisted.
+   *
+   * @return all key value pairs with their modification revisions and the replica revision.
+   */
+  public synchronized KeyspaceSnapshot createSnapshot() {
+    Map<String, String> snapshot = new HashMap<>();
+    Map<String, Long> snapshotModRevisions = new HashMap<>();
+    keyValues.copyTo(snapshot, snapshotModRevisions);
+    return new KeyspaceSnapshot(snapshot, snapshotModRevisions, revision);
+  }
+
+  /**
+   * Applies a PUT event to the replica.
+   *
+   * @return true if the event is applied, false if it is older than the state already held.
+   */
+  public synchronized boolean put(String key, String value, long modRevision) {
+    if (isStale(key, modRevision)) {
+      return false;
+    }
+    keyValues.put(key, value, modRevision);
+    revision = Math.max(revision, modRevision);
+    return true;
+  }
+
+  /**
+   * Applies a DELETE event to the replica.
+   *
+   * @return true if the event is applied, false if it is older than the state already held.
+   */
+  public synchronized boolean delete(String key, long modRevision) {
+    if (isStale(key, modRevision)) {
+      return false;
+    }
+    keyValues.remove(key);
+    revision = Math.max(revision, modRevision);
+    return true;
+  }
+
+  /**
+   * Returns all key value pairs whose keys start with the given prefix, the prefix being removed from
+   * the keys returned.
+   *
+   * @param keyPrefix prefix of the keys, empty for the whole keyspace.
+   * @return key value pairs with their greatest modification revision.
+   */
+  public EtcdKeyValues getKeyValues(String keyPrefix) {
+    return keyValues.getKeyValues(keyPrefix);
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  public int size() {
+    return keyValues.size();
+  }
+
+  // an event is stale if the snapshot (or a previous event) already reflects a newer revision
+  // (a zero revision is an event whose revision is not known, it is always applied)
+  private boolean isStale(String key, long modRevision) {
+    if (modRevision == 0L) {
+      return false;
+    }
+    Long current = keyValues.getModRevision(key);
+    if (current != null) {
+      return modRevision <= current;
+    }
+    // key is unknown to the replica, events up to the snapshot revision are already reflected
+    return modRevision <= loadedRevision;
+  }
+}
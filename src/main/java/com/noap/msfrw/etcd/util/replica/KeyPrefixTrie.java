@@ -0,0 +1,208 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.noap.msfrw.etcd.util.EtcdKeyValues;
+
+/**
+ * A prefix trie index over the delimited segments of the ETCD keys held locally.
+ * <p>
+ * Keys are formed as <i>prefix segments</i> ordered by the configured key prefix order (e.g.
+ * profile.application.label) followed by the actual property key. Each trie node stands for one
+ * prefix (e.g. "dev." or "dev.sample.") and each key value pair is held once, by the deepest node
+ * its key reaches, with that node's prefix already removed from its key. So that any
+ * application/profile/label combination is answered by walking at most key prefix order size nodes
+ * down and the sub trie below, without any regular expression or per-key substring operation for
+ * the keys of the node reached. Each value is held with its modification revision, so that the
+ * revision of any sub map is known.
+ * </p>
+ * <p>
+ * Only the first <i>depth</i> segments of a key are indexed, since a search prefix never contains
+ * more segments than the key prefix order. The last segment of a key is never indexed, it is always
+ * (a part of) the property key itself.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class KeyPrefixTrie {
+
+  private final int depth;
+  private final char delimiter;
+  private final Node root = new Node();
+  private volatile int size = 0;
+
+  public KeyPrefixTrie(int depth, char delimiter) {
+    this.depth = Math.max(depth, 0);
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * Adds or replaces a key value pair.
+   */
+  public synchronized void put(String key, String value, long modRevision) {
+    Node current = root;
+    int segmentStart = 0;
+    for (int level = 0; level < depth; level++) {
+      int segmentEnd = key.indexOf(delimiter, segmentStart);
+      if (segmentEnd < 0) { // last segment is the property key itself
+        break;
+      }
+      current = current.children.computeIfAbsent(key.substring(segmentStart, segmentEnd),
+          s -> new Node());
+      segmentStart = segmentEnd + 1;
+    }
+    if (current.entries.put(segmentStart == 0 ? key : key.substring(segmentStart),
+        new RevisionedValue(value, modRevision)) == null) {
+      size++;
+    }
+  }
+
+  /**
+   * Removes a key value pair, prunes the nodes left empty.
+   */
+  public synchronized void remove(String key) {
+    if (remove(root, key, 0, 0)) {
+      size--;
+    }
+  }
+
+  // Removes the key below the node, pruning the child nodes left empty on the way back.
+  private boolean remove(Node node, String key, int segmentStart, int level) {
+    int segmentEnd = level < depth ? key.indexOf(delimiter, segmentStart) : -1;
+    if (segmentEnd < 0) {
+      return node.entries.remove(key.substring(segmentStart)) != null;
+    }
+    String segment = key.substring(segmentStart, segmentEnd);
+    Node child = node.children.get(segment);
+    if (child == null || !remove(child, key, segmentEnd + 1, level + 1)) {
+      return false;
+    }
+    if (child.entries.isEmpty() && child.children.isEmpty()) {
+      node.children.remove(segment);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the value of a full key, null if no such key exists.
+   */
+  public String get(String key) {
+    RevisionedValue revisionedValue = find(key);
+    return revisionedValue == null ? null : revisionedValue.value;
+  }
+
+  /**
+   * Returns the modification revision of a full key, null if no such key exists.
+   */
+  public Long getModRevision(String key) {
+    RevisionedValue revisionedValue = find(key);
+    return revisionedValue == null ? null : revisionedValue.modRevision;
+  }
+
+  private RevisionedValue find(String key) {
+    Node current = root;
+    int segmentStart = 0;
+    for (int level = 0; level < depth; level++) {
+      int segmentEnd = key.indexOf(delimiter, segmentStart);
+      if (segmentEnd < 0) {
+        break;
+      }
+      current = current.children.get(key.substring(segmentStart, segmentEnd));
+      if (current == null) {
+        return null;
+      }
+      segmentStart = segmentEnd + 1;
+    }
+    return current.entries.get(segmentStart == 0 ? key : key.substring(segmentStart));
+  }
+
+  /**
+   * Returns all key value pairs whose keys start with the given prefix, the prefix being removed from
+   * the keys returned. The prefix is expected to be a sequence of segments each followed by the
+   * delimiter (e.g. "dev.sample."), an empty or null prefix returns the whole keyspace.
+   *
+   * @param keyPrefix prefix of the keys.
+   * @return a snapshot of the matching key value pairs with their greatest modification revision.
+   */
+  public EtcdKeyValues getKeyValues(String keyPrefix) {
+    Node current = root;
+    int segmentStart = 0;
+    int prefixLength = keyPrefix == null ? 0 : keyPrefix.length();
+    for (int level = 0; level < depth && segmentStart < prefixLength; level++) {
+      int segmentEnd = keyPrefix.indexOf(delimiter, segmentStart);
+      if (segmentEnd < 0) {
+        break;
+      }
+      current = current.children.get(keyPrefix.substring(segmentStart, segmentEnd));
+      if (current == null) {
+        return new EtcdKeyValues(new HashMap<>(), 0L);
+      }
+      segmentStart = segmentEnd + 1;
+    }
+    // a prefix deeper than the indexed segments (or not delimited) filters the closest sub trie
+    String remainingPrefix = segmentStart >= prefixLength ? "" : keyPrefix.substring(segmentStart);
+    Map<String, String> result = new HashMap<>();
+    long revision = collect(current, "", remainingPrefix, result);
+    return new EtcdKeyValues(result, revision);
+  }
+
+  // Adds the key value pairs of the sub trie whose keys (relative to the node the walk started at)
+  // start with the filter, the filter being removed. Returns their greatest modification revision.
+  private long collect(Node node, String path, String filter, Map<String, String> result) {
+    long revision = 0L;
+    for (Map.Entry<String, RevisionedValue> entry : node.entries.entrySet()) {
+      String key = path.isEmpty() ? entry.getKey() : path + entry.getKey();
+      if (filter.isEmpty() || key.startsWith(filter)) {
+        RevisionedValue revisionedValue = entry.getValue();
+        result.put(filter.isEmpty() ? key : key.substring(filter.length()), revisionedValue.value);
+        revision = Math.max(revision, revisionedValue.modRevision);
+      }
+    }
+    for (Map.Entry<String, Node> child : node.children.entrySet()) {
+      String childPath = path + child.getKey() + delimiter;
+      // a sub trie is skipped once its path and the filter differ
+      if (childPath.startsWith(filter) || filter.startsWith(childPath)) {
+        revision = Math.max(revision, collect(child.getValue(), childPath, filter, result));
+      }
+    }
+    return revision;
+  }
+
+  /**
+   * Copies all full keys with their values and modification revisions to the given maps.
+   */
+  public void copyTo(Map<String, String> values, Map<String, Long> modRevisions) {
+    copyTo(root, "", values, modRevisions);
+  }
+
+  private void copyTo(Node node, String path, Map<String, String> values,
+      Map<String, Long> modRevisions) {
+    for (Map.Entry<String, RevisionedValue> entry : node.entries.entrySet()) {
+      String key = path.isEmpty() ? entry.getKey() : path + entry.getKey();
+      values.put(key, entry.getValue().value);
+      modRevisions.put(key, entry.getValue().modRevision);
+    }
+    node.children.forEach(
+        (segment, child) -> copyTo(child, path + segment + delimiter, values, modRevisions));
+  }
+
+  public int size() {
+    return size;
+  }
+  private static final class Node {
+    private final Map<String, Node> children = new ConcurrentHashMap<>();
+    private final Map<String, RevisionedValue> entries = new ConcurrentHashMap<>();
+  }
+
+  private static final class RevisionedValue {
+    private final String value;
+    private final long modRevision;
+
+    private RevisionedValue(String value, long modRevision) {
+      this.value = value;
+      this.modRevision = modRevision;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holder of a point in time copy of the ETCD keyspace: all key value pairs, the modification
+ * revision of each key and the ETCD revision the copy reflects. If the keyspace is copied only
+ * under some key prefixes, the copy holds the prefixes too, since it is complete only under them.
+ *
+ * @author UMUT
+ *
+ */
+public class KeyspaceSnapshot {
+
+  private final Map<String, String> keyValues;
+  private final Map<String, Long> modRevisions;
+  private final long revision;
+  private final List<String> prefixes;
+
+  public KeyspaceSnapshot(Map<String, String> keyValues, Map<String, Long> modRevisions,
+      long revision) {
+    this(keyValues, modRevisions, revision, Collections.emptyList());
+  }
+
+  public KeyspaceSnapshot(Map<String, String> keyValues, Map<String, Long> modRevisions,
+      long revision, List<String> prefixes) {
+    this.keyValues = keyValues;
+    this.modRevisions = modRevisions;
+    this.revision = revision;
+    this.prefixes = prefixes;
+  }
+
+  public Map<String, String> getKeyValues() {
+    return keyValues;
+  }
+
+  public Map<String, Long> getModRevisions() {
+    return modRevisions;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  /**
+   * Returns the key prefixes the keyspace is copied under, empty if the whole keyspace is copied.
+   *
+   * @return key prefixes.
+   */
+  public List<String> getPrefixes() {
+    return prefixes;
+  }
+
+  public int size() {
+    return keyValues.size();
+  }
+}
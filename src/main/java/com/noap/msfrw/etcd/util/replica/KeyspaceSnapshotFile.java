@@ -0,0 +1,162 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local file holding a {@link KeyspaceSnapshot} in a compact binary form.
+ * <p>
+ * Layout: magic number, format version, revision, prefix count and the UTF-8 bytes of each key
+ * prefix the keyspace is copied under, key count, then for each key its UTF-8 key bytes,
+ * UTF-8 value bytes (each preceded by its length) and modification revision, followed by a CRC32 of
+ * everything before it. The file is written to a temporary file first and then moved over the
+ * previous one, so that a crash while writing never leaves a half written snapshot behind. It is read
+ * through a memory mapping, without copying the file into an intermediate buffer. A missing, foreign
+ * or corrupt file is reported as no snapshot at all, it never prevents the server from starting.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class KeyspaceSnapshotFile {
+
+  private static final Logger logger = LoggerFactory.getLogger(KeyspaceSnapshotFile.class);
+  private static final int MAGIC = 0x45544344; // "ETCD"
+  private static final int FORMAT_VERSION = 2;
+  private static final int CHECKSUM_LENGTH = Long.BYTES;
+
+  private final Path path;
+
+  public KeyspaceSnapshotFile(Path path) {
+    this.path = path;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Persists a snapshot, replacing the previous one.
+   *
+   * @param snapshot keyspace snapshot.
+   * @throws IOException if the file can not be written.
+   */
+  public void write(KeyspaceSnapshot snapshot) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    CheckedOutputStream checked =
+        new CheckedOutputStream(Files.newOutputStream(temporary), new CRC32());
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(snapshot.getRevision());
+      out.writeInt(snapshot.getPrefixes().size());
+      for (String prefix : snapshot.getPrefixes()) {
+        writeString(out, prefix);
+      }
+      out.writeInt(snapshot.size());
+      for (Map.Entry<String, String> entry : snapshot.getKeyValues().entrySet()) {
+        writeString(out, entry.getKey());
+        writeString(out, entry.getValue());
+        Long modRevision = snapshot.getModRevisions().get(entry.getKey());
+        out.writeLong(modRevision == null ? 0L : modRevision);
+      }
+      out.flush();
+      out.writeLong(checked.getChecksum().getValue());
+    }
+    try {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Reads the persisted snapshot.
+   *
+   * @return the snapshot, null if there is no readable snapshot.
+   */
+  public KeyspaceSnapshot read() {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(buffer);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Keyspace snapshot could not be read from: {}, it is ignored: {}", path,
+          e.getMessage());
+    }
+    return null;
+  }
+
+  private KeyspaceSnapshot read(ByteBuffer buffer) {
+    if (buffer.limit() < CHECKSUM_LENGTH || buffer.getInt() != MAGIC
+        || buffer.getInt() != FORMAT_VERSION) {
+      throw new IllegalStateException("not a keyspace snapshot of a known format");
+    }
+    int contentLength = buffer.limit() - CHECKSUM_LENGTH;
+    ByteBuffer content = buffer.duplicate();
+    content.position(0);
+    content.limit(contentLength);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    if (crc.getValue() != buffer.getLong(contentLength)) {
+      throw new IllegalStateException("checksum mismatch");
+    }
+    try {
+      long revision = buffer.getLong();
+      int prefixCount = buffer.getInt();
+      List<String> prefixes = new ArrayList<>(prefixCount);
+      for (int i = 0; i < prefixCount; i++) {
+        prefixes.add(readString(buffer));
+      }
+      int count = buffer.getInt();
+      Map<String, String> keyValues = new HashMap<>(Math.max(count * 4 / 3, 16));
+      Map<String, Long> modRevisions = new HashMap<>(Math.max(count * 4 / 3, 16));
+      for (int i = 0; i < count; i++) {
+        String key = readString(buffer);
+        keyValues.put(key, readString(buffer));
+        modRevisions.put(key, buffer.getLong());
+      }
+      return new KeyspaceSnapshot(keyValues, modRevisions, revision, prefixes);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalStateException("truncated keyspace snapshot", e);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
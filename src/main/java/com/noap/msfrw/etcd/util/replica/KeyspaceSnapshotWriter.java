@@ -0,0 +1,129 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the keyspace snapshot file in the background after the replica changes.
+ * <p>
+ * The first change after a write schedules the next write after the <i>write delay</i>, changes
+ * arriving in the meantime are covered by that same write. So that a bulk edit of the keys results
+ * in a single write, and the watch processing thread never waits for the disk. A snapshot is not
+ * written again if no change is noted since the last write. The snapshot revision is not compared
+ * for that, it is the revision all watchers have processed, which stays the same while one of them
+ * is idle even though the others keep changing the replica.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class KeyspaceSnapshotWriter {
+
+  private static final Logger logger = LoggerFactory.getLogger(KeyspaceSnapshotWriter.class);
+
+  private final KeyspaceSnapshotFile snapshotFile;
+  private final Supplier<KeyspaceSnapshot> snapshotSupplier;
+  private final long writeDelayMillis;
+  private final ScheduledExecutorService scheduler;
+  private final Object writeLock = new Object();
+  private final AtomicLong changeCount = new AtomicLong();
+  private ScheduledFuture<?> scheduledWrite;
+  private long writtenChangeCount = -1L; // guarded by writeLock
+
+  /**
+   * Creates a writer.
+   *
+   * @param snapshotFile file the snapshots are written to.
+   * @param snapshotSupplier supplier of the current snapshot of the replica.
+   * @param writeDelayMillis time a write is scheduled after a change.
+   */
+  public KeyspaceSnapshotWriter(KeyspaceSnapshotFile snapshotFile,
+      Supplier<KeyspaceSnapshot> snapshotSupplier, long writeDelayMillis) {
+    this.snapshotFile = snapshotFile;
+    this.snapshotSupplier = snapshotSupplier;
+    this.writeDelayMillis = Math.max(writeDelayMillis, 0L);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "etcd-snapshot-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Notes that the replica has changed, schedules a write if none is pending.
+   */
+  public synchronized void changed() {
+    changeCount.incrementAndGet();
+    if (scheduledWrite == null && !scheduler.isShutdown()) {
+      scheduledWrite = scheduler.schedule(this::write, writeDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Notes that the current content of the replica is already persisted (e.g. the replica is loaded
+   * from the snapshot file), so that it is not written again until it changes.
+   */
+  public void written() {
+    synchronized (writeLock) {
+      writtenChangeCount = changeCount.get();
+    }
+  }
+
+  /**
+   * Writes the current snapshot right away if a change is noted since the last write.
+   *
+   * @return true if the snapshot file is written.
+   */
+  public boolean write() {
+    synchronized (this) {
+      scheduledWrite = null;
+    }
+    synchronized (writeLock) {
+      // read before the snapshot is taken, a change made meanwhile is written by the next write
+      long changes = changeCount.get();
+      if (changes == writtenChangeCount) {
+        return false;
+      }
+      KeyspaceSnapshot snapshot = snapshotSupplier.get();
+      if (snapshot.getRevision() <= 0L) {
+        return false;
+      }
+      try {
+        snapshotFile.write(snapshot);
+        writtenChangeCount = changes;
+        logger.debug("Keyspace snapshot is written with {} keys at revision: {}", snapshot.size(),
+            snapshot.getRevision());
+        return true;
+      } catch (Exception e) {
+        logger.error(
+            "An exception occurred while writing the keyspace snapshot to: {}, detail is: {}",
+            snapshotFile.getPath(), ExceptionUtils.getStackTrace(e));
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Writes the pending changes and stops the writer.
+   */
+  public void shutdown() {
+    boolean pending;
+    synchronized (this) {
+      pending = scheduledWrite != null;
+      if (pending) {
+        scheduledWrite.cancel(false);
+      }
+    }
+    scheduler.shutdownNow();
+    if (pending) {
+      write();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.EtcdConnector;
+
+/**
+ * Spring managed lifecycle of the ETCD watch subsystem.
+ * <p>
+ * The watcher starts once the application context is refreshed and stops before the context is
+ * closed. On stop the refresh events still pending are published and the watch threads are
+ * stopped, so that the server shuts down gracefully. The connection to the ETCD cluster is kept
+ * open, reads are still served and the watcher can be started again. It is closed when the
+ * {@link EtcdConnector} bean is destroyed.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdWatchLifecycle implements SmartLifecycle {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdWatchLifecycle.class);
+
+  private final EtcdConnector connector;
+  private final EtcdEnvironmentRepository repository;
+
+  public EtcdWatchLifecycle(EtcdConnector connector, EtcdEnvironmentRepository repository) {
+    this.connector = connector;
+    this.repository = repository;
+  }
+
+  @Override
+  public void start() {
+    logger.info("Starting listening to the ETCD cluster...");
+    connector.startListening(repository);
+  }
+
+  @Override
+  public void stop() {
+    logger.info("Stopping listening to the ETCD cluster...");
+    connector.stopListening();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return connector.isListening();
+  }
+}
@@ -0,0 +1,237 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+
+/**
+ * A shard of the ETCD watcher: the supervised watches of a subset of the key prefixes watched, and
+ * a dedicated thread processing their responses in order.
+ * <p>
+ * Watch responses are handed off from the jetcd callback thread to the processing thread through a
+ * bounded queue, so that a slow processing never blocks the jetcd event loop. Since each shard has
+ * its own queue and thread, a burst of changes under the prefixes of one shard does not delay the
+ * changes under the prefixes of the others. If the processing thread falls behind so much that the
+ * queue is full, responses are dropped and the resync callback is run once it catches up.
+ * </p>
+ * <p>
+ * The processed revision is tracked per watch stream: a stream only reports the revisions of its
+ * own key range, so the shard has processed all changes under its prefixes only up to the smallest
+ * revision processed among its streams.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdWatchShard {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdWatchShard.class);
+
+  private final String name;
+  private final BlockingQueue<ReceivedWatchResponse> queue;
+  private final AtomicBoolean overflowed = new AtomicBoolean(false);
+  private final Consumer<WatchResponse> processor;
+  private final LongSupplier resyncCallback;
+  private final EtcdMetrics metrics;
+  private final List<EtcdWatchSupervisor> supervisors = new ArrayList<>();
+  private final List<WatchStream> streams = new CopyOnWriteArrayList<>();
+  private final long startProcessedRevision;
+  private ExecutorService processorExecutor;
+  private ExecutorService supervisorExecutor;
+
+  /**
+   * Creates a shard with no watch yet.
+   *
+   * @param name name of the shard, used for its thread names.
+   * @param queueCapacity maximum number of watch responses waiting to be processed.
+   * @param startRevision revision the watches of the shard start from, 0 for the current revision.
+   * @param processor processor of the watch responses, run on the processing thread.
+   * @param resyncCallback full resync run after responses are dropped, returns the revision the
+   *        state is reloaded at.
+   * @param metrics metrics recorder.
+   */
+  public EtcdWatchShard(String name, int queueCapacity, long startRevision,
+      Consumer<WatchResponse> processor, LongSupplier resyncCallback, EtcdMetrics metrics) {
+    this.name = name;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.startProcessedRevision = startRevision > 0 ? startRevision - 1 : 0L;
+    this.processor = processor;
+    this.resyncCallback = resyncCallback;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Adds a watch to the shard, its responses are to be handed off to a stream opened with
+   * {@link #openStream()}. Called before the shard is started.
+   */
+  public void addWatch(EtcdWatchSupervisor supervisor) {
+    supervisors.add(supervisor);
+  }
+
+  /**
+   * Starts the processing thread and a thread per watch.
+   */
+  public synchronized void start() {
+    processorExecutor = Executors.newSingleThreadExecutor(daemonThreadFactory(name + "-processor"));
+    supervisorExecutor = Executors.newFixedThreadPool(Math.max(supervisors.size(), 1),
+        daemonThreadFactory(name + "-supervisor"));
+    try {
+      processorExecutor.execute(this::processResponses);
+      supervisors.forEach(supervisorExecutor::execute);
+    } finally {
+      processorExecutor.shutdown();
+      supervisorExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Stops the watches and the processing thread, drops the responses not processed yet.
+   */
+  public synchronized void stop() {
+    supervisors.forEach(EtcdWatchSupervisor::stop);
+    if (supervisorExecutor != null) {
+      supervisorExecutor.shutdownNow();
+      processorExecutor.shutdownNow();
+    }
+    queue.clear();
+  }
+
+  /**
+   * Opens a watch stream of the shard, the revision processed is tracked separately for each
+   * stream. The consumer returned queues a watch response of the stream for processing, it runs on
+   * the jetcd callback thread.
+   *
+   * @return hand-off of the responses of the stream.
+   */
+  public Consumer<WatchResponse> openStream() {
+    WatchStream stream = new WatchStream(startProcessedRevision);
+    streams.add(stream);
+    return response -> handOff(stream, response);
+  }
+
+  // Queues a watch response of a stream for processing.
+  private void handOff(WatchStream stream, WatchResponse response) {
+    if (!queue.offer(new ReceivedWatchResponse(stream, response, System.nanoTime()))
+        && !overflowed.getAndSet(true)) {
+      logger.warn(
+          "ETCD watch response queue of {} is full, responses are dropped until the keyspace is resynced",
+          name);
+    }
+  }
+
+  /**
+   * Returns the smallest revision processed among the streams of the shard, all changes under its
+   * prefixes up to this revision are processed.
+   */
+  public long getProcessedRevision() {
+    long processedRevision = Long.MAX_VALUE;
+    for (WatchStream stream : streams) {
+      processedRevision = Math.min(processedRevision, stream.processedRevision);
+    }
+    return processedRevision == Long.MAX_VALUE ? startProcessedRevision : processedRevision;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<EtcdWatchSupervisor> getWatches() {
+    return supervisors;
+  }
+
+  // Processing loop of the watch responses queued, runs until the processing thread is interrupted.
+  private void processResponses() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        ReceivedWatchResponse received = queue.take();
+        if (overflowed.getAndSet(false)) {
+          queue.clear();
+          long resyncRevision = resyncCallback.getAsLong();
+          streams.forEach(stream -> stream.advance(resyncRevision));
+          continue;
+        }
+        if (!received.response.getEvents().isEmpty()) {
+          processor.accept(received.response);
+          metrics.recordWatchLag(System.nanoTime() - received.receivedNanos);
+        }
+        received.stream.advance(revisionOf(received.response));
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        String errorMessage =
+            String.format("An exception occurred while processing ETCD watch response, detail is: %s",
+                ExceptionUtils.getStackTrace(e));
+        logger.error(errorMessage);
+      }
+    }
+  }
+
+  // Greatest revision of the events of a response, the header revision of a progress notification.
+  private static long revisionOf(WatchResponse response) {
+    long revision = 0L;
+    for (WatchEvent event : response.getEvents()) {
+      revision = Math.max(revision, event.getKeyValue().getModRevision());
+    }
+    if (revision == 0L && response.isProgressNotify() && response.getHeader() != null) {
+      revision = response.getHeader().getRevision();
+    }
+    return revision;
+  }
+
+  // Creates named daemon threads, so that watch threads are identifiable and never keep the JVM up.
+  private static ThreadFactory daemonThreadFactory(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      int index = count.getAndIncrement();
+      Thread thread = new Thread(runnable, index == 0 ? name : name + "-" + index);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  // A watch stream of the shard with the greatest revision processed among its responses, only
+  // advanced by the processing thread.
+  private static final class WatchStream {
+
+    private volatile long processedRevision;
+
+    private WatchStream(long processedRevision) {
+      this.processedRevision = processedRevision;
+    }
+
+    private void advance(long revision) {
+      if (revision > processedRevision) {
+        processedRevision = revision;
+      }
+    }
+  }
+
+  // A watch response queued for processing together with its stream and the time it is received.
+  private static final class ReceivedWatchResponse {
+
+    private final WatchStream stream;
+    private final WatchResponse response;
+    private final long receivedNanos;
+
+    private ReceivedWatchResponse(WatchStream stream, WatchResponse response, long receivedNanos) {
+      this.stream = stream;
+      this.response = response;
+      this.receivedNanos = receivedNanos;
+    }
+  }
+}
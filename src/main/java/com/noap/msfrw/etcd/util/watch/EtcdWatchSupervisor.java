@@ -0,0 +1,220 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.Watch.Watcher;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+
+/**
+ * A supervised, resumable ETCD watch.
+ * <p>
+ * The supervisor records the revision of the last watch response processed. Whenever the watch
+ * stream fails or completes, it opens a new watch starting right after that revision, waiting with an
+ * exponential backoff between the attempts, so that no change is missed while the stream is down.
+ * If the ETCD cluster has already compacted the revision to resume from, the missed changes can not
+ * be replayed anymore; then the resync callback is run (a full reload of the state held locally) and
+ * the watch continues right after the revision it returns.
+ * </p>
+ * <p>
+ * The watch asks for progress notifications, so that the revision of a watch over a quiet key range
+ * still moves forward with the cluster.
+ * </p>
+ * <p>
+ * An instance is a {@link Runnable} that occupies the thread it runs on until it is stopped.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdWatchSupervisor implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdWatchSupervisor.class);
+
+  private final Supplier<Watch> watchClientSupplier;
+  private final ByteSequence key;
+  private final ByteSequence rangeEnd;
+  private final Consumer<WatchResponse> responseConsumer;
+  private final LongSupplier resyncCallback;
+  private final LongSupplier currentRevisionSupplier;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+  private final AtomicReference<Watcher> activeWatcher = new AtomicReference<>();
+  private volatile long lastRevision;
+  private volatile boolean noDelete = false;
+  private volatile boolean prevKv = false;
+
+  /**
+   * Creates a supervisor for a watch over the given key range.
+   *
+   * @param watchClientSupplier supplier of the jetcd watch client.
+   * @param key first key of the range watched.
+   * @param rangeEnd end of the range watched ("\0" for all keys greater than or equal to the key).
+   * @param startRevision revision the watch starts from, 0 to start from the current revision.
+   * @param responseConsumer processor of the watch responses.
+   * @param resyncCallback full resync run when the revision to resume from is compacted, returns the
+   *        revision the state is reloaded at.
+   * @param currentRevisionSupplier supplier of the current revision of the ETCD cluster.
+   * @param initialBackoffMillis wait time before the first reconnection attempt.
+   * @param maxBackoffMillis maximum wait time between the reconnection attempts.
+   */
+  public EtcdWatchSupervisor(Supplier<Watch> watchClientSupplier, ByteSequence key,
+      ByteSequence rangeEnd, long startRevision, Consumer<WatchResponse> responseConsumer,
+      LongSupplier resyncCallback, LongSupplier currentRevisionSupplier, long initialBackoffMillis,
+      long maxBackoffMillis) {
+    this.watchClientSupplier = watchClientSupplier;
+    this.key = key;
+    this.rangeEnd = rangeEnd;
+    this.lastRevision = startRevision > 0 ? startRevision - 1 : 0L;
+    this.responseConsumer = responseConsumer;
+    this.resyncCallback = resyncCallback;
+    this.currentRevisionSupplier = currentRevisionSupplier;
+    this.initialBackoffMillis = Math.max(initialBackoffMillis, 1L);
+    this.maxBackoffMillis = Math.max(maxBackoffMillis, this.initialBackoffMillis);
+  }
+
+  @Override
+  public void run() {
+    long backoffMillis = initialBackoffMillis;
+    while (!stopped.get() && !Thread.currentThread().isInterrupted()) {
+      CountDownLatch terminated = new CountDownLatch(1);
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      AtomicBoolean responded = new AtomicBoolean(false);
+      try {
+        if (lastRevision == 0L) { // nothing processed yet, resume point is the current revision
+          lastRevision = currentRevisionSupplier.getAsLong();
+        }
+        long startRevision = lastRevision + 1;
+        WatchOption option = WatchOption.newBuilder().withRange(rangeEnd)
+            .withRevision(startRevision).withNoDelete(noDelete).withPrevKV(prevKv)
+            .withProgressNotify(true).build();
+        logger.info("Watching ETCD key range starting from revision: {}", startRevision);
+        activeWatcher.set(watchClientSupplier.get().watch(key, option, Watch.listener(response -> {
+          responded.set(true);
+          onResponse(response);
+        }, throwable -> {
+          failure.set(throwable);
+          terminated.countDown();
+        }, terminated::countDown)));
+        terminated.await();
+        if (stopped.get()) {
+          return;
+        }
+        if (isCompaction(failure.get())) {
+          logger.warn(
+              "ETCD has compacted the revisions after: {}, a full resync is being done to catch up",
+              lastRevision);
+          lastRevision = resyncCallback.getAsLong();
+          backoffMillis = initialBackoffMillis;
+          continue;
+        }
+        logger.error("ETCD watch stream is terminated after revision: {}, detail is: {}",
+            lastRevision,
+            failure.get() == null ? "completed" : ExceptionUtils.getStackTrace(failure.get()));
+      } catch (InterruptedException ie) {
+        logger.warn("An Interruption: ", ie);
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        logger.error("An exception occurred while watching ETCD, detail is: {}",
+            ExceptionUtils.getStackTrace(e));
+      } finally {
+        closeActiveWatcher();
+      }
+      if (responded.get()) { // stream was healthy for a while, start over with a short wait
+        backoffMillis = initialBackoffMillis;
+      }
+      if (!sleep(backoffMillis)) {
+        return;
+      }
+      backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+    }
+  }
+
+  /**
+   * Sets the filters the ETCD cluster applies to the events of the watch, used from the next watch
+   * stream opened.
+   *
+   * @param noDelete if true, DELETE events are not sent.
+   * @param prevKv if true, each event carries the key value as it is before the event.
+   */
+  public void setFilters(boolean noDelete, boolean prevKv) {
+    this.noDelete = noDelete;
+    this.prevKv = prevKv;
+  }
+
+  /**
+   * Stops supervising, closes the active watcher.
+   */
+  public void stop() {
+    stopped.set(true);
+    closeActiveWatcher();
+  }
+
+  public boolean isStopped() {
+    return stopped.get();
+  }
+
+  /**
+   * Returns the revision of the last watch response processed.
+   */
+  public long getLastRevision() {
+    return lastRevision;
+  }
+
+  // Processes a response, then records its revision as processed.
+  private void onResponse(WatchResponse response) {
+    try {
+      responseConsumer.accept(response);
+    } catch (Exception e) {
+      logger.error("An exception occurred while processing the ETCD watch response, detail is: {}",
+          ExceptionUtils.getStackTrace(e));
+    }
+    long responseRevision = 0L;
+    for (WatchEvent event : response.getEvents()) {
+      responseRevision = Math.max(responseRevision, event.getKeyValue().getModRevision());
+    }
+    if (responseRevision == 0L && response.isProgressNotify() && response.getHeader() != null) {
+      responseRevision = response.getHeader().getRevision();
+    }
+    if (responseRevision > lastRevision) {
+      lastRevision = responseRevision;
+    }
+  }
+
+  private boolean isCompaction(Throwable throwable) {
+    return throwable != null
+        && ExceptionUtils.indexOfType(throwable, CompactedException.class) >= 0;
+  }
+
+  private void closeActiveWatcher() {
+    Watcher watcher = activeWatcher.getAndSet(null);
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  // Returns false if interrupted or stopped while waiting.
+  private boolean sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return !stopped.get();
+  }
+}
@@ -0,0 +1,146 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+
+/**
+ * Coalesces the refresh requests produced by the ETCD watcher, so that a burst of key changes (e.g. a
+ * bulk edit of the keys of an application during a deployment) results in a single refresh event per
+ * destination instead of one refresh event per key.
+ * <p>
+ * Destinations submitted are collected until no new submission arrives for a <i>quiet window</i>, or
+ * until the <i>maximum delay</i> passes since the first pending submission, whichever comes first.
+ * Then each distinct destination is published once. If the "*" (all applications) destination is
+ * pending, it is the only destination published since it already covers all others. A quiet window of
+ * 0 or less disables coalescing, each submission is published immediately.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class RefreshCoalescer {
+
+  private static final Logger logger = LoggerFactory.getLogger(RefreshCoalescer.class);
+  private static final String ALL_DESTINATIONS = "*";
+
+  private final long quietWindowMillis;
+  private final long maxDelayMillis;
+  private final Consumer<String> publisher;
+  private final EtcdMetrics metrics;
+  private final ScheduledExecutorService scheduler;
+  private final Set<String> pendingDestinations = new LinkedHashSet<>();
+  private long firstPendingAtMillis;
+  private ScheduledFuture<?> scheduledFlush;
+
+  /**
+   * Creates a coalescer.
+   *
+   * @param quietWindowMillis time without a new submission after which pending destinations are
+   *        published, 0 or less to publish each submission immediately.
+   * @param maxDelayMillis maximum time a submission waits to be published.
+   * @param publisher publisher of a single destination.
+   */
+  public RefreshCoalescer(long quietWindowMillis, long maxDelayMillis, Consumer<String> publisher) {
+    this(quietWindowMillis, maxDelayMillis, publisher, EtcdMetrics.noop());
+  }
+
+  /**
+   * Creates a coalescer that records the publication delays and the refresh events published.
+   *
+   * @param quietWindowMillis time without a new submission after which pending destinations are
+   *        published, 0 or less to publish each submission immediately.
+   * @param maxDelayMillis maximum time a submission waits to be published.
+   * @param publisher publisher of a single destination.
+   * @param metrics metrics recorder.
+   */
+  public RefreshCoalescer(long quietWindowMillis, long maxDelayMillis, Consumer<String> publisher,
+      EtcdMetrics metrics) {
+    this.metrics = metrics;
+    this.quietWindowMillis = quietWindowMillis;
+    this.maxDelayMillis = Math.max(maxDelayMillis, quietWindowMillis);
+    this.publisher = publisher;
+    this.scheduler = quietWindowMillis > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "etcd-refresh-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  /**
+   * Submits a destination to be refreshed.
+   *
+   * @param destination application name, or "*" for all applications.
+   */
+  public void submit(String destination) {
+    if (scheduler == null) {
+      publish(destination);
+      return;
+    }
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      if (pendingDestinations.isEmpty()) {
+        firstPendingAtMillis = now;
+      }
+      pendingDestinations.add(destination);
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+      }
+      long delay = Math.min(quietWindowMillis, firstPendingAtMillis + maxDelayMillis - now);
+      scheduledFlush = scheduler.schedule(this::flush, Math.max(delay, 0L), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Publishes all pending destinations right away.
+   */
+  public void flush() {
+    Set<String> destinations;
+    synchronized (this) {
+      if (pendingDestinations.isEmpty()) {
+        return;
+      }
+      metrics.recordRefreshDelay(System.currentTimeMillis() - firstPendingAtMillis);
+      destinations = new LinkedHashSet<>(pendingDestinations);
+      pendingDestinations.clear();
+      scheduledFlush = null;
+    }
+    if (destinations.contains(ALL_DESTINATIONS)) {
+      publish(ALL_DESTINATIONS);
+      return;
+    }
+    destinations.forEach(this::publish);
+  }
+
+  /**
+   * Publishes the pending destinations and stops the coalescer.
+   */
+  public void shutdown() {
+    flush();
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public synchronized int getPendingCount() {
+    return pendingDestinations.size();
+  }
+
+  private void publish(String destination) {
+    try {
+      publisher.accept(destination);
+      metrics.countRefreshPublished(destination);
+    } catch (Exception e) {
+      logger.error("An exception occurred while publishing refresh event for: {}, detail is: {}",
+          destination, ExceptionUtils.getStackTrace(e));
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.noap.msfrw.etcd.util.watch.election;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.election.CampaignResponse;
+import io.etcd.jetcd.election.LeaderKey;
+
+/**
+ * Elects a single leader among the config server instances watching the same ETCD cluster, using
+ * the ETCD Election and Lease APIs.
+ * <p>
+ * Each instance grants itself a lease with the configured TTL and campaigns for the election with
+ * it. ETCD elects the candidate that campaigned first, the others wait in line. The lease is kept
+ * alive while the instance runs; if the leader dies, its lease expires after the TTL and the next
+ * candidate is elected. If an instance can not keep its lease alive (e.g. it is partitioned from the
+ * ETCD cluster) it steps down on its own, before the lease expires for the others, and campaigns
+ * again with a new lease once the cluster is reachable.
+ * </p>
+ * <p>
+ * The listener is run on the election thread each time this instance is elected.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class EtcdLeaderElection {
+
+  private static final Logger logger = LoggerFactory.getLogger(EtcdLeaderElection.class);
+  private static final long MIN_KEEP_ALIVE_PERIOD_MILLIS = 500L;
+
+  private final Supplier<Client> clientSupplier;
+  private final ByteSequence electionName;
+  private final ByteSequence candidate;
+  private final long leaseTtlSeconds;
+  private final long keepAlivePeriodMillis;
+  private final ScheduledExecutorService scheduler;
+  private Runnable electedListener = () -> {
+  };
+  private volatile boolean leader = false;
+  private volatile boolean stopped = false;
+  private long term = 0L; // incremented per campaign, guarded by this
+  private long leaseId = 0L;
+  private LeaderKey leaderKey;
+  private CompletableFuture<CampaignResponse> campaign;
+  private ScheduledFuture<?> keepAlive;
+
+  /**
+   * Creates an election candidate.
+   *
+   * @param clientSupplier supplier of the ETCD client.
+   * @param electionName name of the election, shared by all candidates.
+   * @param candidate identifier of this instance, stored as the value of the leader key.
+   * @param leaseTtlSeconds TTL of the lease the leadership is held with, the failover time.
+   */
+  public EtcdLeaderElection(Supplier<Client> clientSupplier, String electionName, String candidate,
+      long leaseTtlSeconds) {
+    this.clientSupplier = clientSupplier;
+    this.electionName = ByteSequence.from(electionName, StandardCharsets.UTF_8);
+    this.candidate = ByteSequence.from(candidate, StandardCharsets.UTF_8);
+    this.leaseTtlSeconds = Math.max(leaseTtlSeconds, 1L);
+    this.keepAlivePeriodMillis =
+        Math.max(TimeUnit.SECONDS.toMillis(this.leaseTtlSeconds) / 3, MIN_KEEP_ALIVE_PERIOD_MILLIS);
+    this.scheduler = Executors.newScheduledThreadPool(2, r -> {
+      Thread thread = new Thread(r, "etcd-leader-election");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void setElectedListener(Runnable electedListener) {
+    this.electedListener = electedListener;
+  }
+
+  /**
+   * Starts campaigning for the election.
+   */
+  public void start() {
+    scheduler.execute(this::campaign);
+  }
+
+  /**
+   * Resigns the leadership if held, revokes the lease and stops campaigning.
+   */
+  public void stop() {
+    LeaderKey resigningKey;
+    long revokedLeaseId;
+    synchronized (this) {
+      stopped = true;
+      resigningKey = leader ? leaderKey : null;
+      revokedLeaseId = leaseId;
+      endTerm();
+    }
+    scheduler.shutdownNow();
+    try {
+      if (resigningKey != null) {
+        clientSupplier.get().getElectionClient().resign(resigningKey)
+            .get(keepAlivePeriodMillis, TimeUnit.MILLISECONDS);
+      }
+      if (revokedLeaseId != 0L) {
+        clientSupplier.get().getLeaseClient().revoke(revokedLeaseId).get(keepAlivePeriodMillis,
+            TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException | RuntimeException e) {
+      logger.warn("Leadership could not be resigned, it passes on when the lease expires: {}",
+          e.getMessage());
+    }
+  }
+
+  public boolean isLeader() {
+    return leader;
+  }
+
+  // Grants a lease and campaigns with it, blocks the election thread until elected.
+  private void campaign() {
+    long campaignTerm = -1L;
+    CompletableFuture<CampaignResponse> currentCampaign;
+    try {
+      long grantedLeaseId =
+          clientSupplier.get().getLeaseClient().grant(leaseTtlSeconds).get().getID();
+      synchronized (this) {
+        if (stopped) {
+          return;
+        }
+        long currentTerm = ++term;
+        campaignTerm = currentTerm;
+        leaseId = grantedLeaseId;
+        keepAlive = scheduler.scheduleAtFixedRate(() -> keepAlive(currentTerm, grantedLeaseId),
+            keepAlivePeriodMillis, keepAlivePeriodMillis, TimeUnit.MILLISECONDS);
+        campaign = clientSupplier.get().getElectionClient().campaign(electionName,
+            grantedLeaseId, candidate);
+        currentCampaign = campaign;
+      }
+      logger.info("Campaigning for the refresh publisher election: {}", electionName);
+      LeaderKey electedKey = currentCampaign.get().getLeader();
+      synchronized (this) {
+        if (stopped || campaignTerm != term) {
+          return;
+        }
+        leaderKey = electedKey;
+        leader = true;
+      }
+      logger.info("Elected as the refresh publisher with lease: {}", grantedLeaseId);
+      electedListener.run();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | RuntimeException e) {
+      synchronized (this) {
+        // a term already ended by a failed keep alive is retried by the keep alive
+        if (stopped || (campaignTerm >= 0 && campaignTerm != term)) {
+          return;
+        }
+        endTerm();
+      }
+      logger.warn("Campaign for the refresh publisher election failed: {}", e.getMessage());
+      retry();
+    }
+  }
+
+  // Renews the lease of a term, steps down if it can not be renewed.
+  private void keepAlive(long leaseTerm, long keptLeaseId) {
+    String failure;
+    try {
+      long ttl = clientSupplier.get().getLeaseClient().keepAliveOnce(keptLeaseId)
+          .get(keepAlivePeriodMillis, TimeUnit.MILLISECONDS).getTTL();
+      if (ttl > 0) {
+        return;
+      }
+      failure = "the lease is expired";
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException | TimeoutException | RuntimeException e) {
+      failure = e.getMessage();
+    }
+    synchronized (this) {
+      if (stopped || leaseTerm != term) {
+        return;
+      }
+      if (leader) {
+        logger.warn("Stepping down as the refresh publisher, lease: {} can not be kept alive: {}",
+            keptLeaseId, failure);
+      }
+      endTerm();
+    }
+    retry();
+  }
+
+  // Ends the current term: drops the leadership, stops keeping the lease alive and the campaign.
+  private void endTerm() {
+    term++;
+    leader = false;
+    leaderKey = null;
+    leaseId = 0L;
+    if (keepAlive != null) {
+      keepAlive.cancel(false);
+      keepAlive = null;
+    }
+    if (campaign != null) {
+      campaign.cancel(true);
+      campaign = null;
+    }
+  }
+
+  private void retry() {
+    if (!stopped && !scheduler.isShutdown()) {
+      scheduler.schedule(this::campaign, keepAlivePeriodMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.noap.msfrw.etcd.util.watch.election;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Destinations of the refresh events an instance has not published since it is not the leader,
+ * held for a retention window.
+ * <p>
+ * If the leader dies, the changes observed until its lease expires are published by no instance.
+ * The instance elected next publishes the destinations it has held back within the window (the
+ * lease TTL plus a margin), so that a failover does not lose refresh events. Destinations older than
+ * the window are assumed to be published by the previous leader and dropped.
+ * </p>
+ *
+ * @author UMUT
+ *
+ */
+public class FollowerRefreshBacklog {
+
+  private final long retentionMillis;
+  private final Map<String, Long> heldAtMillis = new LinkedHashMap<>();
+
+  public FollowerRefreshBacklog(long retentionMillis) {
+    this.retentionMillis = retentionMillis;
+  }
+
+  /**
+   * Holds back a destination not published by this instance.
+   */
+  public synchronized void add(String destination) {
+    long now = System.currentTimeMillis();
+    heldAtMillis.remove(destination); // keeps the map in the order destinations are last held
+    heldAtMillis.put(destination, now);
+    expire(now);
+  }
+
+  /**
+   * Removes and returns the destinations held back within the retention window.
+   */
+  public synchronized List<String> drain() {
+    expire(System.currentTimeMillis());
+    List<String> destinations = new ArrayList<>(heldAtMillis.keySet());
+    heldAtMillis.clear();
+    return destinations;
+  }
+
+  public synchronized int size() {
+    return heldAtMillis.size();
+  }
+
+  private void expire(long now) {
+    Iterator<Long> iterator = heldAtMillis.values().iterator();
+    while (iterator.hasNext() && iterator.next() < now - retentionMillis) {
+      iterator.remove();
+    }
+  }
+}
@@ -1,13 +1,20 @@
 package com.noap.msfrw.etcd.util.watch.lock;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.redisson.Redisson;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
 import com.noap.msfrw.redis.util.RedisConfigurationProperties;
 import com.noap.msfrw.redis.util.RedisException;
 
@@ -27,15 +34,37 @@ import com.noap.msfrw.redis.util.RedisException;
  * the number of cloud configuration servers for the same key value update, you do not need to use this utility. 
  * Disable the utility by setting redis.distributedlockEnabled to false. 
  * </p>
+ * <p>
+ * A lock this node fails to acquire is remembered for the lease time, so that the same lock is not
+ * requested from REDIS again while another node holds it (e.g. the same change replayed after a
+ * watcher reconnects). With redis.lockBatchingEnabled the watcher takes one lock per watch response
+ * through {@link #processWithLockAsync(String, InsideLockRunnable)}, on a background thread.
+ * </p>
  * @author UMUT
  *
  */
 public class EtcdWatchLock {
 
+  private static final String LOCK_ACQUIRED = "acquired";
+  private static final String LOCK_NOT_ACQUIRED = "not_acquired";
+  private static final String LOCK_INTERRUPTED = "interrupted";
+  private static final int MAX_LOST_LOCKS = 1024;
+
   Logger logger = LoggerFactory.getLogger(EtcdWatchLock.class);
 
   private RedissonClient redisson;
   private RedisConfigurationProperties redisProperties;
+  private EtcdMetrics metrics = EtcdMetrics.noop();
+  private ExecutorService lockExecutor;
+  // locks recently lost to other nodes, mapped to the time they are released at the latest
+  private final Map<String, Long> lostLockExpiries = new LinkedHashMap<String, Long>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+      return size() > MAX_LOST_LOCKS;
+    }
+  };
 
   public RedissonClient getRedisson() {
     return redisson;
@@ -44,6 +73,14 @@ public class EtcdWatchLock {
   public void setRedisson(RedissonClient redisson) {
     this.redisson = redisson;
   }
+
+  public EtcdMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(EtcdMetrics metrics) {
+    this.metrics = metrics;
+  }
   
   public EtcdWatchLock(RedisConfigurationProperties redisProperties, Config config) {
 	    this.redisProperties = redisProperties;
@@ -71,15 +108,26 @@ public class EtcdWatchLock {
    */
   public void processWithLock(String keyName, InsideLockRunnable insideLockRunnable) {
     if (Boolean.TRUE.equals(redisProperties.getDistributedLockEnabled())) {
+      if (isRecentlyLost(keyName)) {
+        logger.info("Redis distributed lock is recently lost for the key: {}, skipped", keyName);
+        return;
+      }
       logger.info("Redis distributed lock is requested for the key: {}", keyName);
       RLock lock = redisson.getLock(keyName);
+      long startNanos = System.nanoTime();
       try {
-        if (lock.tryLock(redisProperties.getLockWaitTime(), redisProperties.getLockLeaseTime(),
-            TimeUnit.SECONDS)) {
+        boolean acquired = lock.tryLock(redisProperties.getLockWaitTime(),
+            redisProperties.getLockLeaseTime(), TimeUnit.SECONDS);
+        metrics.recordLockWait(System.nanoTime() - startNanos,
+            acquired ? LOCK_ACQUIRED : LOCK_NOT_ACQUIRED);
+        if (acquired) {
           logger.info("Redis distributed lock retrieved for the key: {}", keyName);
           insideLockRunnable.runInsideLock();
+        } else {
+          rememberLost(keyName);
         }
       } catch (InterruptedException e) {
+        metrics.recordLockWait(System.nanoTime() - startNanos, LOCK_INTERRUPTED);
         logger.warn("An Interruption within redis lock utiltiy of current thread ", e);
         Thread.currentThread().interrupt();
       }
@@ -90,4 +138,75 @@ public class EtcdWatchLock {
       insideLockRunnable.runInsideLock();
     }
   }
+
+  /**
+   * Same as {@link #processWithLock(String, InsideLockRunnable)}, but the lock is acquired and the
+   * functionality is run on a background thread, in the order requested.
+   * @param keyName name of the distributed lock.
+   * @param insideLockRunnable functionality running inside the distributed lock.
+   * @return a future completed once the lock is processed.
+   */
+  public CompletableFuture<Void> processWithLockAsync(String keyName,
+      InsideLockRunnable insideLockRunnable) {
+    return CompletableFuture.runAsync(() -> processWithLock(keyName, insideLockRunnable),
+        getLockExecutor()).exceptionally(e -> {
+          logger.error("An exception occurred while processing with the lock: {}, detail is: {}",
+              keyName, ExceptionUtils.getStackTrace(e));
+          return null;
+        });
+  }
+
+  /**
+   * True if the watcher should take one lock per watch response instead of one per changed key.
+   * @return redis.lockBatchingEnabled.
+   */
+  public boolean isBatchingEnabled() {
+    return Boolean.TRUE.equals(redisProperties.getLockBatchingEnabled());
+  }
+
+  /**
+   * Stops the background lock thread after the locks already requested are processed.
+   */
+  public synchronized void shutdown() {
+    if (lockExecutor != null) {
+      lockExecutor.shutdown();
+    }
+  }
+
+  private synchronized ExecutorService getLockExecutor() {
+    if (lockExecutor == null) {
+      lockExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "redis-watch-lock");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return lockExecutor;
+  }
+
+  private boolean isRecentlyLost(String keyName) {
+    synchronized (lostLockExpiries) {
+      Long expiry = lostLockExpiries.get(keyName);
+      if (expiry == null) {
+        return false;
+      }
+      if (expiry < System.currentTimeMillis()) {
+        lostLockExpiries.remove(keyName);
+        return false;
+      }
+      return true;
+    }
+  }
+
+  // the other node holds the lock at most for the lease time
+  private void rememberLost(String keyName) {
+    Long leaseTime = redisProperties.getLockLeaseTime();
+    if (leaseTime == null || leaseTime <= 0) {
+      return;
+    }
+    synchronized (lostLockExpiries) {
+      lostLockExpiries.put(keyName,
+          System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseTime));
+    }
+  }
 }
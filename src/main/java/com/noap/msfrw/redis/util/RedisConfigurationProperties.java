@@ -21,6 +21,9 @@ import org.springframework.stereotype.Component;
  * watcher utility's callback action when a change occurs in the ETCD property store itself</i></b>,
  * only one thread is publishing event to refresh the configuration clients to refresh their
  * scope</li>
+ * <li><b>lockBatchingEnabled:</b> if true, a single lock is taken per ETCD watch response (keyed by
+ * the revision range of its changes) instead of one lock per changed key, and it is taken on a
+ * background thread so that the watcher never waits for Redis</li>
  * </ul>
  * </p>
  * <p>
@@ -58,6 +61,7 @@ public class RedisConfigurationProperties {
   private Boolean distributedLockEnabled = false; // default
   private Long lockWaitTime = 4L; // default
   private Long lockLeaseTime = 10L; // default
+  private Boolean lockBatchingEnabled = false; // default
 
   public List<String> getUrls() {
     return urls;
@@ -91,6 +95,14 @@ public class RedisConfigurationProperties {
     this.lockLeaseTime = lockLeaseTime;
   }
 
+  public Boolean getLockBatchingEnabled() {
+    return lockBatchingEnabled;
+  }
+
+  public void setLockBatchingEnabled(Boolean lockBatchingEnabled) {
+    this.lockBatchingEnabled = lockBatchingEnabled;
+  }
+
   public List<String> getUrlsWithRedisPrefix() {
     return urls.stream().map(u -> REDIS_CONNECTION_PREFIX + u).collect(toList());
   }
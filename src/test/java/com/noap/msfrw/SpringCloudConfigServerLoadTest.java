@@ -0,0 +1,166 @@
+package com.noap.msfrw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cloud.bus.event.RefreshRemoteApplicationEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+
+/**
+ * Load test of the config server backed by an {@link InMemoryEtcd}: N simulated config clients
+ * request their environment concurrently, then keys are changed one by one and the time until the
+ * refresh event is published is measured. Latencies (p50/p99) and throughput are logged.
+ * <p>
+ * Tagged "load", so it only runs with: mvn -Pload test. Tuned with the system properties
+ * load.clients, load.requestsPerClient, load.keyCount, load.refreshCount and load.etcdLatencyMillis.
+ * </p>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "redis.distributedlockEnabled=false",
+		"spring.cloud.bus.enabled=false", "etcd.cacheEnabled=false" })
+class SpringCloudConfigServerLoadTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(SpringCloudConfigServerLoadTest.class);
+	private static final int CLIENTS = Integer.getInteger("load.clients", 16);
+	private static final int REQUESTS_PER_CLIENT = Integer.getInteger("load.requestsPerClient", 200);
+	private static final int KEY_COUNT = Integer.getInteger("load.keyCount", 1000);
+	private static final int REFRESH_COUNT = Integer.getInteger("load.refreshCount", 20);
+	private static final long ETCD_LATENCY_MILLIS = Long.getLong("load.etcdLatencyMillis", 2L);
+	private static final InMemoryEtcd ETCD = new InMemoryEtcd();
+	private static final LinkedBlockingQueue<RefreshRemoteApplicationEvent> REFRESH_EVENTS = new LinkedBlockingQueue<>();
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@TestConfiguration
+	static class InMemoryEtcdConfiguration {
+
+		// The repository connects the connector when it is created, the client is replaced right after.
+		@Bean
+		static BeanPostProcessor inMemoryEtcdInstaller() {
+			return new InMemoryEtcdInstaller();
+		}
+
+		@EventListener
+		public void onRefresh(RefreshRemoteApplicationEvent event) {
+			REFRESH_EVENTS.add(event);
+		}
+	}
+
+	static class InMemoryEtcdInstaller implements BeanPostProcessor, BeanFactoryAware {
+
+		private BeanFactory beanFactory;
+
+		@Override
+		public void setBeanFactory(BeanFactory beanFactory) {
+			this.beanFactory = beanFactory;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof EtcdEnvironmentRepository) {
+				beanFactory.getBean(EtcdConnector.class).setEtcdClient(ETCD.client());
+			}
+			return bean;
+		}
+	}
+
+	static {
+		for (int i = 0; i < KEY_COUNT; i++) {
+			ETCD.put("dev.app.master.property" + i, "value" + i);
+			ETCD.put("default.application.master.shared" + i, "shared" + i);
+		}
+		ETCD.setLatencyMillis(ETCD_LATENCY_MILLIS);
+	}
+
+	@Test
+	@DisplayName("Given Simulated Config Clients When Requesting Environments and Changing Keys Then Report Latencies and Throughput")
+	void givenSimulatedConfigClients_whenRequestingAndChangingKeys_thenReportLatenciesAndThroughput() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		AtomicInteger failures = new AtomicInteger();
+		List<Future<long[]>> results = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int client = 0; client < CLIENTS; client++) {
+			results.add(clients.submit(() -> {
+				long[] latencies = new long[REQUESTS_PER_CLIENT];
+				for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+					long requestStart = System.nanoTime();
+					ResponseEntity<String> response = restTemplate.getForEntity("/app/dev/master", String.class);
+					latencies[i] = System.nanoTime() - requestStart;
+					if (!HttpStatus.OK.equals(response.getStatusCode())) {
+						failures.incrementAndGet();
+					}
+				}
+				return latencies;
+			}));
+		}
+		long[] requestLatencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+		for (int client = 0; client < CLIENTS; client++) {
+			System.arraycopy(results.get(client).get(), 0, requestLatencies, client * REQUESTS_PER_CLIENT,
+					REQUESTS_PER_CLIENT);
+		}
+		long elapsed = System.nanoTime() - start;
+		clients.shutdown();
+		report("environment request", requestLatencies);
+		logger.info("environment request throughput: {} requests/s with {} clients, etcd latency {} ms",
+				String.format("%.1f", requestLatencies.length / (elapsed / 1e9)), CLIENTS, ETCD_LATENCY_MILLIS);
+		assertEquals(0, failures.get());
+
+		REFRESH_EVENTS.clear();
+		long[] refreshLatencies = new long[REFRESH_COUNT];
+		for (int i = 0; i < REFRESH_COUNT; i++) {
+			long changeStart = System.nanoTime();
+			ETCD.put("dev.app.master.property0", "changed" + i);
+			RefreshRemoteApplicationEvent event = REFRESH_EVENTS.poll(10, TimeUnit.SECONDS);
+			refreshLatencies[i] = System.nanoTime() - changeStart;
+			assertTrue(event != null, "no refresh event is published for change " + i);
+		}
+		report("watch to refresh", refreshLatencies);
+	}
+
+	private static void report(String name, long[] latencies) {
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		logger.info("{} latency over {} samples: p50 {} ms, p99 {} ms, max {} ms", name, sorted.length,
+				millis(percentile(sorted, 50)), millis(percentile(sorted, 99)), millis(sorted[sorted.length - 1]));
+	}
+
+	private static long percentile(long[] sorted, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(index, 0)];
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.2f", nanos / 1e6);
+	}
+}
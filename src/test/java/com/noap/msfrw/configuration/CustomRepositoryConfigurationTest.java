@@ -1,6 +1,8 @@
 package com.noap.msfrw.configuration;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.nullable;
@@ -13,8 +15,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.cloud.bus.BusProperties;
 
 import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.repository.cache.CacheEvictionPolicy;
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
 import com.noap.msfrw.etcd.util.EtcdConfigurationProperties;
 import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchLifecycle;
 import com.noap.msfrw.etcd.util.watch.lock.EtcdWatchLock;
 import com.noap.msfrw.redis.util.RedisConfigurationProperties;
 import com.noap.msfrw.redis.util.RedisException;
@@ -28,9 +35,10 @@ class CustomRepositoryConfigurationTest {
 
 		EtcdConnector etcdConnector = Mockito.mock(EtcdConnector.class);
 		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(null, null);
-		EtcdEnvironmentRepository eer = crc.etcdEnvironmentWithoutBusProperties(null, etcdConnector);
+		EtcdEnvironmentRepository eer = crc.etcdEnvironmentWithoutBusProperties(null, etcdConnector, EnvironmentCache.disabled(),
+				ResponseCache.disabled());
 		Mockito.verify(etcdConnector).connect(nullable(String.class), nullable(String.class), nullable(Long.class), nullable(Long.class));
-		Mockito.verify(etcdConnector).startListening(any(EtcdEnvironmentRepository.class));
+		Mockito.verify(etcdConnector, Mockito.never()).startListening(any(EtcdEnvironmentRepository.class));
 		assertNotNull(eer);
 	}
 	
@@ -41,9 +49,10 @@ class CustomRepositoryConfigurationTest {
 		EtcdConnector etcdConnector = Mockito.mock(EtcdConnector.class);
 		BusProperties busProperties = Mockito.mock(BusProperties.class);
 		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(null, null);
-		EtcdEnvironmentRepository eer = crc.etcdEnvironmentWithBusProperties(busProperties, etcdConnector);
+		EtcdEnvironmentRepository eer = crc.etcdEnvironmentWithBusProperties(busProperties, etcdConnector, EnvironmentCache.disabled(),
+				ResponseCache.disabled());
 		Mockito.verify(etcdConnector).connect(nullable(String.class), nullable(String.class), nullable(Long.class), nullable(Long.class));
-		Mockito.verify(etcdConnector).startListening(any(EtcdEnvironmentRepository.class));
+		Mockito.verify(etcdConnector, Mockito.never()).startListening(any(EtcdEnvironmentRepository.class));
 		assertNotNull(eer);
 	}
 	
@@ -55,9 +64,11 @@ class CustomRepositoryConfigurationTest {
 		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
 		RedisConfigurationProperties rcp = Mockito.mock(RedisConfigurationProperties.class);
 		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(ecp, rcp);
-		EtcdConnector etcdConnector = crc.etcdConnector(ewl);
+		EtcdMetrics metrics = EtcdMetrics.noop();
+		EtcdConnector etcdConnector = crc.etcdConnector(ewl, metrics);
 		Mockito.verify(rcp, Mockito.times(1)).getDistributedLockEnabled();
 		assertNotNull(etcdConnector);
+		assertEquals(metrics, etcdConnector.getMetrics());
 	}
 	
 	@Test
@@ -66,7 +77,37 @@ class CustomRepositoryConfigurationTest {
 		RedisConfigurationProperties rcp = Mockito.mock(RedisConfigurationProperties.class);
 		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
 		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(ecp, rcp);
-		assertThrows(RedisException.class, () ->  crc.etcdWatchLock());
+		assertThrows(RedisException.class, () ->  crc.etcdWatchLock(null));
 		Mockito.verify(rcp).getUrlsWithRedisPrefix();
 	}
-}
\ No newline at end of file
+	
+	@Test
+	@DisplayName("Given Etcd Properties Create EnvironmentCache with success")
+	void givenEtcdProperties_thenCreateEnvironmentCacheWithSuccess() {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		RedisConfigurationProperties rcp = Mockito.mock(RedisConfigurationProperties.class);
+		Mockito.when(ecp.getCacheEnabled()).thenReturn(Boolean.TRUE);
+		Mockito.when(ecp.getCacheMaxSize()).thenReturn(10);
+		Mockito.when(ecp.getCacheEvictionPolicy()).thenReturn(CacheEvictionPolicy.LFU);
+		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(ecp, rcp);
+		EnvironmentCache environmentCache = crc.environmentCache();
+		assertTrue(environmentCache.isEnabled());
+	}
+
+	@Test
+	@DisplayName("Given Etcd Watch Lifecycle When Started and Stopped Then Etcd Connector Listens and Stops Listening")
+	void givenEtcdWatchLifecycle_whenStartedAndStopped_thenEtcdConnectorListensAndStopsListening() {
+
+		EtcdConnector etcdConnector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = Mockito.mock(EtcdEnvironmentRepository.class);
+		CustomRepositoryConfiguration crc = new CustomRepositoryConfiguration(null, null);
+		EtcdWatchLifecycle lifecycle = crc.etcdWatchLifecycle(etcdConnector, eer);
+		lifecycle.start();
+		Mockito.verify(etcdConnector).startListening(eer);
+		Mockito.when(etcdConnector.isListening()).thenReturn(true);
+		assertTrue(lifecycle.isRunning());
+		lifecycle.stop();
+		Mockito.verify(etcdConnector).stopListening();
+		Mockito.verify(etcdConnector, Mockito.never()).close();
+	}
+}
@@ -0,0 +1,42 @@
+package com.noap.msfrw.etcd.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.config.environment.Environment;
+
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncEnvironmentControllerTest {
+
+	@Test
+	@DisplayName("Given an Application and a Label With Slash Placeholders When Requested Then Read Them With Slashes")
+	void givenApplicationAndLabelWithSlashPlaceholders_whenRequested_thenReadWithSlashes() {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		Environment environment = new Environment("team/app", "dev");
+		Mockito.when(repository.findOneAsync("team/app", "dev", "feature/x"))
+				.thenReturn(CompletableFuture.completedFuture(environment));
+		AsyncEnvironmentController controller = new AsyncEnvironmentController(repository);
+
+		assertEquals(environment, controller.labelled("team(_)app", "dev", "feature(_)x").join());
+	}
+
+	@Test
+	@DisplayName("Given an Application With Slash Placeholders When Requested With the Default Label Then Read It With Slashes")
+	void givenApplicationWithSlashPlaceholders_whenRequestedWithDefaultLabel_thenReadWithSlashes() {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		Environment environment = new Environment("team/app", "dev");
+		Mockito.when(repository.findOneAsync("team/app", "dev", null))
+				.thenReturn(CompletableFuture.completedFuture(environment));
+		AsyncEnvironmentController controller = new AsyncEnvironmentController(repository);
+
+		assertEquals(environment, controller.defaultLabel("team(_)app", "dev").join());
+	}
+}
@@ -0,0 +1,73 @@
+package com.noap.msfrw.etcd.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@ExtendWith(MockitoExtension.class)
+class EnvironmentETagAdviceTest {
+
+	private Environment sampleEnvironment() {
+		Environment environment = new Environment("sample", "dev");
+		environment.add(new PropertySource("mapPropertySource", Collections.singletonMap("value", "HelloUser")));
+		environment.setVersion("42");
+		return environment;
+	}
+
+	@Test
+	@DisplayName("Given Environment With Version When Body is Written Then Add Revision ETag")
+	void givenEnvironmentWithVersion_whenBodyWritten_thenAddRevisionETag() {
+		EnvironmentETagAdvice advice = new EnvironmentETagAdvice();
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+		Environment environment = sampleEnvironment();
+		Object body = advice.beforeBodyWrite(environment, Mockito.mock(MethodParameter.class), MediaType.APPLICATION_JSON,
+				null, new ServletServerHttpRequest(new MockHttpServletRequest()), response);
+		assertSame(environment, body);
+		assertEquals("\"42-1\"", response.getHeaders().getETag());
+	}
+
+	@Test
+	@DisplayName("Given Matching If-None-Match When Body is Written Then Respond Not Modified Without Body")
+	void givenMatchingIfNoneMatch_whenBodyWritten_thenRespondNotModifiedWithoutBody() throws IOException {
+		EnvironmentETagAdvice advice = new EnvironmentETagAdvice();
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+		servletRequest.addHeader("If-None-Match", "W/\"42-1\"");
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+		Object body = advice.beforeBodyWrite(sampleEnvironment(), Mockito.mock(MethodParameter.class), MediaType.APPLICATION_JSON,
+				null, new ServletServerHttpRequest(servletRequest), response);
+		response.flush();
+		assertNull(body);
+		assertEquals(304, servletResponse.getStatus());
+	}
+
+	@Test
+	@DisplayName("Given Environment Changed When ETag is Created Then Differ From the Previous One")
+	void givenEnvironmentChanged_whenETagCreated_thenDifferFromPrevious() {
+		Environment environment = sampleEnvironment();
+		String previous = EnvironmentETagAdvice.createETag(environment);
+		environment.setVersion("43");
+		assertTrue(!previous.equals(EnvironmentETagAdvice.createETag(environment)));
+		environment.setVersion(null);
+		assertNull(EnvironmentETagAdvice.createETag(environment));
+	}
+}
@@ -0,0 +1,156 @@
+package com.noap.msfrw.etcd.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
+
+@ExtendWith(MockitoExtension.class)
+class EnvironmentResponseCacheFilterTest {
+
+	private static final String YAML = "key: value\n";
+
+	// Stands for the YAML end point of the config server, counting the serializations.
+	private static class YamlServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+		private final AtomicInteger serializations = new AtomicInteger();
+		private transient HttpServletResponse lastResponse;
+
+		@Override
+		protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			serializations.incrementAndGet();
+			lastResponse = response;
+			Map<String, String> variables = new HashMap<>();
+			variables.put("name", "app");
+			variables.put("profiles", "dev");
+			request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, variables);
+			response.setContentType("text/plain;charset=UTF-8");
+			response.getOutputStream().write(YAML.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static MockHttpServletResponse get(EnvironmentResponseCacheFilter filter, YamlServlet servlet,
+			String acceptEncoding) throws Exception {
+		return get(filter, servlet, "/app-dev.yml", acceptEncoding);
+	}
+
+	private static MockHttpServletResponse get(EnvironmentResponseCacheFilter filter, YamlServlet servlet,
+			String path, String acceptEncoding) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		if (acceptEncoding != null) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain(servlet));
+		return response;
+	}
+
+	@Test
+	@DisplayName("Given a Served Environment Response When Requested Again Then Write the Cached Bytes Until a Key of it is Modified")
+	void givenServedResponse_whenRequestedAgain_thenWriteCachedBytesUntilKeyModified() throws Exception {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		ResponseCache responseCache = new ResponseCache(true, 10, false);
+		Mockito.when(repository.getResponseCache()).thenReturn(responseCache);
+		Mockito.when(repository.getSearchPrefixes("app", "dev", null)).thenReturn(Collections.singletonList("dev.app."));
+		Mockito.when(repository.isCacheable(Collections.singletonList("dev.app."))).thenReturn(true);
+		EnvironmentResponseCacheFilter filter = new EnvironmentResponseCacheFilter(repository);
+		YamlServlet servlet = new YamlServlet();
+
+		assertEquals(YAML, get(filter, servlet, null).getContentAsString());
+		MockHttpServletResponse cached = get(filter, servlet, null);
+		assertEquals(YAML, cached.getContentAsString());
+		assertEquals("text/plain;charset=UTF-8", cached.getContentType());
+		assertEquals(1, servlet.serializations.get());
+
+		responseCache.invalidate("dev.app.key");
+		assertEquals(YAML, get(filter, servlet, null).getContentAsString());
+		assertEquals(2, servlet.serializations.get());
+	}
+
+	@Test
+	@DisplayName("Given GZIP Enabled When a Cached Response is Requested by a Client Accepting GZIP Then Write the Compressed Bytes")
+	void givenGzipEnabled_whenCachedResponseRequestedAcceptingGzip_thenWriteCompressedBytes() throws Exception {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		Mockito.when(repository.getResponseCache()).thenReturn(new ResponseCache(true, 10, true));
+		Mockito.when(repository.getSearchPrefixes("app", "dev", null)).thenReturn(Collections.singletonList("dev.app."));
+		Mockito.when(repository.isCacheable(Collections.singletonList("dev.app."))).thenReturn(true);
+		EnvironmentResponseCacheFilter filter = new EnvironmentResponseCacheFilter(repository);
+		YamlServlet servlet = new YamlServlet();
+		get(filter, servlet, "gzip, deflate");
+
+		MockHttpServletResponse compressed = get(filter, servlet, "gzip, deflate");
+		assertEquals("gzip", compressed.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(YAML, new String(StreamUtils.copyToByteArray(
+				new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray()))), StandardCharsets.UTF_8));
+		MockHttpServletResponse plain = get(filter, servlet, null);
+		assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(YAML, plain.getContentAsString());
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, plain.getHeader(HttpHeaders.VARY));
+		assertEquals(1, servlet.serializations.get());
+	}
+
+	@Test
+	@DisplayName("Given an Environment Outside the Watched Prefixes When Requested Again Then Serialize It Again Without Caching It")
+	void givenEnvironmentOutsideWatchedPrefixes_whenRequestedAgain_thenSerializeAgainWithoutCaching() throws Exception {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		ResponseCache responseCache = new ResponseCache(true, 10, false);
+		Mockito.when(repository.getResponseCache()).thenReturn(responseCache);
+		Mockito.when(repository.getSearchPrefixes("app", "dev", null)).thenReturn(Collections.singletonList("dev.app."));
+		EnvironmentResponseCacheFilter filter = new EnvironmentResponseCacheFilter(repository);
+		YamlServlet servlet = new YamlServlet();
+
+		assertEquals(YAML, get(filter, servlet, null).getContentAsString());
+		assertEquals(YAML, get(filter, servlet, null).getContentAsString());
+		assertEquals(0, responseCache.size());
+		assertEquals(2, servlet.serializations.get());
+	}
+
+	@Test
+	@DisplayName("Given an Excluded Path When a Request Under it is Served Then Pass it Through Without Capturing the Response")
+	void givenExcludedPath_whenRequestUnderItServed_thenPassThroughWithoutCapturingResponse() throws Exception {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		ResponseCache responseCache = new ResponseCache(true, 10, false);
+		Mockito.when(repository.getResponseCache()).thenReturn(responseCache);
+		EnvironmentResponseCacheFilter filter =
+				new EnvironmentResponseCacheFilter(repository, Arrays.asList("/actuator", "/watch"));
+		YamlServlet servlet = new YamlServlet();
+
+		MockHttpServletResponse response = get(filter, servlet, "/actuator/prometheus", null);
+		assertEquals(YAML, response.getContentAsString());
+		assertFalse(servlet.lastResponse instanceof ContentCachingResponseWrapper);
+		get(filter, servlet, "/watch/app/dev", null);
+		get(filter, servlet, "/watch/app/dev", null);
+		assertEquals(0, responseCache.size());
+		assertEquals(3, servlet.serializations.get());
+	}
+}
@@ -0,0 +1,50 @@
+package com.noap.msfrw.etcd.controller;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.bulk.EtcdBulkWriteResult;
+
+@ExtendWith(MockitoExtension.class)
+class Etcd3ControllerTest {
+
+	@Test
+	@DisplayName("Given a Malformed Document When Posted in Bulk Then Respond With Bad Request")
+	void givenMalformedDocument_whenPostedInBulk_thenRespondWithBadRequest() throws Exception {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new Etcd3Controller(connector, new ObjectMapper())).build();
+
+		mockMvc.perform(post("/etcd/bulk").contentType("application/json").content("{\"server\":"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/etcd/bulk").contentType("application/x-yaml").content("server: [port"))
+				.andExpect(status().isBadRequest());
+		Mockito.verify(connector, never()).addKeyValues(anyMap(), anyInt());
+	}
+
+	@Test
+	@DisplayName("Given a Well Formed Document When Posted in Bulk Then Write Its Key Values")
+	void givenWellFormedDocument_whenPostedInBulk_thenWriteKeyValues() throws Exception {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		Mockito.when(connector.addKeyValues(Collections.singletonMap("dev.server.port", "8080"), 128))
+				.thenReturn(new EtcdBulkWriteResult());
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new Etcd3Controller(connector, new ObjectMapper())).build();
+
+		mockMvc.perform(post("/etcd/bulk").param("prefix", "dev.").contentType("text/plain").content("server.port=8080\n"))
+				.andExpect(status().isOk());
+	}
+}
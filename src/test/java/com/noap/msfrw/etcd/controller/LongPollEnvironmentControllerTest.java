@@ -0,0 +1,84 @@
+package com.noap.msfrw.etcd.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.noap.msfrw.etcd.repository.EnvironmentChangeListeners;
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.EtcdConfigurationProperties;
+
+@ExtendWith(MockitoExtension.class)
+class LongPollEnvironmentControllerTest {
+
+	private static Environment environmentAt(long revision) {
+		Environment environment = new Environment("app", "dev");
+		environment.setVersion(String.valueOf(revision));
+		return environment;
+	}
+
+	private static LongPollEnvironmentController createController(EtcdEnvironmentRepository repository,
+			EnvironmentChangeListeners listeners) {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getLongPollTimeoutMillis()).thenReturn(1000L);
+		Mockito.when(repository.getChangeListeners()).thenReturn(listeners);
+		Mockito.when(repository.getSearchPrefixes("app", "dev", null)).thenReturn(Collections.singletonList("dev.app."));
+		return new LongPollEnvironmentController(repository, ecp);
+	}
+
+	@Test
+	@DisplayName("Given an Environment at the Revision Last Seen When Waiting Then Respond Once a Later Change of its Keys is Watched")
+	void givenEnvironmentAtLastSeenRevision_whenWaiting_thenRespondOnceLaterChangeWatched() {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		EnvironmentChangeListeners listeners = new EnvironmentChangeListeners();
+		LongPollEnvironmentController controller = createController(repository, listeners);
+		Mockito.when(repository.findOneAsync("app", "dev", null))
+				.thenReturn(CompletableFuture.completedFuture(environmentAt(7L)))
+				.thenReturn(CompletableFuture.completedFuture(environmentAt(9L)));
+
+		DeferredResult<ResponseEntity<Environment>> result = controller.defaultLabel("app", "dev", 7L, 60000L);
+		assertFalse(result.hasResult());
+		assertEquals(1, listeners.size());
+
+		listeners.notifyChanged("dev.other.key", 8L);
+		listeners.notifyChanged("dev.app.key", 6L);
+		assertFalse(result.hasResult());
+		listeners.notifyChanged("dev.app.key", 9L);
+
+		assertTrue(result.hasResult());
+		@SuppressWarnings("unchecked")
+		ResponseEntity<Environment> response = (ResponseEntity<Environment>) result.getResult();
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("9", response.getBody().getVersion());
+		assertEquals(0, listeners.size());
+	}
+
+	@Test
+	@DisplayName("Given an Environment Changed Since the Revision Last Seen When Waiting Then Respond Right Away")
+	void givenEnvironmentChangedSinceLastSeenRevision_whenWaiting_thenRespondRightAway() {
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		LongPollEnvironmentController controller = createController(repository, new EnvironmentChangeListeners());
+		Mockito.when(repository.findOneAsync("app", "dev", null))
+				.thenReturn(CompletableFuture.completedFuture(environmentAt(12L)));
+
+		DeferredResult<ResponseEntity<Environment>> result = controller.defaultLabel("app", "dev", 7L, null);
+
+		assertTrue(result.hasResult());
+		@SuppressWarnings("unchecked")
+		ResponseEntity<Environment> response = (ResponseEntity<Environment>) result.getResult();
+		assertEquals("12", response.getBody().getVersion());
+	}
+}
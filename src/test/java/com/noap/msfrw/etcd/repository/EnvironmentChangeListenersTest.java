@@ -0,0 +1,48 @@
+package com.noap.msfrw.etcd.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.noap.msfrw.etcd.repository.EnvironmentChangeListeners.Listener;
+
+class EnvironmentChangeListenersTest {
+
+	@Test
+	@DisplayName("Given Registered Listeners When Keys Change Then Notify Each Matching Listener Once for a Change After its Revision")
+	void givenRegisteredListeners_whenKeysChange_thenNotifyMatchingListenersOnceAfterTheirRevision() {
+		EnvironmentChangeListeners listeners = new EnvironmentChangeListeners();
+		AtomicInteger app = new AtomicInteger();
+		AtomicInteger other = new AtomicInteger();
+		listeners.register(Arrays.asList("dev.app.", "dev.application."), 10L, app::incrementAndGet);
+		listeners.register(Collections.singletonList("dev.other."), 10L, other::incrementAndGet);
+
+		assertEquals(0, listeners.notifyChanged("prod.app.key", 11L));
+		assertEquals(0, listeners.notifyChanged("dev.app.key", 10L));
+		assertEquals(1, listeners.notifyChanged("dev.application.shared", 12L));
+		assertEquals(0, listeners.notifyChanged("dev.app.key", 13L));
+		assertEquals(1, app.get());
+		assertEquals(0, other.get());
+		assertEquals(1, listeners.size());
+
+		assertEquals(1, listeners.notifyChanged(null, EnvironmentChangeListeners.UNKNOWN_REVISION));
+		assertEquals(1, other.get());
+		assertEquals(0, listeners.size());
+	}
+
+	@Test
+	@DisplayName("Given a Removed Listener When its Keys Change Then Never Notify it")
+	void givenRemovedListener_whenKeysChange_thenNeverNotifyIt() {
+		EnvironmentChangeListeners listeners = new EnvironmentChangeListeners();
+		AtomicInteger notified = new AtomicInteger();
+		Listener listener = listeners.register(Collections.singletonList("dev.app."), 0L, notified::incrementAndGet);
+		listeners.remove(listener);
+		assertEquals(0, listeners.notifyChanged("dev.app.key", 1L));
+		assertEquals(0, notified.get());
+	}
+}
@@ -1,13 +1,23 @@
 package com.noap.msfrw.etcd.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.times;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,7 +29,11 @@ import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.context.ApplicationEventPublisher;
 
+import com.noap.msfrw.etcd.repository.cache.CacheEvictionPolicy;
+import com.noap.msfrw.etcd.repository.cache.EnvironmentCache;
+import com.noap.msfrw.etcd.repository.cache.ResponseCache;
 import com.noap.msfrw.etcd.util.EtcdConnector;
+import com.noap.msfrw.etcd.util.EtcdKeyValues;
 
 @ExtendWith(MockitoExtension.class)
 class EtcdEnvironmentRepositoryTest {
@@ -47,7 +61,7 @@ class EtcdEnvironmentRepositoryTest {
 		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
 		String busId = "sampleBusId";
 		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, busId);
-		Mockito.when(connector.getAllKeyValues(anyString(), anyString(), anyString())).thenReturn(sampleMap);
+		Mockito.when(connector.getKeyValues(anyString(), anyString(), anyString())).thenReturn(new EtcdKeyValues(sampleMap, 7L));
 		
 		Environment findOne = eer.findOne("sample_application", "sample_profile", "sample_label");
 		List<PropertySource> propertySources = findOne.getPropertySources();
@@ -56,6 +70,7 @@ class EtcdEnvironmentRepositoryTest {
 				assertEquals(propertySrc.getSource().get(sampleKey), sampleValue); 
 			}
 		}
+		assertEquals("7", findOne.getVersion());
 	}
 	
 	@Test
@@ -69,4 +84,193 @@ class EtcdEnvironmentRepositoryTest {
 		eer.publishEventByPath("sampleApp");
 		Mockito.verify(aep, times(1)).publishEvent(any(RefreshRemoteApplicationEvent.class));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	@DisplayName("Given Cache Enabled When Same Environment Requested Twice Then Read ETCD Once Until a Key is Modified")
+	void givenCacheEnabled_whenSameEnvironmentRequestedTwice_thenReadEtcdOnceUntilKeyModified() {
+		Map<String, String> sampleMap = new HashMap<>();
+		sampleMap.put("samplekey", "samplevalue");
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId", cache);
+		Mockito.when(connector.getKeyValues(anyString(), anyString(), anyString())).thenReturn(new EtcdKeyValues(sampleMap, 7L));
+		Mockito.when(connector.createSearchPrefixFromApplicationParameters(anyString(), anyString(), anyString())).thenReturn("dev.sample.");
+		Mockito.when(connector.isWatched(Collections.singletonList("dev.sample."))).thenReturn(true);
+		
+		eer.findOne("sample", "dev", "master");
+		Environment cached = eer.findOne("sample", "dev", "master");
+		Mockito.verify(connector, times(1)).getKeyValues(anyString(), anyString(), anyString());
+		assertEquals("samplevalue", cached.getPropertySources().get(0).getSource().get("samplekey"));
+		
+		eer.evictCachedEnvironments("prod.sample.key");
+		eer.findOne("sample", "dev", "master");
+		Mockito.verify(connector, times(1)).getKeyValues(anyString(), anyString(), anyString());
+		
+		eer.evictCachedEnvironments("dev.sample.key");
+		eer.findOne("sample", "dev", "master");
+		Mockito.verify(connector, times(2)).getKeyValues(anyString(), anyString(), anyString());
+		assertEquals(2, eer.getEnvironmentCache().getHitCount());
+	}
+
+	@Test
+	@DisplayName("Given a Read Served Behind an Evicted Change When Environment Requested Then Return It Without Caching It")
+	void givenReadBehindEvictedChange_whenEnvironmentRequested_thenReturnWithoutCaching() {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		ResponseCache responseCache = new ResponseCache(true, 10, false);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId", cache, responseCache);
+		Mockito.when(connector.createSearchPrefixFromApplicationParameters("sample", "dev", "master")).thenReturn("dev.sample.master.");
+		Mockito.when(connector.isWatched(Collections.singletonList("dev.sample.master."))).thenReturn(true);
+		// a lagging member answers at revision 9 although the change at revision 10 is watched already
+		Mockito.when(connector.getKeyValues("sample", "dev", "master"))
+				.thenReturn(new EtcdKeyValues(new HashMap<>(Collections.singletonMap("key", "old")), 8L, 9L))
+				.thenReturn(new EtcdKeyValues(new HashMap<>(Collections.singletonMap("key", "new")), 10L, 10L));
+		eer.evictCachedEnvironments("dev.sample.master.key", 10L);
+		long responseGeneration = responseCache.currentGeneration();
+
+		assertEquals("8", eer.findOne("sample", "dev", "master").getVersion());
+		assertEquals(0, cache.size());
+		assertFalse(responseCache.put("/sample/dev/master", Collections.singletonList("dev.sample.master."),
+				"application/json", null, new byte[0], responseGeneration));
+
+		assertEquals("10", eer.findOne("sample", "dev", "master").getVersion());
+		assertEquals("10", eer.findOne("sample", "dev", "master").getVersion());
+		Mockito.verify(connector, times(2)).getKeyValues("sample", "dev", "master");
+	}
+
+	@Test
+	@DisplayName("Given an Environment Outside the Watched Prefixes When Requested Twice Then Read ETCD Both Times Without Caching It")
+	void givenEnvironmentOutsideWatchedPrefixes_whenRequestedTwice_thenReadEtcdBothTimesWithoutCaching() {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId", cache);
+		Mockito.when(connector.createSearchPrefixFromApplicationParameters("sample", "dev", "master")).thenReturn("dev.sample.master.");
+		Mockito.when(connector.getKeyValues("sample", "dev", "master"))
+				.thenReturn(new EtcdKeyValues(new HashMap<>(Collections.singletonMap("key", "old")), 3L))
+				.thenReturn(new EtcdKeyValues(new HashMap<>(Collections.singletonMap("key", "new")), 4L));
+
+		assertEquals("3", eer.findOne("sample", "dev", "master").getVersion());
+		assertEquals(0, cache.size());
+		assertEquals("4", eer.findOne("sample", "dev", "master").getVersion());
+		Mockito.verify(connector, times(2)).getKeyValues("sample", "dev", "master");
+	}
+
+	@Test
+	@DisplayName("Given Application Profile and Label When Environment Requested Asynchronously Then Complete With Keys and Version")
+	void givenApplicationProfileAndLabel_whenEnvironmentRequestedAsync_thenCompleteWithKeysAndVersion() {
+		Map<String, String> sampleMap = new HashMap<>();
+		sampleMap.put("samplekey", "samplevalue");
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId");
+		Mockito.when(connector.getKeyValuesAsync("app", "dev", null))
+				.thenReturn(CompletableFuture.completedFuture(new EtcdKeyValues(sampleMap, 9L)));
+
+		Environment environment = eer.findOneAsync("app", "dev", null).join();
+		assertEquals("samplevalue", environment.getPropertySources().get(0).getSource().get("samplekey"));
+		assertEquals("9", environment.getVersion());
+	}
+
+	@Test
+	@DisplayName("Given Layered Sources Enabled When Environment Requested Then Return Layers in Precedence Order")
+	void givenLayeredSourcesEnabled_whenEnvironmentRequested_thenReturnLayersInPrecedenceOrder() {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId",
+				new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU));
+		Mockito.when(connector.isLayeredSourcesEnabled()).thenReturn(true);
+		Mockito.when(connector.createSearchPrefixFromApplicationParameters(anyString(), anyString(), Mockito.isNull()))
+				.thenAnswer(invocation -> invocation.getArgument(1) + "." + invocation.getArgument(0) + ".");
+		Mockito.when(connector.isWatched(Arrays.asList("dev.app.", "dev.application.", "default.app.", "default.application.")))
+				.thenReturn(true);
+		Map<String, String> appDev = new HashMap<>();
+		appDev.put("key", "app-dev");
+		Map<String, String> sharedDefault = new HashMap<>();
+		sharedDefault.put("key", "application-default");
+		sharedDefault.put("shared", "value");
+		Mockito.when(connector.getLayeredKeyValues(Arrays.asList("dev.app.", "dev.application.", "default.app.", "default.application.")))
+				.thenReturn(Arrays.asList(new EtcdKeyValues(appDev, 12L), new EtcdKeyValues(new HashMap<>(), 0L),
+						new EtcdKeyValues(new HashMap<>(), 0L), new EtcdKeyValues(sharedDefault, 30L)));
+
+		Environment environment = eer.findOne("app", "dev", null);
+		assertEquals(2, environment.getPropertySources().size());
+		assertEquals("etcd:app-dev", environment.getPropertySources().get(0).getName());
+		assertEquals("etcd:application-default", environment.getPropertySources().get(1).getName());
+		assertEquals("30", environment.getVersion());
+		assertEquals(1, eer.getEnvironmentCache().size());
+
+		eer.evictCachedEnvironments("default.application.shared");
+		assertEquals(0, eer.getEnvironmentCache().size());
+	}
+
+	@Test
+	@DisplayName("Given Comma Separated Profiles When Environment Requested Then Read All Profiles at Once With Last Profile First")
+	void givenCommaSeparatedProfiles_whenEnvironmentRequested_thenReadAllProfilesAtOnceWithLastProfileFirst() {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId");
+		Mockito.when(connector.createSearchPrefixFromApplicationParameters(anyString(), anyString(), Mockito.isNull()))
+				.thenAnswer(invocation -> invocation.getArgument(1) + "." + invocation.getArgument(0) + ".");
+		Map<String, String> canary = new HashMap<>();
+		canary.put("key", "canary");
+		Map<String, String> prod = new HashMap<>();
+		prod.put("key", "prod");
+		Mockito.when(connector.getLayeredKeyValues(Arrays.asList("canary.app.", "eu-west.app.", "prod.app.")))
+				.thenReturn(Arrays.asList(new EtcdKeyValues(canary, 5L), new EtcdKeyValues(new HashMap<>(), 0L),
+						new EtcdKeyValues(prod, 3L)));
+
+		Environment environment = eer.findOne("app", "prod, eu-west,canary", null);
+		assertEquals(2, environment.getPropertySources().size());
+		assertEquals("etcd:app-canary", environment.getPropertySources().get(0).getName());
+		assertEquals("etcd:app-prod", environment.getPropertySources().get(1).getName());
+		Mockito.verify(connector, Mockito.never()).getKeyValues(anyString(), anyString(), Mockito.any());
+	}
+
+	@Test
+	@DisplayName("Given a Read in Flight When the Same Environment is Requested Concurrently Then Share the Read and Its Result")
+	void givenReadInFlight_whenSameEnvironmentRequestedConcurrently_thenShareReadAndResult() throws Exception {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId");
+		CountDownLatch readStarted = new CountDownLatch(1);
+		CountDownLatch readReleased = new CountDownLatch(1);
+		Mockito.when(connector.getKeyValues("app", "dev", "master")).thenAnswer(invocation -> {
+			readStarted.countDown();
+			readReleased.await(5, TimeUnit.SECONDS);
+			return new EtcdKeyValues(new HashMap<>(Collections.singletonMap("key", "value")), 4L);
+		});
+		ExecutorService clients = Executors.newFixedThreadPool(2);
+		Future<Environment> first = clients.submit(() -> eer.findOne("app", "dev", "master"));
+		readStarted.await(5, TimeUnit.SECONDS);
+		Future<Environment> second = clients.submit(() -> eer.findOne("app", "dev", "master"));
+		for (int i = 0; i < 500 && eer.getCollapsedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		readReleased.countDown();
+
+		assertEquals("4", first.get(5, TimeUnit.SECONDS).getVersion());
+		assertEquals("value", second.get(5, TimeUnit.SECONDS).getPropertySources().get(0).getSource().get("key"));
+		assertNotSame(first.get(), second.get());
+		assertEquals(1, eer.getCollapsedCount());
+		Mockito.verify(connector, times(1)).getKeyValues("app", "dev", "master");
+		clients.shutdown();
+	}
+
+	@Test
+	@DisplayName("Given an Asynchronous Read in Flight When a Key Changes Then Later Lookups Start a New Read")
+	void givenAsyncReadInFlight_whenKeyChanges_thenLaterLookupsStartNewRead() {
+		EtcdConnector connector = Mockito.mock(EtcdConnector.class);
+		EtcdEnvironmentRepository eer = new EtcdEnvironmentRepository(connector, "sampleBusId");
+		CompletableFuture<EtcdKeyValues> staleRead = new CompletableFuture<>();
+		Mockito.when(connector.getKeyValuesAsync("app", "dev", null)).thenReturn(staleRead)
+				.thenReturn(CompletableFuture.completedFuture(new EtcdKeyValues(new HashMap<>(), 8L)));
+
+		CompletableFuture<Environment> first = eer.findOneAsync("app", "dev", null);
+		CompletableFuture<Environment> joined = eer.findOneAsync("app", "dev", null);
+		eer.evictCachedEnvironments("dev.app.key");
+		CompletableFuture<Environment> afterChange = eer.findOneAsync("app", "dev", null);
+		staleRead.complete(new EtcdKeyValues(new HashMap<>(), 7L));
+
+		assertEquals("7", first.join().getVersion());
+		assertEquals("7", joined.join().getVersion());
+		assertEquals("8", afterChange.join().getVersion());
+		assertEquals(1, eer.getCollapsedCount());
+		Mockito.verify(connector, times(2)).getKeyValuesAsync("app", "dev", null);
+	}
+}
@@ -0,0 +1,99 @@
+package com.noap.msfrw.etcd.repository.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+@ExtendWith(MockitoExtension.class)
+class EnvironmentCacheTest {
+
+	private Environment sampleEnvironment(String application) {
+		Environment environment = new Environment(application, "dev");
+		environment.add(new PropertySource("mapPropertySource", Collections.singletonMap("key", "value")));
+		return environment;
+	}
+
+	@Test
+	@DisplayName("Given Cached Environment When Requested Then Return a Copy and Count Hits and Misses")
+	void givenCachedEnvironment_whenRequested_thenReturnCopyAndCountHitsAndMisses() {
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		assertNull(cache.get("app", "dev", null));
+		cache.put("app", "dev", null, "dev.app.", sampleEnvironment("app"), cache.currentGeneration());
+		Environment cached = cache.get("app", "dev", null);
+		assertNotNull(cached);
+		assertEquals(1, cached.getPropertySources().size());
+		cached.getPropertySources().clear();
+		assertEquals(1, cache.get("app", "dev", null).getPropertySources().size());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	@DisplayName("Given Cached Environments When a Key is Modified Then Evict Only Matching Environments")
+	void givenCachedEnvironments_whenKeyModified_thenEvictOnlyMatchingEnvironments() {
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		cache.put("app", "dev", null, "dev.app.", sampleEnvironment("app"), cache.currentGeneration());
+		cache.put("other", "dev", null, "dev.other.", sampleEnvironment("other"), cache.currentGeneration());
+		assertEquals(1, cache.invalidate("dev.app.key"));
+		assertNull(cache.get("app", "dev", null));
+		assertNotNull(cache.get("other", "dev", null));
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	@DisplayName("Given an Invalidation During Load When Put is Requested Then Skip Caching the Stale Environment")
+	void givenInvalidationDuringLoad_whenPutRequested_thenSkipCaching() {
+		EnvironmentCache cache = new EnvironmentCache(true, 10, CacheEvictionPolicy.LRU);
+		long generation = cache.currentGeneration();
+		cache.invalidate("dev.app.key");
+		assertFalse(cache.put("app", "dev", null, "dev.app.", sampleEnvironment("app"), generation));
+		assertNull(cache.get("app", "dev", null));
+	}
+
+	@Test
+	@DisplayName("Given LRU Policy When Cache is Full Then Evict the Least Recently Used Environment")
+	void givenLruPolicy_whenCacheIsFull_thenEvictLeastRecentlyUsed() {
+		EnvironmentCache cache = new EnvironmentCache(true, 2, CacheEvictionPolicy.LRU);
+		cache.put("a", "dev", null, "dev.a.", sampleEnvironment("a"), cache.currentGeneration());
+		cache.put("b", "dev", null, "dev.b.", sampleEnvironment("b"), cache.currentGeneration());
+		cache.get("a", "dev", null);
+		cache.put("c", "dev", null, "dev.c.", sampleEnvironment("c"), cache.currentGeneration());
+		assertNull(cache.get("b", "dev", null));
+		assertNotNull(cache.get("a", "dev", null));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	@DisplayName("Given LFU Policy When Cache is Full Then Evict the Least Frequently Used Environment")
+	void givenLfuPolicy_whenCacheIsFull_thenEvictLeastFrequentlyUsed() {
+		EnvironmentCache cache = new EnvironmentCache(true, 2, CacheEvictionPolicy.LFU);
+		cache.put("a", "dev", null, "dev.a.", sampleEnvironment("a"), cache.currentGeneration());
+		cache.put("b", "dev", null, "dev.b.", sampleEnvironment("b"), cache.currentGeneration());
+		cache.get("a", "dev", null);
+		cache.get("a", "dev", null);
+		cache.get("b", "dev", null);
+		cache.put("c", "dev", null, "dev.c.", sampleEnvironment("c"), cache.currentGeneration());
+		assertNull(cache.get("b", "dev", null));
+		assertNotNull(cache.get("a", "dev", null));
+	}
+
+	@Test
+	@DisplayName("Given Disabled Cache When Environment is Put Then Never Return It")
+	void givenDisabledCache_whenEnvironmentPut_thenNeverReturnIt() {
+		EnvironmentCache cache = EnvironmentCache.disabled();
+		assertFalse(cache.put("app", "dev", null, "dev.app.", sampleEnvironment("app"), cache.currentGeneration()));
+		assertNull(cache.get("app", "dev", null));
+		assertFalse(cache.isEnabled());
+	}
+}
@@ -0,0 +1,73 @@
+package com.noap.msfrw.etcd.repository.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import com.noap.msfrw.etcd.repository.cache.ResponseCache.CachedResponse;
+
+class ResponseCacheTest {
+
+	private static final byte[] BODY = "key: value\n".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	@DisplayName("Given Cached Responses When a Key is Modified Then Evict Only the Responses Read With It")
+	void givenCachedResponses_whenKeyModified_thenEvictOnlyResponsesReadWithIt() {
+		ResponseCache cache = new ResponseCache(true, 10, false);
+		cache.put("/app/dev", Arrays.asList("dev.app.", "dev.application."), "application/json", "\"7-1\"", BODY,
+				cache.currentGeneration());
+		cache.put("/other-dev.yml", Collections.singletonList("dev.other."), "text/plain", null, BODY,
+				cache.currentGeneration());
+
+		CachedResponse cached = cache.get("/app/dev");
+		assertNotNull(cached);
+		assertEquals("\"7-1\"", cached.getETag());
+		assertNull(cached.getGzippedBody());
+		assertEquals(1, cache.invalidate("dev.application.shared"));
+		assertNull(cache.get("/app/dev"));
+		assertNotNull(cache.get("/other-dev.yml"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	@DisplayName("Given an Invalidation While Serializing When Put is Requested Then Skip Caching the Stale Response")
+	void givenInvalidationWhileSerializing_whenPutRequested_thenSkipCaching() {
+		ResponseCache cache = new ResponseCache(true, 1, false);
+		long generation = cache.currentGeneration();
+		cache.invalidate("dev.other.key");
+		assertFalse(cache.put("/app/dev", Collections.singletonList("dev.app."), "application/json", null, BODY,
+				generation));
+		cache.put("/app/dev", Collections.singletonList("dev.app."), "application/json", null, BODY,
+				cache.currentGeneration());
+		cache.put("/app/prod", Collections.singletonList("prod.app."), "application/json", null, BODY,
+				cache.currentGeneration());
+		assertEquals(1, cache.size());
+		assertNull(cache.get("/app/dev"));
+		assertFalse(ResponseCache.disabled().put("/app/dev", Collections.singletonList("dev.app."), "application/json",
+				null, BODY, 0L));
+	}
+
+	@Test
+	@DisplayName("Given GZIP Enabled When a Response is Cached Then Keep a Compressed Copy of its Bytes")
+	void givenGzipEnabled_whenResponseCached_thenKeepCompressedCopy() throws IOException {
+		ResponseCache cache = new ResponseCache(true, 10, true);
+		cache.put("/app-dev.properties", Collections.singletonList("dev.app."), "text/plain", null, BODY,
+				cache.currentGeneration());
+		byte[] gzipped = cache.get("/app-dev.properties").getGzippedBody();
+		assertArrayEquals(BODY, StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped))));
+	}
+}
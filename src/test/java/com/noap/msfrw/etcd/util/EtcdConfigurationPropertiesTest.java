@@ -13,6 +13,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.noap.msfrw.etcd.repository.cache.CacheEvictionPolicy;
+
 @ExtendWith(MockitoExtension.class)
 class EtcdConfigurationPropertiesTest {
 	
@@ -66,4 +68,136 @@ class EtcdConfigurationPropertiesTest {
 		List<String> urlsSet = ecp.getUrlsWithHttpPrefix();
 		assertTrue(urlsSet.stream().anyMatch(u -> u.contains("https://")));
 	}
+	
+	@Test
+	@DisplayName("Test setters and getters for environment cache")
+	void whenCachePropertiesSet_thenSuccess() {
+		ecp.setCacheEnabled(Boolean.FALSE);
+		ecp.setCacheMaxSize(5);
+		ecp.setCacheEvictionPolicy(CacheEvictionPolicy.LFU);
+		assertEquals(Boolean.FALSE, ecp.getCacheEnabled());
+		assertEquals(5, ecp.getCacheMaxSize());
+		assertEquals(CacheEvictionPolicy.LFU, ecp.getCacheEvictionPolicy());
+	}
+	
+	@Test
+	@DisplayName("Test setter and getter for range page size")
+	void whenGetRangePageSize_thenSuccess() {
+		ecp.setRangePageSize(100);
+		assertEquals(100, ecp.getRangePageSize());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for watch reconnect backoff")
+	void whenWatchReconnectBackoffSet_thenSuccess() {
+		ecp.setWatchReconnectInitialBackoffMillis(100L);
+		ecp.setWatchReconnectMaxBackoffMillis(1000L);
+		assertEquals(100L, ecp.getWatchReconnectInitialBackoffMillis());
+		assertEquals(1000L, ecp.getWatchReconnectMaxBackoffMillis());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for refresh coalescing")
+	void whenRefreshCoalescingSet_thenSuccess() {
+		ecp.setRefreshQuietWindowMillis(100L);
+		ecp.setRefreshMaxDelayMillis(1000L);
+		assertEquals(100L, ecp.getRefreshQuietWindowMillis());
+		assertEquals(1000L, ecp.getRefreshMaxDelayMillis());
+	}
+
+	@Test
+	@DisplayName("Test setter and getter for watch queue capacity")
+	void whenGetWatchQueueCapacity_thenSuccess() {
+		ecp.setWatchQueueCapacity(16);
+		assertEquals(16, ecp.getWatchQueueCapacity());
+	}
+
+	@Test
+	@DisplayName("Test setter and getter for layered sources")
+	void whenLayeredSourcesEnabledSet_thenSuccess() {
+		ecp.setLayeredSourcesEnabled(true);
+		assertEquals(true, ecp.getLayeredSourcesEnabled());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the keyspace snapshot")
+	void whenSnapshotSet_thenSuccess() {
+		ecp.setSnapshotPath("/tmp/etcd-keyspace.snapshot");
+		ecp.setSnapshotWriteDelayMillis(1000L);
+		assertEquals("/tmp/etcd-keyspace.snapshot", ecp.getSnapshotPath());
+		assertEquals(1000L, ecp.getSnapshotWriteDelayMillis());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the refresh publisher leader election")
+	void whenLeaderElectionSet_thenSuccess() {
+		ecp.setLeaderElectionEnabled(true);
+		ecp.setLeaderElectionName("sample-election");
+		ecp.setLeaderLeaseTtlSeconds(5L);
+		assertEquals(true, ecp.getLeaderElectionEnabled());
+		assertEquals("sample-election", ecp.getLeaderElectionName());
+		assertEquals(5L, ecp.getLeaderLeaseTtlSeconds());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the key delimiter and escape character")
+	void whenKeyDelimiterAndEscapeSet_thenSuccess() {
+		ecp.setKeyDelimiter("/");
+		ecp.setKeyEscapeCharacter("\\");
+		assertEquals("/", ecp.getKeyDelimiter());
+		assertEquals("\\", ecp.getKeyEscapeCharacter());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the read consistency and read client pool")
+	void whenReadConsistencySet_thenSuccess() {
+		assertEquals(ReadConsistency.LINEARIZABLE, ecp.getReadConsistency());
+		ecp.setReadConsistency(ReadConsistency.SERIALIZABLE);
+		ecp.setReadClientPoolEnabled(true);
+		assertEquals(ReadConsistency.SERIALIZABLE, ecp.getReadConsistency());
+		assertEquals(true, ecp.getReadClientPoolEnabled());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the sharded prefix watches")
+	void whenWatchPrefixesSet_thenSuccess() {
+		List<String> prefixes = Stream.of("dev.", "prod.").collect(Collectors.toList());
+		ecp.setWatchPrefixes(prefixes);
+		ecp.setWatchShardCount(2);
+		ecp.setWatchNoDelete(true);
+		ecp.setWatchPrevKv(true);
+		assertEquals(prefixes, ecp.getWatchPrefixes());
+		assertEquals(2, ecp.getWatchShardCount());
+		assertEquals(true, ecp.getWatchNoDelete());
+		assertEquals(true, ecp.getWatchPrevKv());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the value codec")
+	void whenValueCodecSet_thenSuccess() {
+		ecp.setValueCompressionThresholdBytes(4096);
+		ecp.setValueChunkSizeBytes(65536);
+		ecp.setDecodedValueCacheSize(16);
+		assertEquals(4096, ecp.getValueCompressionThresholdBytes());
+		assertEquals(65536, ecp.getValueChunkSizeBytes());
+		assertEquals(16, ecp.getDecodedValueCacheSize());
+	}
+
+	@Test
+	@DisplayName("Test setters and getters for the response cache")
+	void whenResponseCacheSet_thenSuccess() {
+		ecp.setResponseCacheEnabled(false);
+		ecp.setResponseCacheMaxSize(50);
+		ecp.setResponseCacheGzipEnabled(true);
+		assertEquals(false, ecp.getResponseCacheEnabled());
+		assertEquals(50, ecp.getResponseCacheMaxSize());
+		assertEquals(true, ecp.getResponseCacheGzipEnabled());
+	}
+
+	@Test
+	@DisplayName("Test setter and getter for the long poll timeout")
+	void whenLongPollTimeoutSet_thenSuccess() {
+		ecp.setLongPollTimeoutMillis(5000L);
+		assertEquals(5000L, ecp.getLongPollTimeoutMillis());
+	}
 }
@@ -1,14 +1,23 @@
 package com.noap.msfrw.etcd.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -16,17 +25,36 @@ import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.noap.msfrw.etcd.repository.EtcdEnvironmentRepository;
+import com.noap.msfrw.etcd.util.bulk.EtcdBulkWriteResult;
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+import com.noap.msfrw.etcd.util.pool.EtcdReadClientPool;
+import com.noap.msfrw.etcd.util.replica.KeyspaceSnapshot;
+import com.noap.msfrw.etcd.util.replica.KeyspaceSnapshotFile;
+import com.noap.msfrw.etcd.util.watch.EtcdWatchLifecycle;
 import com.noap.msfrw.etcd.util.watch.lock.EtcdWatchLock;
+import com.noap.msfrw.etcd.util.watch.lock.InsideLockRunnable;
 
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
 import io.etcd.jetcd.KV;
 import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Response;
+import io.etcd.jetcd.Txn;
+import io.etcd.jetcd.Watch;
 import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Op;
 import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
 
 @ExtendWith(MockitoExtension.class)
 class EtcdConnectorTest {
@@ -42,6 +70,22 @@ class EtcdConnectorTest {
 		boolean connect = connectorSample.connect("sampleUser", "samplePassword", 10l, 10l);
 		assertEquals(true, connect);
 	}
+
+	@Test
+	@DisplayName("Given a Connected Client When Another Client is Set Then Close the Replaced Client")
+	void givenConnectedClient_whenAnotherClientSet_thenCloseReplacedClient() {
+		EtcdConnector connector = new EtcdConnector(null, Mockito.mock(EtcdConfigurationProperties.class), Boolean.FALSE);
+		Client replaced = Mockito.mock(Client.class);
+		Client replacing = Mockito.mock(Client.class);
+		connector.setEtcdClient(replaced);
+		connector.setEtcdClient(replaced);
+		Mockito.verify(replaced, never()).close();
+
+		connector.setEtcdClient(replacing);
+		Mockito.verify(replaced).close();
+		Mockito.verify(replacing, never()).close();
+		assertEquals(replacing, connector.getEtcdClient());
+	}
 	
 	@SuppressWarnings("unchecked")
 	@Test
@@ -102,6 +146,8 @@ class EtcdConnectorTest {
 		Mockito.when(futureResponse.get()).thenReturn(getResponse);
 		KeyValue kv = Mockito.mock(KeyValue.class);	
 		Mockito.when(getResponse.getKvs()).thenReturn(Stream.of(kv).collect(Collectors.toList()));
+		Response.Header header = Mockito.mock(Response.Header.class);
+		Mockito.when(getResponse.getHeader()).thenReturn(header);
 		Mockito.when(kv.getKey()).thenReturn(ByteSequence.from("SampleKey".getBytes()));
 		Mockito.when(kv.getValue()).thenReturn(ByteSequence.from("SampleValue".getBytes()));
 		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(new ArrayList<>());
@@ -174,4 +220,601 @@ class EtcdConnectorTest {
 		Mockito.verify(mockClient,times(1)).getKVClient();
 		Mockito.verify(kvmock,times(1)).get(any(ByteSequence.class), any(GetOption.class));		
 	}
+	
+	@Test
+	@DisplayName("Given Serializable Read Consistency and a Read Client Pool When a Key Value is Requested Then Read It Serializable Through the Pool")
+	void givenSerializableReadsAndClientPool_whenKeyValueIsRequested_thenReadSerializableThroughPool() throws Exception {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		Client followerClient = Mockito.mock(Client.class);
+		KV followerKv = Mockito.mock(KV.class);
+		Mockito.when(followerClient.getKVClient()).thenReturn(followerKv);
+		GetResponse response = Mockito.mock(GetResponse.class);
+		KeyValue kv = Mockito.mock(KeyValue.class);
+		Mockito.when(kv.getValue()).thenReturn(ByteSequence.from("follower-value".getBytes()));
+		Mockito.when(response.getKvs()).thenReturn(Collections.singletonList(kv));
+		Mockito.when(followerKv.get(any(ByteSequence.class), any(GetOption.class)))
+				.thenReturn(CompletableFuture.completedFuture(response));
+		Mockito.when(ecp.getReadConsistency()).thenReturn(ReadConsistency.SERIALIZABLE);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+		connector.setReadClientPool(new EtcdReadClientPool(Collections.singletonMap("http://follower:2379", followerClient)));
+
+		assertEquals("follower-value", connector.getValue("key"));
+
+		ArgumentCaptor<GetOption> optionCaptor = ArgumentCaptor.forClass(GetOption.class);
+		Mockito.verify(followerKv).get(any(ByteSequence.class), optionCaptor.capture());
+		assertTrue(optionCaptor.getValue().isSerializable());
+		Mockito.verify(mockClient, never()).getKVClient();
+	}
+	
+	@Test
+	@DisplayName("Given Replica Enabled and Loaded, When All Key Values are Requested then Serve Them Without Reading ETCD")
+	void givenReplicaLoaded_whenAllKeyValuesAreRequested_thenServeFromReplica() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(Boolean.TRUE);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Stream.of(KeyPrefix.PROFILE, KeyPrefix.APPLICATION).collect(Collectors.toList()));
+		connector.getKeyspaceReplica().load(Collections.singletonMap("dev.sample.value", "HelloUser"),
+				Collections.singletonMap("dev.sample.value", 3L), 3L);
+		Map<String, String> allKeyValues = connector.getAllKeyValues("sample", "dev", null);
+		Mockito.verify(mockClient, never()).getKVClient();
+		assertEquals("HelloUser", allKeyValues.get("value"));
+	}
+	
+	@Test
+	@DisplayName("Given Range Page Size, When All Key Values are Requested then Read Pages Pinned to the First Page's Revision")
+	void givenRangePageSize_whenAllKeyValuesAreRequested_thenReadPagesPinnedToSameRevision() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+		KV kvmock = Mockito.mock(KV.class);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		Mockito.when(ecp.getRangePageSize()).thenReturn(1);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Stream.of(KeyPrefix.PROFILE, KeyPrefix.APPLICATION).collect(Collectors.toList()));
+		Response.Header header = Mockito.mock(Response.Header.class);
+		Mockito.when(header.getRevision()).thenReturn(42L);
+		GetResponse firstPage = mockPage(header, true, "dev.sample.first", "1");
+		GetResponse secondPage = mockPage(header, false, "dev.sample.second", "2");
+		Mockito.when(kvmock.get(any(ByteSequence.class), any(GetOption.class)))
+				.thenReturn(CompletableFuture.completedFuture(firstPage))
+				.thenReturn(CompletableFuture.completedFuture(secondPage));
+		
+		Map<String, String> allKeyValues = connector.getAllKeyValues("sample", "dev", null);
+		
+		ArgumentCaptor<ByteSequence> keyCaptor = ArgumentCaptor.forClass(ByteSequence.class);
+		ArgumentCaptor<GetOption> optionCaptor = ArgumentCaptor.forClass(GetOption.class);
+		Mockito.verify(kvmock, times(2)).get(keyCaptor.capture(), optionCaptor.capture());
+		List<GetOption> options = optionCaptor.getAllValues();
+		assertEquals(1, options.get(0).getLimit());
+		assertEquals(0, options.get(0).getRevision());
+		assertEquals(42L, options.get(1).getRevision());
+		assertEquals("dev.sample.first\0", keyCaptor.getAllValues().get(1).toString());
+		assertEquals(2, allKeyValues.size());
+		assertEquals("2", allKeyValues.get("second"));
+	}
+	
+	@Test
+	@DisplayName("Given Listening Connector When Closed Then Close the Watcher and the Client")
+	void givenListeningConnector_whenClosed_thenCloseWatcherAndClient() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		Client mockClient = Mockito.mock(Client.class);
+		KV kvmock = Mockito.mock(KV.class);
+		Watch watchmock = Mockito.mock(Watch.class);
+		Watch.Watcher watcher = Mockito.mock(Watch.Watcher.class);
+		Response.Header header = Mockito.mock(Response.Header.class);
+		GetResponse revisionResponse = Mockito.mock(GetResponse.class);
+		Mockito.when(header.getRevision()).thenReturn(5L);
+		Mockito.when(revisionResponse.getHeader()).thenReturn(header);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		Mockito.when(mockClient.getWatchClient()).thenReturn(watchmock);
+		Mockito.when(kvmock.get(any(ByteSequence.class), any(GetOption.class))).thenReturn(CompletableFuture.completedFuture(revisionResponse));
+		Mockito.when(watchmock.watch(any(ByteSequence.class), any(WatchOption.class), any(Watch.Listener.class))).thenReturn(watcher);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.FALSE);
+		connector.setEtcdClient(mockClient);
+
+		connector.startListening(repository);
+		assertTrue(connector.isListening());
+		Mockito.verify(watchmock, Mockito.timeout(5000)).watch(any(ByteSequence.class), any(WatchOption.class), any(Watch.Listener.class));
+		connector.close();
+
+		assertFalse(connector.isListening());
+		Mockito.verify(watcher, Mockito.atLeastOnce()).close();
+		Mockito.verify(mockClient).close();
+	}
+	
+	@Test
+	@DisplayName("Given Paged Range When Key Values Requested Asynchronously Then Chain Pages Pinned to First Revision")
+	void givenPagedRange_whenKeyValuesRequestedAsync_thenChainPagesPinnedToFirstRevision() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Stream.of(KeyPrefix.PROFILE, KeyPrefix.APPLICATION).collect(Collectors.toList()));
+		Mockito.when(ecp.getRangePageSize()).thenReturn(1);
+		Client mockClient = Mockito.mock(Client.class);
+		KV kvmock = Mockito.mock(KV.class);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+		Response.Header header = Mockito.mock(Response.Header.class);
+		Mockito.when(header.getRevision()).thenReturn(42L);
+		GetResponse firstPage = mockPage(header, true, "dev.sample.first", "1");
+		GetResponse secondPage = mockPage(header, false, "dev.sample.second", "2");
+		Mockito.when(kvmock.get(any(ByteSequence.class), any(GetOption.class)))
+				.thenReturn(CompletableFuture.completedFuture(firstPage))
+				.thenReturn(CompletableFuture.completedFuture(secondPage));
+
+		EtcdKeyValues keyValues = connector.getKeyValuesAsync("sample", "dev", null).join();
+
+		ArgumentCaptor<GetOption> optionCaptor = ArgumentCaptor.forClass(GetOption.class);
+		Mockito.verify(kvmock, times(2)).get(any(ByteSequence.class), optionCaptor.capture());
+		assertEquals(42L, optionCaptor.getAllValues().get(1).getRevision());
+		assertEquals(2, keyValues.size());
+		assertEquals("1", keyValues.getKeyValues().get("first"));
+	}
+	
+	@Test
+	@DisplayName("Given Failing ETCD Cluster When Value Requested Asynchronously Then Complete With Etcd Exception")
+	void givenFailingEtcdCluster_whenValueRequestedAsync_thenCompleteWithEtcdException() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		KV kvmock = Mockito.mock(KV.class);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		CompletableFuture<GetResponse> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("unavailable"));
+		Mockito.when(kvmock.get(any(ByteSequence.class), any(GetOption.class))).thenReturn(failed);
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+
+		CompletableFuture<String> value = connector.getValueAsync("key");
+		try {
+			value.join();
+			fail("EtcdException expected");
+		} catch (CompletionException ce) {
+			assertTrue(ce.getCause() instanceof EtcdException);
+		}
+	}
+	
+	@Test
+	@DisplayName("Given Many Key Values When Added in Bulk Then Write Each Chunk With a Single Transaction")
+	void givenManyKeyValues_whenAddedInBulk_thenWriteEachChunkWithSingleTransaction() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		KV kvmock = Mockito.mock(KV.class);
+		Txn txn = Mockito.mock(Txn.class, Mockito.RETURNS_SELF);
+		TxnResponse txnResponse = Mockito.mock(TxnResponse.class);
+		Response.Header header = Mockito.mock(Response.Header.class);
+		Mockito.when(header.getRevision()).thenReturn(10L);
+		Mockito.when(txnResponse.getHeader()).thenReturn(header);
+		Mockito.when(txnResponse.isSucceeded()).thenReturn(true);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		Mockito.when(kvmock.txn()).thenReturn(txn);
+		Mockito.when(txn.commit()).thenReturn(CompletableFuture.completedFuture(txnResponse));
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+		Map<String, String> keyValues = new LinkedHashMap<>();
+		for (int i = 0; i < 5; i++) {
+			keyValues.put("dev.sample.key" + i, "value" + i);
+		}
+
+		EtcdBulkWriteResult result = connector.addKeyValues(keyValues, 2);
+
+		Mockito.verify(txn, times(3)).commit();
+		assertEquals(3, result.getChunks().size());
+		assertEquals(1, result.getChunks().get(2).getKeyCount());
+		assertEquals("dev.sample.key2", result.getChunks().get(1).getFirstKey());
+		assertEquals(5, result.getKeysWritten());
+		assertTrue(result.isSucceeded());
+	}
+	
+	@Test
+	@DisplayName("Given Chunked Values When Key Values are Added in Bulk Then Keep Each Transaction Within the Operation Limit")
+	void givenChunkedValues_whenKeyValuesAddedInBulk_thenKeepEachTransactionWithinOperationLimit() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getValueChunkSizeBytes()).thenReturn(64);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+		String blob = new String(new char[256]).replace('\0', 'a'); // 4 chunks and a manifest
+		Map<String, String> keyValues = new LinkedHashMap<>();
+		for (int i = 0; i < 60; i++) {
+			keyValues.put("dev.sample.master.key" + i, blob);
+		}
+
+		EtcdBulkWriteResult result = connector.addKeyValues(keyValues, 0);
+
+		assertTrue(result.isSucceeded());
+		assertEquals(3, result.getChunks().size());
+		assertEquals(25, result.getChunks().get(0).getKeyCount());
+		assertEquals(25, result.getChunks().get(1).getKeyCount());
+		assertEquals(10, result.getChunks().get(2).getKeyCount());
+		assertEquals(60 * 5, etcd.size());
+
+		result = connector.addKeyValues(Collections.singletonMap("dev.sample.master.key0", "small"), 0);
+
+		assertTrue(result.isSucceeded());
+		assertEquals(60 * 5 - 4, etcd.size());
+		assertEquals("small", etcd.kv().get(ByteSequence.from("dev.sample.master.key0".getBytes())).get().getKvs().get(0)
+				.getValue().toString());
+	}
+
+	@Test
+	@DisplayName("Given Several Prefixes When Layered Key Values Requested Then Read All With a Single Transaction")
+	void givenSeveralPrefixes_whenLayeredKeyValuesRequested_thenReadAllWithSingleTransaction() {
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Client mockClient = Mockito.mock(Client.class);
+		KV kvmock = Mockito.mock(KV.class);
+		Txn txn = Mockito.mock(Txn.class, Mockito.RETURNS_SELF);
+		TxnResponse txnResponse = Mockito.mock(TxnResponse.class);
+		GetResponse appLayer = mockLayer("dev.app.key", "1");
+		GetResponse sharedLayer = mockLayer("dev.application.shared", "2");
+		Mockito.when(txnResponse.getGetResponses()).thenReturn(Stream.of(appLayer, sharedLayer).collect(Collectors.toList()));
+		Response.Header header = Mockito.mock(Response.Header.class);
+		Mockito.when(header.getRevision()).thenReturn(21L);
+		Mockito.when(txnResponse.getHeader()).thenReturn(header);
+		Mockito.when(mockClient.getKVClient()).thenReturn(kvmock);
+		Mockito.when(kvmock.txn()).thenReturn(txn);
+		Mockito.when(txn.commit()).thenReturn(CompletableFuture.completedFuture(txnResponse));
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(mockClient);
+
+		List<EtcdKeyValues> layers = connector.getLayeredKeyValues(Stream.of("dev.app.", "dev.application.").collect(Collectors.toList()));
+
+		Mockito.verify(txn, times(1)).commit();
+		Mockito.verify(kvmock, never()).get(any(ByteSequence.class), any(GetOption.class));
+		assertEquals("1", layers.get(0).getKeyValues().get("key"));
+		assertEquals("2", layers.get(1).getKeyValues().get("shared"));
+		assertEquals(21L, layers.get(0).getReadRevision());
+	}
+	
+	@Test
+	@DisplayName("Given Value Compression and Chunking When a Large Value is Added Then Read it Back Decoded Without its Chunk Keys")
+	void givenValueCompressionAndChunking_whenLargeValueAdded_thenReadBackDecodedWithoutChunkKeys() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getValueCompressionThresholdBytes()).thenReturn(1024);
+		Mockito.when(ecp.getValueChunkSizeBytes()).thenReturn(64);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+		StringBuilder blob = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			blob.append("{\"property").append(i).append("\": \"").append(Integer.toHexString(i * 7919)).append("\"}\n");
+		}
+
+		assertTrue(connector.addKeyValue("dev.app.master.blob", blob.toString()));
+		assertTrue(connector.addKeyValueAsync("dev.app.master.plain", "plain").join());
+		assertTrue(etcd.size() > 3);
+
+		Map<String, String> keyValues = connector.getAllKeyValues("app", "dev", "master");
+		assertEquals(2, keyValues.size());
+		assertEquals(blob.toString(), keyValues.get("blob"));
+		assertEquals(blob.toString(), connector.getKeyValuesAsync("app", "dev", "master").join().getKeyValues().get("blob"));
+		assertEquals("plain", keyValues.get("plain"));
+
+		assertTrue(connector.addKeyValue("dev.app.master.blob", "small"));
+		assertEquals(2, etcd.size());
+		assertEquals("small", connector.getKeyValuesAsync("app", "dev", "master").join().getKeyValues().get("blob"));
+	}
+
+	@Test
+	@DisplayName("Given an In-Memory ETCD When a Key is Put While Listening Then Publish a Refresh Event for Its Application")
+	void givenInMemoryEtcd_whenKeyPutWhileListening_thenPublishRefreshEventForApplication() throws InterruptedException {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		etcd.put("dev.app.master.key", "initial");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		for (int i = 0; i < 500 && etcd.getWatcherCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		etcd.put("dev.app.master.key", "changed");
+
+		Mockito.verify(repository, Mockito.timeout(5000)).publishEventByPath("app");
+		Mockito.verify(repository, Mockito.timeout(5000)).evictCachedEnvironments(Mockito.eq("dev.app.master.key"), Mockito.anyLong());
+		connector.stopListening();
+	}
+
+	@Test
+	@DisplayName("Given a Listening Connector When a Refresh Publisher Candidate Campaigns Then Publish No Refresh Event")
+	void givenListeningConnector_whenCandidateCampaigns_thenPublishNoRefreshEvent() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(true);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		String candidateKey = "spring-cloud-config-server/refresh-publisher/694d77a1b2c3d4e5";
+		etcd.put(candidateKey, "previous-instance");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		for (int i = 0; i < 500 && etcd.getWatcherCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		etcd.put(candidateKey, "this-instance"); // what a campaign writes
+		etcd.kv().delete(ByteSequence.from(candidateKey.getBytes())).get(); // what a resign removes
+		etcd.put("dev.app.master.key", "changed");
+
+		Mockito.verify(repository, Mockito.timeout(5000)).publishEventByPath("app");
+		connector.stopListening();
+		Mockito.verify(repository, never()).publishEventByPath("*");
+		Mockito.verify(repository, never()).evictCachedEnvironments(Mockito.eq(candidateKey), Mockito.anyLong());
+		assertEquals(1, connector.getKeyspaceReplica().size());
+	}
+
+	@Test
+	@DisplayName("Given a Stopped Watch Lifecycle When Started Again Then Listen With the Same Connection")
+	void givenStoppedWatchLifecycle_whenStartedAgain_thenListenWithSameConnection() throws InterruptedException {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		etcd.put("dev.app.master.key", "initial");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+		EtcdWatchLifecycle lifecycle = new EtcdWatchLifecycle(connector, repository);
+
+		lifecycle.start();
+		lifecycle.stop();
+		assertFalse(lifecycle.isRunning());
+		lifecycle.start();
+		for (int i = 0; i < 500 && etcd.getWatcherCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		etcd.put("dev.app.master.key", "changed");
+
+		Mockito.verify(repository, Mockito.timeout(5000)).publishEventByPath("app");
+		assertEquals("changed", connector.getAllKeyValues("app", "dev", "master").get("key"));
+		lifecycle.stop();
+	}
+
+	@Test
+	@DisplayName("Given Watch Prefixes Spread Over Shards When Keys are Put Then Refresh Only Changed Applications Under the Watched Prefixes")
+	void givenWatchPrefixesOverShards_whenKeysPut_thenRefreshOnlyChangedApplicationsUnderWatchedPrefixes() throws InterruptedException {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getWatchPrefixes()).thenReturn(Arrays.asList("dev.", "prod.", "dev.app."));
+		Mockito.when(ecp.getWatchShardCount()).thenReturn(2);
+		Mockito.when(ecp.getWatchPrevKv()).thenReturn(Boolean.TRUE);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		etcd.put("dev.app.master.key", "initial");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		for (int i = 0; i < 500 && etcd.getWatcherCount() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, etcd.getWatcherCount());
+		etcd.put("test.ignored.master.key", "changed");
+		etcd.put("dev.app.master.key", "initial");
+		etcd.put("prod.other.master.key", "changed");
+		etcd.put("dev.app.master.key", "changed");
+
+		Mockito.verify(repository, Mockito.timeout(5000)).publishEventByPath("other");
+		Mockito.verify(repository, Mockito.timeout(5000)).publishEventByPath("app");
+		connector.stopListening();
+		Mockito.verify(repository, times(1)).publishEventByPath("app");
+		Mockito.verify(repository, never()).publishEventByPath("ignored");
+		Mockito.verify(repository, never()).evictCachedEnvironments(Mockito.eq("test.ignored.master.key"), Mockito.anyLong());
+	}
+
+	@Test
+	@DisplayName("Given Lock Batching When a Watch Response Holds Several Changes Then Take a Single Lock Keyed by Their Revision Range")
+	void givenLockBatching_whenWatchResponseHoldsSeveralChanges_thenTakeSingleLockForRevisionRange() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		Mockito.when(etcdWatchLock.isBatchingEnabled()).thenReturn(true);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		for (int i = 0; i < 500 && etcd.getWatcherCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		etcd.kv().txn().Then(Op.put(ByteSequence.from("dev.app.master.a".getBytes()), ByteSequence.from("1".getBytes()), PutOption.DEFAULT),
+				Op.put(ByteSequence.from("dev.app.master.b".getBytes()), ByteSequence.from("2".getBytes()), PutOption.DEFAULT),
+				Op.put(ByteSequence.from("dev.other.master.c".getBytes()), ByteSequence.from("3".getBytes()), PutOption.DEFAULT))
+				.commit().get();
+		long revision = etcd.getRevision();
+
+		ArgumentCaptor<InsideLockRunnable> runnable = ArgumentCaptor.forClass(InsideLockRunnable.class);
+		Mockito.verify(etcdWatchLock, Mockito.timeout(5000)).processWithLockAsync(Mockito.eq("revisions:" + revision + "-" + revision),
+				runnable.capture());
+		runnable.getValue().runInsideLock();
+		connector.stopListening();
+		Mockito.verify(etcdWatchLock, never()).processWithLock(Mockito.anyString(), any(InsideLockRunnable.class));
+		Mockito.verify(repository).publishEventByPath("app");
+		Mockito.verify(repository).publishEventByPath("other");
+	}
+
+	@Test
+	@DisplayName("Given a Keyspace Snapshot File When Listening Starts Then Serve the Snapshot and Catch Up From Its Revision")
+	void givenKeyspaceSnapshotFile_whenListeningStarts_thenServeSnapshotAndCatchUpFromItsRevision(@TempDir Path directory)
+			throws Exception {
+		Path snapshotPath = directory.resolve("keyspace.snapshot");
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(true);
+		Mockito.when(ecp.getSnapshotPath()).thenReturn(snapshotPath.toString());
+		Mockito.when(ecp.getSnapshotWriteDelayMillis()).thenReturn(10L);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		long snapshotRevision = etcd.put("dev.app.master.key", "persisted");
+		new KeyspaceSnapshotFile(snapshotPath).write(new KeyspaceSnapshot(
+				Collections.singletonMap("dev.app.master.key", "persisted"),
+				Collections.singletonMap("dev.app.master.key", snapshotRevision), snapshotRevision));
+		etcd.put("dev.app.master.other", "missed");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		assertEquals(snapshotRevision, connector.getKeyspaceReplica().getRevision());
+		assertEquals("persisted", connector.getKeyValues("app", "dev", "master").getKeyValues().get("key"));
+
+		for (int i = 0; i < 500 && connector.getKeyspaceReplica().size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("missed", connector.getKeyValues("app", "dev", "master").getKeyValues().get("other"));
+		long currentRevision = etcd.getRevision();
+		for (int i = 0; i < 500 && new KeyspaceSnapshotFile(snapshotPath).read().getRevision() < currentRevision; i++) {
+			Thread.sleep(10);
+		}
+		connector.stopListening();
+		assertEquals(2, new KeyspaceSnapshotFile(snapshotPath).read().size());
+	}
+
+	@Test
+	@DisplayName("Given Watch Prefixes When the Replica is Loaded Then Serve Only the Watched Keys From It")
+	void givenWatchPrefixes_whenReplicaLoaded_thenServeOnlyWatchedKeysFromIt() {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getUrlsWithHttpPrefix()).thenReturn(Stream.of("localhost:2379").collect(Collectors.toList()));
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(true);
+		Mockito.when(ecp.getWatchPrefixes()).thenReturn(Collections.singletonList("dev."));
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		etcd.put("dev.app.master.key", "watched");
+		etcd.put("prod.app.master.key", "unwatched");
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+		connector.setEtcdClient(etcd.client());
+
+		connector.startListening(repository);
+		etcd.put("prod.app.master.key", "changed");
+		connector.stopListening();
+
+		assertEquals(1, connector.getKeyspaceReplica().size());
+		assertEquals("watched", connector.getKeyValues("app", "dev", "master").getKeyValues().get("key"));
+		assertEquals("changed", connector.getKeyValues("app", "prod", "master").getKeyValues().get("key"));
+	}
+
+	@Test
+	@DisplayName("Given Watch Prefixes When Search Prefixes are Checked Then Only the Ones Under a Watched Prefix are Watched")
+	void givenWatchPrefixes_whenSearchPrefixesChecked_thenOnlyOnesUnderWatchedPrefixAreWatched() {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getWatchPrefixes()).thenReturn(Arrays.asList("dev.", "prod.app."));
+		EtcdConnector connector = new EtcdConnector(null, ecp, Boolean.FALSE);
+
+		assertTrue(connector.isWatched(Arrays.asList("dev.app.", "prod.app.master.")));
+		assertFalse(connector.isWatched(Arrays.asList("dev.app.", "prod.application.")));
+		assertFalse(connector.isWatched(Collections.singletonList("test.app.")));
+	}
+
+	@Test
+	@DisplayName("Given a Chunked Value Written Again When Its Earlier Change is Watched Then Read the Chunks at the Manifest Revision")
+	void givenChunkedValueWrittenAgain_whenEarlierChangeWatched_thenReadChunksAtManifestRevision() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getValueChunkSizeBytes()).thenReturn(64);
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(true);
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(etcd.client());
+		connector.getKeyspaceReplica().load(new LinkedHashMap<>(), new LinkedHashMap<>(), 1L);
+		assertTrue(connector.addKeyValue("dev.app.master.blob", createBlob("first")));
+		KeyValue manifest = etcd.kv().get(ByteSequence.from("dev.app.master.blob".getBytes())).get().getKvs().get(0);
+		assertTrue(connector.addKeyValue("dev.app.master.blob", createBlob("second")));
+
+		connector.runCallBackForWatchEvent(connector.getKeyLayout(), mockWatchResponse(manifest), repository);
+
+		assertEquals(createBlob("first"),
+				connector.getKeyspaceReplica().getKeyValues("dev.app.master.").getKeyValues().get("blob"));
+	}
+
+	@Test
+	@DisplayName("Given a Change Whose Chunks are Compacted When Watched With Other Changes Then Process the Others and Resync")
+	void givenChangeWithCompactedChunks_whenWatchedWithOtherChanges_thenProcessOthersAndResync() throws Exception {
+		EtcdConfigurationProperties ecp = Mockito.mock(EtcdConfigurationProperties.class);
+		Mockito.when(ecp.getKeyPrefixOrder()).thenReturn(Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL));
+		Mockito.when(ecp.getValueChunkSizeBytes()).thenReturn(64);
+		Mockito.when(ecp.getReplicaEnabled()).thenReturn(true);
+		EtcdWatchLock etcdWatchLock = Mockito.mock(EtcdWatchLock.class);
+		EtcdEnvironmentRepository repository = Mockito.mock(EtcdEnvironmentRepository.class);
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdConnector connector = new EtcdConnector(etcdWatchLock, ecp, Boolean.TRUE);
+		connector.setEtcdClient(etcd.client());
+		connector.getKeyspaceReplica().load(new LinkedHashMap<>(), new LinkedHashMap<>(), 1L);
+		assertTrue(connector.addKeyValue("dev.app.master.blob", createBlob("first")));
+		KeyValue manifest = etcd.kv().get(ByteSequence.from("dev.app.master.blob".getBytes())).get().getKvs().get(0);
+		assertTrue(connector.addKeyValue("dev.app.master.blob", createBlob("second")));
+		assertTrue(connector.addKeyValue("dev.app.master.plain", "plain"));
+		KeyValue plain = etcd.kv().get(ByteSequence.from("dev.app.master.plain".getBytes())).get().getKvs().get(0);
+		etcd.compact(etcd.getRevision());
+
+		connector.runCallBackForWatchEvent(connector.getKeyLayout(), mockWatchResponse(manifest, plain), repository);
+
+		Mockito.verify(repository).evictCachedEnvironments("dev.app.master.plain", plain.getModRevision());
+		Mockito.verify(repository).evictCachedEnvironments(null);
+		Map<String, String> replicated = connector.getKeyspaceReplica().getKeyValues("dev.app.master.").getKeyValues();
+		assertEquals(createBlob("second"), replicated.get("blob"));
+		assertEquals("plain", replicated.get("plain"));
+	}
+
+	private static String createBlob(String content) {
+		StringBuilder blob = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			blob.append(content).append(i).append('\n');
+		}
+		return blob.toString();
+	}
+
+	private static WatchResponse mockWatchResponse(KeyValue... keyValues) {
+		List<WatchEvent> events = new ArrayList<>();
+		for (KeyValue keyValue : keyValues) {
+			WatchEvent event = Mockito.mock(WatchEvent.class);
+			Mockito.when(event.getEventType()).thenReturn(WatchEvent.EventType.PUT);
+			Mockito.when(event.getKeyValue()).thenReturn(keyValue);
+			events.add(event);
+		}
+		WatchResponse response = Mockito.mock(WatchResponse.class);
+		Mockito.when(response.getEvents()).thenReturn(events);
+		return response;
+	}
+
+	private GetResponse mockPage(Response.Header header, boolean more, String key, String value) {
+		GetResponse page = Mockito.mock(GetResponse.class);
+		KeyValue kv = Mockito.mock(KeyValue.class);
+		Mockito.when(kv.getKey()).thenReturn(ByteSequence.from(key.getBytes()));
+		Mockito.when(kv.getValue()).thenReturn(ByteSequence.from(value.getBytes()));
+		Mockito.when(page.getKvs()).thenReturn(Stream.of(kv).collect(Collectors.toList()));
+		Mockito.lenient().when(page.getHeader()).thenReturn(header);
+		Mockito.when(page.isMore()).thenReturn(more);
+		return page;
+	}
+
+	private GetResponse mockLayer(String key, String value) {
+		GetResponse layer = Mockito.mock(GetResponse.class);
+		KeyValue kv = Mockito.mock(KeyValue.class);
+		Mockito.when(kv.getKey()).thenReturn(ByteSequence.from(key.getBytes()));
+		Mockito.when(kv.getValue()).thenReturn(ByteSequence.from(value.getBytes()));
+		Mockito.when(layer.getKvs()).thenReturn(Stream.of(kv).collect(Collectors.toList()));
+		return layer;
+	}
 }
@@ -0,0 +1,70 @@
+package com.noap.msfrw.etcd.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.etcd.jetcd.ByteSequence;
+
+class KeyLayoutTest {
+
+	private static final List<KeyPrefix> ORDER = Arrays.asList(KeyPrefix.PROFILE, KeyPrefix.APPLICATION, KeyPrefix.LABEL);
+
+	@Test
+	@DisplayName("Given the Default Layout When Segments of a Key are Extracted Then Return Them and Keep the Property Key Intact")
+	void givenDefaultLayout_whenSegmentsExtracted_thenReturnThem() {
+		KeyLayout layout = KeyLayout.of(ORDER, null, null);
+		assertEquals("app", layout.applicationOf("dev.app.master.spring.datasource.url"));
+		assertEquals("dev", layout.segmentOf("dev.app.master.spring.datasource.url", KeyPrefix.PROFILE));
+		assertEquals("master", layout.segmentOf("dev.app.master.spring.datasource.url", KeyPrefix.LABEL));
+		assertEquals("*", layout.applicationOf("dev.app"));
+		assertEquals("*", layout.applicationOf("dev.app."));
+		assertEquals("*", KeyLayout.of(Collections.singletonList(KeyPrefix.PROFILE), ".", "").applicationOf("dev.app.key"));
+		assertEquals("dev.app.master.", layout.searchPrefix("app", "dev", "master"));
+		assertEquals("dev.app.", layout.searchPrefix("app", "dev", " "));
+	}
+
+	@Test
+	@DisplayName("Given a Slash Delimiter and an Escape Character When Keys are Parsed and Prefixes Formed Then Honor Escaped Delimiters")
+	void givenSlashDelimiterAndEscape_whenKeysParsedAndPrefixesFormed_thenHonorEscapedDelimiters() {
+		KeyLayout layout = KeyLayout.of(ORDER, "/", "\\");
+		assertEquals("app", layout.applicationOf("dev/app/master/spring.datasource.url"));
+		assertEquals("my/app", layout.applicationOf("dev/my\\/app/master/key"));
+		assertEquals("dev\\x", layout.segmentOf("dev\\\\x/app/master/key", KeyPrefix.PROFILE));
+		assertEquals("dev/my\\/app/master/", layout.searchPrefix("my/app", "dev", "master"));
+		assertEquals('/', layout.getDelimiter());
+		assertEquals(3, layout.getSegmentCount());
+	}
+
+	@Test
+	@DisplayName("Given a Compiled Layout When Checked Against Property Values Then Detect Changes and Reject Invalid Characters")
+	void givenCompiledLayout_whenCheckedAgainstPropertyValues_thenDetectChanges() {
+		KeyLayout layout = KeyLayout.of(ORDER, ".", "");
+		assertTrue(layout.isCompiledFrom(ORDER, null, null));
+		assertFalse(layout.isCompiledFrom(ORDER, "/", null));
+		assertFalse(layout.isCompiledFrom(Arrays.asList(KeyPrefix.APPLICATION), ".", null));
+		assertThrows(EtcdException.class, () -> KeyLayout.of(ORDER, "::", null));
+		assertThrows(EtcdException.class, () -> KeyLayout.of(ORDER, "/", "/"));
+		assertNull(layout.segmentOf("dev.app", KeyPrefix.LABEL));
+	}
+
+	@Test
+	@DisplayName("Given a Key Read by Prefix When the Prefix Bytes are Stripped Then Return the Property Key")
+	void givenKeyReadByPrefix_whenPrefixStripped_thenReturnPropertyKey() {
+		String prefix = "dév.app.master.";
+		ByteSequence key = ByteSequence.from((prefix + "spring.datasource.url").getBytes(StandardCharsets.UTF_8));
+		assertEquals("spring.datasource.url",
+				KeyLayout.stripPrefix(key, prefix.getBytes(StandardCharsets.UTF_8).length));
+		assertEquals("dév.app.master.spring.datasource.url", KeyLayout.stripPrefix(key, 0));
+	}
+}
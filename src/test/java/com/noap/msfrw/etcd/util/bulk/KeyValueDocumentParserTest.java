@@ -0,0 +1,86 @@
+package com.noap.msfrw.etcd.util.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noap.msfrw.etcd.util.EtcdException;
+import com.noap.msfrw.etcd.util.bulk.KeyValueDocumentParser.DocumentFormat;
+
+@ExtendWith(MockitoExtension.class)
+class KeyValueDocumentParserTest {
+
+	private final KeyValueDocumentParser parser = new KeyValueDocumentParser(new ObjectMapper());
+
+	private InputStream streamOf(String document) {
+		return new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	@DisplayName("Given Nested JSON Document When Parsed Then Flatten Keys With Prefix")
+	void givenNestedJsonDocument_whenParsed_thenFlattenKeysWithPrefix() {
+		Map<String, String> keyValues = parser.parse(streamOf("{\"server\":{\"port\":8080},\"hosts\":[\"a\",\"b\"]}"),
+				DocumentFormat.JSON, "dev.sample.");
+		assertEquals("8080", keyValues.get("dev.sample.server.port"));
+		assertEquals("b", keyValues.get("dev.sample.hosts[1]"));
+		assertEquals(3, keyValues.size());
+	}
+
+	@Test
+	@DisplayName("Given YAML Document When Parsed Then Flatten Keys")
+	void givenYamlDocument_whenParsed_thenFlattenKeys() {
+		Map<String, String> keyValues = parser.parse(streamOf("server:\n  port: 8080\nname: sample\n"),
+				DocumentFormat.YAML, null);
+		assertEquals("8080", keyValues.get("server.port"));
+		assertEquals("sample", keyValues.get("name"));
+	}
+
+	@Test
+	@DisplayName("Given Properties Document When Parsed Then Return Keys With Prefix")
+	void givenPropertiesDocument_whenParsed_thenReturnKeysWithPrefix() {
+		Map<String, String> keyValues = parser.parse(streamOf("server.port=8080\nname=sample\n"),
+				DocumentFormat.PROPERTIES, "dev.");
+		assertEquals("8080", keyValues.get("dev.server.port"));
+		assertEquals(2, keyValues.size());
+	}
+
+	@Test
+	@DisplayName("Given Properties Document When Parsed Then Keep the Document Order")
+	void givenPropertiesDocument_whenParsed_thenKeepDocumentOrder() {
+		StringBuilder document = new StringBuilder();
+		List<String> keys = new ArrayList<>();
+		for (int i = 20; i > 0; i--) {
+			document.append("key").append(i).append("=value").append(i).append('\n');
+			keys.add("key" + i);
+		}
+		Map<String, String> keyValues = parser.parse(streamOf(document.toString()), DocumentFormat.PROPERTIES, null);
+		assertEquals(keys, new ArrayList<>(keyValues.keySet()));
+	}
+
+	@Test
+	@DisplayName("Given Malformed JSON Document When Parsed Then Throw Etcd Exception")
+	void givenMalformedJsonDocument_whenParsed_thenThrowEtcdException() {
+		InputStream document = streamOf("{\"server\":");
+		assertThrows(EtcdException.class, () -> parser.parse(document, DocumentFormat.JSON, null));
+	}
+
+	@Test
+	@DisplayName("Given a YAML Document With a Java Type Tag When Parsed Then Reject It")
+	void givenYamlDocumentWithJavaTypeTag_whenParsed_thenRejectIt() {
+		InputStream document = streamOf("engine: !!javax.script.ScriptEngineManager "
+				+ "[!!java.net.URLClassLoader [[!!java.net.URL [\"http://localhost/\"]]]]\n");
+		assertThrows(EtcdException.class, () -> parser.parse(document, DocumentFormat.YAML, null));
+	}
+}
@@ -0,0 +1,114 @@
+package com.noap.msfrw.etcd.util.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.noap.msfrw.etcd.util.EtcdException;
+import com.noap.msfrw.etcd.util.inmemory.InMemoryEtcd;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.GetOption;
+
+class EtcdValueCodecTest {
+
+	private static final String KEY = "dev.app.master.blob";
+
+	private static ByteSequence bytes(String value) {
+		return ByteSequence.from(value, StandardCharsets.UTF_8);
+	}
+
+	private static String largeValue(int lines) {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			value.append("property").append(i).append(": value").append(i).append('\n');
+		}
+		return value.toString();
+	}
+
+	private static void write(InMemoryEtcd etcd, EtcdValueCodec codec, String value) throws Exception {
+		List<Op> ops = codec.encode(KEY, value);
+		etcd.kv().txn().Then(ops.toArray(new Op[0])).commit().get();
+	}
+
+	private static KeyValue read(InMemoryEtcd etcd, ByteSequence key) throws Exception {
+		return etcd.kv().get(key).get().getKvs().get(0);
+	}
+
+	private static List<KeyValue> readChunks(InMemoryEtcd etcd, EtcdValueCodec codec) throws Exception {
+		GetResponse chunks = etcd.kv().get(codec.chunkRangeStart(bytes(KEY)),
+				GetOption.newBuilder().withRange(codec.chunkRangeEnd(bytes(KEY))).build()).get();
+		return new ArrayList<>(chunks.getKvs());
+	}
+
+	@Test
+	@DisplayName("Given a Compression Threshold When Large, Small and Marker Like Values are Written Then Read Each Back as Written")
+	void givenCompressionThreshold_whenValuesWritten_thenReadBackAsWritten() throws Exception {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdValueCodec codec = new EtcdValueCodec(256, 0, 16);
+		String large = largeValue(100);
+
+		etcd.kv().put(bytes(KEY), codec.encodeValue(large)).get();
+		KeyValue stored = read(etcd, bytes(KEY));
+		assertTrue(stored.getValue().startsWith(bytes(EtcdValueCodec.GZIP_MARKER)));
+		assertTrue(stored.getValue().size() < large.length());
+		assertEquals(large, codec.decode(stored));
+		assertEquals(1, codec.getCachedCount());
+
+		assertEquals("small", codec.encodeValue("small").toString());
+		ByteSequence markerLike = codec.encodeValue("gz:not compressed");
+		assertTrue(markerLike.startsWith(bytes(EtcdValueCodec.GZIP_MARKER)));
+		etcd.kv().put(bytes(KEY), markerLike).get();
+		assertEquals("gz:not compressed", codec.decode(read(etcd, bytes(KEY))));
+	}
+
+	@Test
+	@DisplayName("Given a Chunk Size When a Large Value is Written Then Split it Over Chunks and Drop the Stale Chunks Once it Shrinks")
+	void givenChunkSize_whenLargeValueWritten_thenSplitOverChunksAndDropStaleChunksOnceShrunk() throws Exception {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		EtcdValueCodec codec = new EtcdValueCodec(0, 100, 16);
+		String large = largeValue(50);
+		etcd.put("dev.app.master.blob.other", "kept");
+
+		write(etcd, codec, large);
+		KeyValue manifest = read(etcd, bytes(KEY));
+		assertTrue(codec.isChunked(manifest.getValue()));
+		assertNull(codec.decode(manifest));
+		List<KeyValue> chunks = readChunks(etcd, codec);
+		assertEquals((large.length() + 99) / 100, chunks.size());
+		assertTrue(chunks.stream().allMatch(chunk -> codec.isChunkKey(chunk.getKey())));
+		assertEquals(large, codec.decodeChunks(manifest, chunks));
+		assertEquals(large, codec.decode(manifest));
+		assertThrows(EtcdException.class, () -> codec.decodeChunks(manifest, chunks.subList(1, chunks.size())));
+
+		write(etcd, codec, "small");
+		assertEquals("small", codec.decode(read(etcd, bytes(KEY))));
+		assertEquals(0, readChunks(etcd, codec).size());
+		assertEquals(2, etcd.size());
+	}
+
+	@Test
+	@DisplayName("Given a Key Known to Have No Chunks When a Value is Encoded Then Leave the Chunk Deletion Out")
+	void givenKeyWithoutChunks_whenValueEncoded_thenLeaveChunkDeletionOut() {
+		EtcdValueCodec codec = new EtcdValueCodec(0, 100, 16);
+		String large = largeValue(50);
+		int chunkCount = (large.length() + 99) / 100;
+
+		assertEquals(1, codec.encode(KEY, "small", false).size());
+		assertEquals(2, codec.encode(KEY, "small").size());
+		assertEquals(chunkCount + 1, codec.encode(KEY, large, false).size());
+		assertEquals(chunkCount + 2, codec.encode(KEY, large, true).size());
+		assertEquals(KEY, codec.keyOfChunk(codec.chunkRangeStart(bytes(KEY))));
+	}
+}
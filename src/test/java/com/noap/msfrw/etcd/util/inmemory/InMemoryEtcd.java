@@ -0,0 +1,612 @@
+package com.noap.msfrw.etcd.util.inmemory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.etcd.jetcd.Auth;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Cluster;
+import io.etcd.jetcd.Election;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.Lease;
+import io.etcd.jetcd.Lock;
+import io.etcd.jetcd.Maintenance;
+import io.etcd.jetcd.Txn;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.api.DeleteRangeRequest;
+import io.etcd.jetcd.api.Event;
+import io.etcd.jetcd.api.KeyValue;
+import io.etcd.jetcd.api.RangeRequest;
+import io.etcd.jetcd.api.RangeResponse;
+import io.etcd.jetcd.api.RequestOp;
+import io.etcd.jetcd.api.ResponseHeader;
+import io.etcd.jetcd.api.ResponseOp;
+import io.etcd.jetcd.common.exception.EtcdExceptionFactory;
+import io.etcd.jetcd.kv.CompactResponse;
+import io.etcd.jetcd.kv.DeleteResponse;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.PutResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.CompactOption;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.OptionsUtil;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.shaded.com.google.protobuf.ByteString;
+import io.etcd.jetcd.watch.WatchResponse;
+
+/**
+ * An in-process stand-in of an ETCD cluster, serving the jetcd {@link KV} and {@link Watch} APIs
+ * from an in-memory multi-version keyspace, so that the connector can be driven without a real
+ * cluster (e.g. by benchmarks and load tests).
+ * <p>
+ * Like ETCD, every write (or transaction with writes) increases the revision. Ranges can be read at
+ * a past revision, watches can start from a past revision (the missed events are replayed first)
+ * and compaction drops the history before a revision, reads and watches needing the dropped history
+ * failing with a {@link io.etcd.jetcd.common.exception.CompactedException}. Transactions support GET,
+ * PUT and DELETE (single key or range) operations without conditions. A latency can be injected into
+ * each KV request. Watch events are delivered on the writing thread.
+ * </p>
+ */
+public class InMemoryEtcd {
+
+	private static final String ALL_KEYS = "\0";
+	private static final Method TO_REQUEST_OP = findToRequestOp();
+
+	// current key values, kept next to the history so that the reads at the current revision are cheap
+	private final NavigableMap<String, KeyValue> keyspace = new TreeMap<>();
+	// versions of each key by modification revision, a deletion is kept as a version without a value
+	private final NavigableMap<String, NavigableMap<Long, KeyValue>> history = new TreeMap<>();
+	private final NavigableMap<Long, List<Event>> events = new TreeMap<>();
+	private final List<Registration> watchers = new CopyOnWriteArrayList<>();
+	private final InMemoryKV kv = new InMemoryKV();
+	private final InMemoryWatch watch = new InMemoryWatch();
+	private long revision = 1L;
+	private long compactedRevision;
+	private volatile long latencyMillis;
+	private ScheduledExecutorService latencyScheduler;
+
+	public Client client() {
+		return new InMemoryClient();
+	}
+
+	public KV kv() {
+		return kv;
+	}
+
+	public Watch watch() {
+		return watch;
+	}
+
+	public synchronized long getRevision() {
+		return revision;
+	}
+
+	public synchronized long getCompactedRevision() {
+		return compactedRevision;
+	}
+
+	public synchronized int size() {
+		return keyspace.size();
+	}
+
+	public int getWatcherCount() {
+		return watchers.size();
+	}
+
+	/**
+	 * Delays the completion of each KV request by the given time, 0 to complete them right away.
+	 */
+	public synchronized void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+		if (latencyMillis > 0 && latencyScheduler == null) {
+			latencyScheduler = Executors.newScheduledThreadPool(2, runnable -> {
+				Thread thread = new Thread(runnable, "in-memory-etcd-latency");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Puts a key value, returns the revision of the change.
+	 */
+	public long put(String key, String value) {
+		return put(key, bytes(value));
+	}
+
+	// Values are kept as bytes, so that binary (e.g. compressed) values are read back as written.
+	private long put(String key, ByteString value) {
+		synchronized (this) {
+			revision++;
+			publish(Arrays.asList(write(key, value)));
+			return revision;
+		}
+	}
+
+	/**
+	 * Deletes a key, returns the revision of the change, 0 if the key does not exist.
+	 */
+	public long delete(String key) {
+		synchronized (this) {
+			if (!keyspace.containsKey(key)) {
+				return 0L;
+			}
+			revision++;
+			publish(Arrays.asList(erase(key)));
+			return revision;
+		}
+	}
+
+	/**
+	 * Drops the history before the given revision, the key values at the revision being kept.
+	 */
+	public synchronized void compact(long compactRevision) {
+		if (compactRevision <= compactedRevision) {
+			throw EtcdExceptionFactory.newCompactedException(compactedRevision);
+		}
+		if (compactRevision > revision) {
+			throw new IllegalArgumentException("Revision " + compactRevision + " is a future revision");
+		}
+		Iterator<NavigableMap<Long, KeyValue>> keys = history.values().iterator();
+		while (keys.hasNext()) {
+			NavigableMap<Long, KeyValue> versions = keys.next();
+			Long kept = versions.floorKey(compactRevision);
+			if (kept != null) {
+				versions.headMap(kept, false).clear();
+				if (isDeletion(versions.get(kept))) {
+					versions.remove(kept);
+				}
+			}
+			if (versions.isEmpty()) {
+				keys.remove();
+			}
+		}
+		events.headMap(compactRevision, false).clear();
+		compactedRevision = compactRevision;
+	}
+
+	// Applies a put at the current revision, returns its event.
+	private Event write(String key, ByteString value) {
+		KeyValue previous = keyspace.get(key);
+		KeyValue keyValue = KeyValue.newBuilder().setKey(bytes(key)).setValue(value)
+				.setCreateRevision(previous == null ? revision : previous.getCreateRevision()).setModRevision(revision)
+				.setVersion(previous == null ? 1L : previous.getVersion() + 1).build();
+		keyspace.put(key, keyValue);
+		history.computeIfAbsent(key, k -> new TreeMap<>()).put(revision, keyValue);
+		Event.Builder event = Event.newBuilder().setType(Event.EventType.PUT).setKv(keyValue);
+		if (previous != null) {
+			event.setPrevKv(previous);
+		}
+		return event.build();
+	}
+
+	// Applies a delete at the current revision, returns its event.
+	private Event erase(String key) {
+		KeyValue previous = keyspace.remove(key);
+		KeyValue deletion = KeyValue.newBuilder().setKey(bytes(key)).setModRevision(revision).build();
+		history.computeIfAbsent(key, k -> new TreeMap<>()).put(revision, deletion);
+		return Event.newBuilder().setType(Event.EventType.DELETE).setKv(deletion).setPrevKv(previous).build();
+	}
+
+	// Records the events of the current revision and pushes them to the watchers.
+	private void publish(List<Event> revisionEvents) {
+		if (revisionEvents.isEmpty()) {
+			return;
+		}
+		events.put(revision, revisionEvents);
+		for (Registration registration : watchers) {
+			registration.deliver(revisionEvents);
+		}
+	}
+
+	private RangeResponse range(String start, String end, long limit, long atRevision, boolean descend,
+			boolean countOnly) {
+		if (atRevision > 0 && atRevision < compactedRevision) {
+			throw EtcdExceptionFactory.newCompactedException(compactedRevision);
+		}
+		if (atRevision > revision) {
+			throw new IllegalArgumentException("Revision " + atRevision + " is a future revision");
+		}
+		Iterable<KeyValue> matches = atRevision <= 0 || atRevision == revision
+				? select(keyspace, start, end, descend).values()
+				: selectAt(atRevision, start, end, descend);
+		RangeResponse.Builder response = RangeResponse.newBuilder().setHeader(header());
+		long count = 0L;
+		for (KeyValue keyValue : matches) {
+			if (countOnly) {
+				count++;
+			} else if (limit > 0 && response.getKvsCount() == limit) {
+				response.setMore(true); // counting the remaining keys would cost a full scan
+				break;
+			} else {
+				response.addKvs(keyValue);
+			}
+		}
+		return response.setCount(countOnly ? count : response.getKvsCount()).build();
+	}
+
+	// Key values of a range as they were at a past revision.
+	private List<KeyValue> selectAt(long atRevision, String start, String end, boolean descend) {
+		List<KeyValue> matches = new ArrayList<>();
+		for (NavigableMap<Long, KeyValue> versions : select(history, start, end, descend).values()) {
+			Map.Entry<Long, KeyValue> version = versions.floorEntry(atRevision);
+			if (version != null && !isDeletion(version.getValue())) {
+				matches.add(version.getValue());
+			}
+		}
+		return matches;
+	}
+
+	// Keys in [start, end), all keys from start if end is "\0", the start key only if end is null.
+	private static <V> NavigableMap<String, V> select(NavigableMap<String, V> keys, String start, String end,
+			boolean descend) {
+		NavigableMap<String, V> selected;
+		if (end == null) {
+			selected = keys.subMap(start, true, start, true);
+		} else if (ALL_KEYS.equals(end)) {
+			selected = keys.tailMap(start, true);
+		} else if (end.compareTo(start) <= 0) {
+			selected = new TreeMap<>();
+		} else {
+			selected = keys.subMap(start, true, end, false);
+		}
+		return descend ? selected.descendingMap() : selected;
+	}
+
+	private static String endOf(ByteSequence key, Optional<ByteSequence> endKey, boolean prefix) {
+		if (prefix) {
+			return OptionsUtil.prefixEndOf(key).toString(StandardCharsets.UTF_8);
+		}
+		return endKey.map(end -> end.toString(StandardCharsets.UTF_8)).orElse(null);
+	}
+
+	private static boolean inRange(String key, String start, String end) {
+		if (end == null) {
+			return key.equals(start);
+		}
+		return key.compareTo(start) >= 0 && (ALL_KEYS.equals(end) || key.compareTo(end) < 0);
+	}
+
+	private static boolean isDeletion(KeyValue keyValue) {
+		return keyValue.getVersion() == 0L;
+	}
+
+	private ResponseHeader header() {
+		return ResponseHeader.newBuilder().setRevision(revision).build();
+	}
+
+	private static ByteString bytes(String value) {
+		return ByteString.copyFromUtf8(value);
+	}
+
+	private static String string(ByteString value) {
+		return value.toStringUtf8();
+	}
+
+	// Completes the response after the injected latency, or with the failure of the request.
+	private <T> CompletableFuture<T> respond(Supplier<T> request) {
+		CompletableFuture<T> response = new CompletableFuture<>();
+		Runnable completion = () -> {
+			try {
+				response.complete(request.get());
+			} catch (RuntimeException e) {
+				response.completeExceptionally(e);
+			}
+		};
+		long latency = latencyMillis;
+		if (latency > 0) {
+			latencyScheduler.schedule(completion, latency, TimeUnit.MILLISECONDS);
+		} else {
+			completion.run();
+		}
+		return response;
+	}
+
+	// Op keeps its request private, the protobuf request it converts to is read instead.
+	private static Method findToRequestOp() {
+		try {
+			Method method = Op.class.getDeclaredMethod("toRequestOp", ByteSequence.class);
+			method.setAccessible(true);
+			return method;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Unsupported jetcd version", e);
+		}
+	}
+
+	private static RequestOp toRequestOp(Op op) {
+		try {
+			return (RequestOp) TO_REQUEST_OP.invoke(op, ByteSequence.EMPTY);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Transaction operation could not be read", e);
+		}
+	}
+
+	private final class Registration {
+		private final String start;
+		private final String end;
+		private final WatchOption option;
+		private final Watch.Listener listener;
+
+		private Registration(String start, String end, WatchOption option, Watch.Listener listener) {
+			this.start = start;
+			this.end = end;
+			this.option = option;
+			this.listener = listener;
+		}
+
+		// Sends the events of a revision in the watched range as a single response.
+		private void deliver(List<Event> revisionEvents) {
+			io.etcd.jetcd.api.WatchResponse.Builder response = io.etcd.jetcd.api.WatchResponse.newBuilder()
+					.setHeader(header());
+			for (Event event : revisionEvents) {
+				if (!inRange(string(event.getKv().getKey()), start, end)
+						|| (option.isNoPut() && Event.EventType.PUT.equals(event.getType()))
+						|| (option.isNoDelete() && Event.EventType.DELETE.equals(event.getType()))) {
+					continue;
+				}
+				response.addEvents(option.isPrevKV() ? event : event.toBuilder().clearPrevKv().build());
+			}
+			if (response.getEventsCount() > 0) {
+				listener.onNext(new WatchResponse(response.build(), ByteSequence.EMPTY));
+			}
+		}
+	}
+
+	private final class InMemoryTxn implements Txn {
+
+		private final List<Op> operations = new ArrayList<>();
+
+		@Override
+		public Txn If(Cmp... cmps) {
+			if (cmps.length > 0) {
+				throw new UnsupportedOperationException("transaction conditions are not supported");
+			}
+			return this;
+		}
+
+		@Override
+		public Txn Then(Op... ops) {
+			operations.addAll(Arrays.asList(ops));
+			return this;
+		}
+
+		@Override
+		public Txn Else(Op... ops) {
+			return this; // without conditions the else branch never runs
+		}
+
+		@Override
+		public CompletableFuture<TxnResponse> commit() {
+			List<RequestOp> requests = new ArrayList<>();
+			for (Op operation : operations) {
+				requests.add(toRequestOp(operation));
+			}
+			return respond(() -> execute(requests));
+		}
+
+		// All operations are run at a single revision, the writes increasing it once.
+		private TxnResponse execute(List<RequestOp> requests) {
+			synchronized (InMemoryEtcd.this) {
+				boolean writes = requests.stream().anyMatch(request -> !request.hasRequestRange());
+				long readRevision = revision;
+				if (writes) {
+					revision++;
+				}
+				List<Event> revisionEvents = new ArrayList<>();
+				io.etcd.jetcd.api.TxnResponse.Builder response = io.etcd.jetcd.api.TxnResponse.newBuilder()
+						.setSucceeded(true);
+				for (RequestOp request : requests) {
+					if (request.hasRequestRange()) {
+						RangeRequest get = request.getRequestRange();
+						String end = get.getRangeEnd().isEmpty() ? null : string(get.getRangeEnd());
+						response.addResponses(ResponseOp.newBuilder()
+								.setResponseRange(range(string(get.getKey()), end, get.getLimit(),
+										get.getRevision() > 0 ? get.getRevision() : readRevision,
+										RangeRequest.SortOrder.DESCEND.equals(get.getSortOrder()), get.getCountOnly())));
+					} else if (request.hasRequestPut()) {
+						revisionEvents.add(write(string(request.getRequestPut().getKey()),
+								request.getRequestPut().getValue()));
+						response.addResponses(ResponseOp.newBuilder()
+								.setResponsePut(io.etcd.jetcd.api.PutResponse.newBuilder().setHeader(header())));
+					} else if (request.hasRequestDeleteRange()) {
+						DeleteRangeRequest delete = request.getRequestDeleteRange();
+						String end = delete.getRangeEnd().isEmpty() ? null : string(delete.getRangeEnd());
+						List<String> keys = new ArrayList<>(select(keyspace, string(delete.getKey()), end, false).keySet());
+						long deleted = keys.size();
+						for (String deletedKey : keys) {
+							revisionEvents.add(erase(deletedKey));
+						}
+						response.addResponses(ResponseOp.newBuilder().setResponseDeleteRange(
+								io.etcd.jetcd.api.DeleteRangeResponse.newBuilder().setHeader(header()).setDeleted(deleted)));
+					} else {
+						throw new UnsupportedOperationException("Unsupported transaction operation: " + request);
+					}
+				}
+				if (writes && revisionEvents.isEmpty()) {
+					revision--; // nothing is changed, e.g. only missing keys are deleted
+				}
+				publish(revisionEvents);
+				return new TxnResponse(response.setHeader(header()).build(), ByteSequence.EMPTY);
+			}
+		}
+	}
+
+	private class InMemoryKV implements KV {
+
+		@Override
+		public CompletableFuture<PutResponse> put(ByteSequence key, ByteSequence value) {
+			return put(key, value, PutOption.DEFAULT);
+		}
+
+		@Override
+		public CompletableFuture<PutResponse> put(ByteSequence key, ByteSequence value, PutOption option) {
+			return respond(() -> {
+				synchronized (InMemoryEtcd.this) {
+					InMemoryEtcd.this.put(key.toString(StandardCharsets.UTF_8), ByteString.copyFrom(value.getBytes()));
+					return new PutResponse(io.etcd.jetcd.api.PutResponse.newBuilder().setHeader(header()).build(),
+							ByteSequence.EMPTY);
+				}
+			});
+		}
+
+		@Override
+		public CompletableFuture<GetResponse> get(ByteSequence key) {
+			return get(key, GetOption.DEFAULT);
+		}
+
+		@Override
+		public CompletableFuture<GetResponse> get(ByteSequence key, GetOption option) {
+			return respond(() -> {
+				synchronized (InMemoryEtcd.this) {
+					return new GetResponse(range(key.toString(StandardCharsets.UTF_8),
+							endOf(key, option.getEndKey(), option.isPrefix()), option.getLimit(), option.getRevision(),
+							GetOption.SortOrder.DESCEND.equals(option.getSortOrder()), option.isCountOnly()),
+							ByteSequence.EMPTY);
+				}
+			});
+		}
+
+		@Override
+		public CompletableFuture<DeleteResponse> delete(ByteSequence key) {
+			return delete(key, DeleteOption.DEFAULT);
+		}
+
+		@Override
+		public CompletableFuture<DeleteResponse> delete(ByteSequence key, DeleteOption option) {
+			return respond(() -> {
+				synchronized (InMemoryEtcd.this) {
+					long deleted = InMemoryEtcd.this.delete(key.toString(StandardCharsets.UTF_8)) > 0 ? 1L : 0L;
+					return new DeleteResponse(io.etcd.jetcd.api.DeleteRangeResponse.newBuilder().setHeader(header())
+							.setDeleted(deleted).build(), ByteSequence.EMPTY);
+				}
+			});
+		}
+
+		@Override
+		public CompletableFuture<CompactResponse> compact(long rev) {
+			return compact(rev, CompactOption.DEFAULT);
+		}
+
+		@Override
+		public CompletableFuture<CompactResponse> compact(long rev, CompactOption option) {
+			return respond(() -> {
+				synchronized (InMemoryEtcd.this) {
+					InMemoryEtcd.this.compact(rev);
+					return new CompactResponse(
+							io.etcd.jetcd.api.CompactionResponse.newBuilder().setHeader(header()).build());
+				}
+			});
+		}
+
+		@Override
+		public Txn txn() {
+			return new InMemoryTxn();
+		}
+	}
+
+	private class InMemoryWatch implements Watch {
+
+		@Override
+		public Watcher watch(ByteSequence key, WatchOption option, Listener listener) {
+			Registration registration = new Registration(key.toString(StandardCharsets.UTF_8),
+					endOf(key, option.getEndKey(), option.isPrefix()), option, listener);
+			synchronized (InMemoryEtcd.this) {
+				long startRevision = option.getRevision();
+				if (startRevision > 0 && startRevision < compactedRevision) {
+					listener.onError(EtcdExceptionFactory.newCompactedException(compactedRevision));
+				} else {
+					if (startRevision > 0) { // replays the missed events first
+						events.tailMap(startRevision, true).values().forEach(registration::deliver);
+					}
+					watchers.add(registration);
+				}
+			}
+			return new Watcher() {
+				@Override
+				public void close() {
+					if (watchers.remove(registration)) {
+						listener.onCompleted();
+					}
+				}
+
+				@Override
+				public void requestProgress() {
+					// progress notifications are not simulated
+				}
+			};
+		}
+
+		@Override
+		public void requestProgress() {
+			// progress notifications are not simulated
+		}
+	}
+
+	private class InMemoryClient implements Client {
+
+		@Override
+		public KV getKVClient() {
+			return kv;
+		}
+
+		@Override
+		public Watch getWatchClient() {
+			return watch;
+		}
+
+		@Override
+		public Auth getAuthClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Cluster getClusterClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Maintenance getMaintenanceClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Lease getLeaseClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Lock getLockClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Election getElectionClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			// nothing to release
+		}
+	}
+}
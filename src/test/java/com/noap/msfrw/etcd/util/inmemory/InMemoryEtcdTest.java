@@ -0,0 +1,129 @@
+package com.noap.msfrw.etcd.util.inmemory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.OptionsUtil;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+
+class InMemoryEtcdTest {
+
+	private static ByteSequence bytes(String value) {
+		return ByteSequence.from(value, StandardCharsets.UTF_8);
+	}
+
+	private static List<String> keysOf(GetResponse response) {
+		return response.getKvs().stream().map(kv -> kv.getKey().toString()).collect(Collectors.toList());
+	}
+
+	@Test
+	@DisplayName("Given Key Values Written in Several Revisions When Reading a Prefix Range Then Read the Range at the Requested Revision")
+	void givenKeyValuesWrittenInSeveralRevisions_whenReadingPrefixRange_thenReadAtRequestedRevision() throws Exception {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		long first = etcd.put("dev.app.key1", "v1");
+		etcd.put("dev.app.key2", "v2");
+		etcd.put("dev.other.key1", "o1");
+		etcd.put("dev.app.key1", "v1-changed");
+
+		GetOption prefix = GetOption.newBuilder().isPrefix(true).build();
+		GetResponse current = etcd.kv().get(bytes("dev.app."), prefix).get();
+		assertEquals(Arrays.asList("dev.app.key1", "dev.app.key2"), keysOf(current));
+		assertEquals("v1-changed", current.getKvs().get(0).getValue().toString());
+		assertEquals(etcd.getRevision(), current.getHeader().getRevision());
+
+		GetResponse past = etcd.kv().get(bytes("dev.app."), GetOption.newBuilder().isPrefix(true).withRevision(first).build())
+				.get();
+		assertEquals(Arrays.asList("dev.app.key1"), keysOf(past));
+		assertEquals("v1", past.getKvs().get(0).getValue().toString());
+
+		GetResponse page = etcd.kv().get(bytes("\0"), GetOption.newBuilder().withRange(bytes("\0")).withLimit(2).build())
+				.get();
+		assertEquals(2, page.getKvs().size());
+		assertTrue(page.isMore());
+	}
+
+	@Test
+	@DisplayName("Given a Watch Starting From a Past Revision When Keys Change Then Replay Missed Events and Deliver New Ones")
+	void givenWatchFromPastRevision_whenKeysChange_thenReplayMissedAndDeliverNewEvents() {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		long first = etcd.put("dev.app.key1", "v1");
+		etcd.put("dev.other.key1", "o1");
+		List<WatchEvent> received = new CopyOnWriteArrayList<>();
+		Watch.Watcher watcher = etcd.watch().watch(bytes("dev.app."),
+				WatchOption.newBuilder().isPrefix(true).withRevision(first).withNoDelete(true).build(),
+				Watch.listener(response -> received.addAll(response.getEvents())));
+		etcd.put("dev.app.key2", "v2");
+		etcd.delete("dev.app.key1");
+		watcher.close();
+		etcd.put("dev.app.key3", "v3");
+
+		assertEquals(2, received.size());
+		assertEquals("dev.app.key1", received.get(0).getKeyValue().getKey().toString());
+		assertEquals("dev.app.key2", received.get(1).getKeyValue().getKey().toString());
+		assertEquals(WatchEvent.EventType.PUT, received.get(1).getEventType());
+	}
+
+	@Test
+	@DisplayName("Given a Compacted Keyspace When Reading or Watching Before the Compaction Then Fail With Compacted Exception")
+	void givenCompactedKeyspace_whenReadingOrWatchingBeforeCompaction_thenFailWithCompactedException() throws Exception {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		long first = etcd.put("dev.app.key1", "v1");
+		long second = etcd.put("dev.app.key1", "v2");
+		etcd.put("dev.app.key2", "v3");
+		etcd.kv().compact(second).get();
+
+		ExecutionException failure = assertThrows(ExecutionException.class,
+				() -> etcd.kv().get(bytes("dev.app.key1"), GetOption.newBuilder().withRevision(first).build()).get());
+		assertTrue(failure.getCause() instanceof CompactedException);
+		assertEquals("v2", etcd.kv().get(bytes("dev.app.key1"), GetOption.newBuilder().withRevision(second).build()).get()
+				.getKvs().get(0).getValue().toString());
+
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		etcd.watch().watch(bytes("dev.app.key1"), WatchOption.newBuilder().withRevision(first).build(),
+				Watch.listener(response -> {
+				}, errors::add));
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof CompactedException);
+		assertEquals(second, etcd.getCompactedRevision());
+	}
+
+	@Test
+	@DisplayName("Given a Transaction of Reads and Writes When Committed Then Read a Single Snapshot and Write at a Single Revision")
+	void givenTransactionOfReadsAndWrites_whenCommitted_thenSingleSnapshotAndSingleRevision() throws Exception {
+		InMemoryEtcd etcd = new InMemoryEtcd();
+		etcd.put("dev.app.key1", "v1");
+		long before = etcd.getRevision();
+
+		TxnResponse response = etcd.kv().txn()
+				.Then(Op.get(bytes("dev.app."), GetOption.newBuilder().withRange(OptionsUtil.prefixEndOf(bytes("dev.app."))).build()),
+						Op.put(bytes("dev.app.key2"), bytes("v2"), PutOption.DEFAULT),
+						Op.put(bytes("dev.app.key3"), bytes("v3"), PutOption.DEFAULT))
+				.commit().get();
+
+		assertTrue(response.isSucceeded());
+		assertEquals(1, response.getGetResponses().get(0).getKvs().size());
+		assertEquals(2, response.getPutResponses().size());
+		assertEquals(before + 1, etcd.getRevision());
+		assertEquals(3, etcd.size());
+	}
+}
@@ -0,0 +1,62 @@
+package com.noap.msfrw.etcd.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.noap.msfrw.etcd.util.watch.RefreshCoalescer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EtcdMetricsTest {
+
+	@Test
+	@DisplayName("Given Range Reads When Recorded Then Latency and Key Count Are Registered Per Read Mode")
+	void givenRangeReads_whenRecorded_thenLatencyAndKeyCountRegisteredPerMode() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		EtcdMetrics metrics = new EtcdMetrics(registry);
+		metrics.recordRangeRead("paged", TimeUnit.MILLISECONDS.toNanos(4), 10);
+		metrics.recordRangeRead("paged", TimeUnit.MILLISECONDS.toNanos(6), 30);
+		metrics.recordRangeRead("replica", 1000L, 5);
+		assertEquals(2L, registry.get("etcd.range.read").tag("mode", "paged").timer().count());
+		assertEquals(10.0, registry.get("etcd.range.read").tag("mode", "paged").timer().totalTime(TimeUnit.MILLISECONDS));
+		assertEquals(40.0, registry.get("etcd.range.read.keys").tag("mode", "paged").summary().totalAmount());
+		assertEquals(1L, registry.get("etcd.range.read").tag("mode", "replica").timer().count());
+	}
+
+	@Test
+	@DisplayName("Given Watch Events and Lock Waits When Recorded Then Counters and Timers Are Tagged")
+	void givenWatchEventsAndLockWaits_whenRecorded_thenCountersAndTimersTagged() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		EtcdMetrics metrics = new EtcdMetrics(registry);
+		metrics.countWatchEvent("PUT");
+		metrics.countWatchEvent("PUT");
+		metrics.countWatchEvent("DELETE");
+		metrics.recordWatchLag(1000L);
+		metrics.recordPut("txn", 1000L);
+		metrics.recordLockWait(1000L, "acquired");
+		assertEquals(2.0, registry.get("etcd.watch.events").tag("type", "PUT").counter().count());
+		assertEquals(1.0, registry.get("etcd.watch.events").tag("type", "DELETE").counter().count());
+		assertEquals(1L, registry.get("etcd.watch.lag").timer().count());
+		assertEquals(1L, registry.get("etcd.put").tag("operation", "txn").timer().count());
+		assertEquals(1L, registry.get("redis.lock.wait").tag("outcome", "acquired").timer().count());
+	}
+
+	@Test
+	@DisplayName("Given a Refresh Coalescer With Metrics When Flushed Then Delay and Published Refreshes Are Recorded")
+	void givenRefreshCoalescerWithMetrics_whenFlushed_thenDelayAndPublishedRecorded() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		RefreshCoalescer coalescer = new RefreshCoalescer(60000L, 60000L, destination -> {
+		}, new EtcdMetrics(registry));
+		coalescer.submit("app1");
+		coalescer.submit("app2");
+		coalescer.submit("app1");
+		coalescer.shutdown();
+		assertEquals(1L, registry.get("etcd.refresh.delay").timer().count());
+		assertEquals(1.0, registry.get("etcd.refresh.published").tag("application", "app1").counter().count());
+		assertEquals(1.0, registry.get("etcd.refresh.published").tag("application", "app2").counter().count());
+	}
+}
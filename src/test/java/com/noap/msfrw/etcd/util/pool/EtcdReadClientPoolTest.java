@@ -0,0 +1,91 @@
+package com.noap.msfrw.etcd.util.pool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+
+class EtcdReadClientPoolTest {
+
+	private static Client mockClient(KV kv) {
+		Client client = Mockito.mock(Client.class);
+		Mockito.when(client.getKVClient()).thenReturn(kv);
+		return client;
+	}
+
+	@Test
+	@DisplayName("Given a Slow and a Fast Endpoint When Reads are Sent Then Prefer the Fast Endpoint Once Both are Measured")
+	void givenSlowAndFastEndpoint_whenReadsSent_thenPreferFastEndpoint() {
+		KV slow = Mockito.mock(KV.class);
+		KV fast = Mockito.mock(KV.class);
+		Map<String, Client> clients = new LinkedHashMap<>();
+		clients.put("http://slow:2379", mockClient(slow));
+		clients.put("http://fast:2379", mockClient(fast));
+		EtcdReadClientPool pool = new EtcdReadClientPool(clients);
+
+		int fastReads = 0;
+		for (int i = 0; i < 20; i++) {
+			KV picked = pool.read(kv -> {
+				if (kv == slow) {
+					sleep(20L);
+				}
+				return CompletableFuture.completedFuture(kv);
+			}).join();
+			fastReads += picked == fast ? 1 : 0;
+		}
+
+		assertTrue(fastReads >= 18, "fast endpoint is read " + fastReads + " times");
+		Map<String, Double> latencies = pool.getLatencyMillis();
+		assertTrue(latencies.get("http://slow:2379") > latencies.get("http://fast:2379"));
+	}
+
+	@Test
+	@DisplayName("Given an Endpoint Failing a Read When Further Reads are Sent Then Leave the Failing Endpoint Out")
+	void givenFailingEndpoint_whenFurtherReadsSent_thenLeaveFailingEndpointOut() {
+		KV failing = Mockito.mock(KV.class);
+		KV healthy = Mockito.mock(KV.class);
+		Map<String, Client> clients = new LinkedHashMap<>();
+		clients.put("http://failing:2379", mockClient(failing));
+		clients.put("http://healthy:2379", mockClient(healthy));
+		EtcdReadClientPool pool = new EtcdReadClientPool(clients);
+
+		int failures = 0;
+		int healthyReads = 0;
+		for (int i = 0; i < 20; i++) {
+			CompletableFuture<KV> read = pool.read(kv -> {
+				if (kv == failing) {
+					CompletableFuture<KV> failed = new CompletableFuture<>();
+					failed.completeExceptionally(new IllegalStateException("unavailable"));
+					return failed;
+				}
+				return CompletableFuture.completedFuture(kv);
+			});
+			if (read.isCompletedExceptionally()) {
+				failures++;
+			} else {
+				healthyReads++;
+			}
+		}
+
+		assertTrue(failures <= 1, "failing endpoint is read " + failures + " times");
+		assertEquals(20 - failures, healthyReads);
+		pool.close();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
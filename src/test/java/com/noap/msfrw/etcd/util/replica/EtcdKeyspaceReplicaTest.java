@@ -0,0 +1,75 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EtcdKeyspaceReplicaTest {
+
+	EtcdKeyspaceReplica replica;
+
+	@BeforeEach
+	void init() {
+		replica = new EtcdKeyspaceReplica(3, '.');
+		Map<String, String> snapshot = new HashMap<>();
+		Map<String, Long> modRevisions = new HashMap<>();
+		snapshot.put("dev.sample.value", "first");
+		modRevisions.put("dev.sample.value", 5L);
+		snapshot.put("dev.other.value", "other");
+		modRevisions.put("dev.other.value", 7L);
+		snapshot.put("prod.sample.value", "prod");
+		modRevisions.put("prod.sample.value", 8L);
+		replica.load(snapshot, modRevisions, 10L);
+	}
+
+	@Test
+	@DisplayName("Given Loaded Replica When Key Values With Prefix Requested Then Return Them Without Prefix")
+	void givenLoadedReplica_whenKeyValuesWithPrefixRequested_thenReturnStrippedKeys() {
+		assertTrue(replica.isLoaded());
+		Map<String, String> keyValues = replica.getKeyValues("dev.sample.").getKeyValues();
+		assertEquals(1, keyValues.size());
+		assertEquals("first", keyValues.get("value"));
+		assertEquals(3, replica.getKeyValues("").getKeyValues().size());
+	}
+
+	@Test
+	@DisplayName("Given Loaded Replica When Newer Events Applied Then Update Keyspace and Revision")
+	void givenLoadedReplica_whenNewerEventsApplied_thenUpdateKeyspaceAndRevision() {
+		assertTrue(replica.put("dev.sample.value", "second", 11L));
+		assertTrue(replica.put("dev.sample.added", "added", 12L));
+		assertTrue(replica.delete("dev.other.value", 13L));
+		assertEquals("second", replica.getKeyValues("dev.sample.").getKeyValues().get("value"));
+		assertEquals("added", replica.getKeyValues("dev.sample.").getKeyValues().get("added"));
+		assertTrue(replica.getKeyValues("dev.other.").getKeyValues().isEmpty());
+		assertEquals(13L, replica.getRevision());
+	}
+
+	@Test
+	@DisplayName("Given Loaded Replica When Events Already Reflected by Snapshot Applied Then Ignore Them")
+	void givenLoadedReplica_whenStaleEventsApplied_thenIgnoreThem() {
+		assertFalse(replica.put("dev.sample.value", "stale", 5L));
+		assertFalse(replica.put("dev.deleted.value", "stale", 9L));
+		assertFalse(replica.delete("prod.sample.value", 8L));
+		assertEquals("first", replica.getKeyValues("dev.sample.").getKeyValues().get("value"));
+		assertEquals(3, replica.size());
+	}
+
+	@Test
+	@DisplayName("Given Loaded Replica When Watchers of Disjoint Ranges Apply New Keys Out of Revision Order Then Apply All of Them")
+	void givenLoadedReplica_whenNewKeysAppliedOutOfRevisionOrder_thenApplyAll() {
+		assertTrue(replica.put("prod.other.added", "fast", 15L));
+		assertTrue(replica.put("dev.sample.added", "lagging", 12L));
+		assertEquals("lagging", replica.getKeyValues("dev.sample.").getKeyValues().get("added"));
+		assertEquals(15L, replica.getRevision());
+	}
+}
@@ -0,0 +1,74 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class KeyPrefixTrieTest {
+
+	KeyPrefixTrie trie;
+
+	@BeforeEach
+	void init() {
+		trie = new KeyPrefixTrie(3, '.');
+		trie.put("dev.sample.master.server.port", "8080", 1L);
+		trie.put("dev.sample.value", "HelloUser", 2L);
+		trie.put("dev.other.value", "other", 3L);
+		trie.put("prod.sample.value", "prod", 4L);
+	}
+
+	@Test
+	@DisplayName("Given Indexed Keys When Sub Map of a Prefix Requested Then Return Keys Without Prefix")
+	void givenIndexedKeys_whenPrefixRequested_thenReturnSubMapWithoutPrefix() {
+		Map<String, String> sample = trie.getKeyValues("dev.sample.").getKeyValues();
+		assertEquals(2, sample.size());
+		assertEquals("HelloUser", sample.get("value"));
+		assertEquals("8080", sample.get("master.server.port"));
+		assertEquals(2L, trie.getKeyValues("dev.sample.").getRevision());
+		assertEquals("8080", trie.getKeyValues("dev.sample.master.").getKeyValues().get("server.port"));
+		assertEquals(3, trie.getKeyValues("dev.").getKeyValues().size());
+		assertEquals(4, trie.getKeyValues("").getKeyValues().size());
+		assertTrue(trie.getKeyValues("test.").getKeyValues().isEmpty());
+	}
+
+	@Test
+	@DisplayName("Given Indexed Keys When Prefix Deeper Than the Index Requested Then Filter the Closest Node")
+	void givenIndexedKeys_whenDeepPrefixRequested_thenFilterClosestNode() {
+		assertEquals("8080", trie.getKeyValues("dev.sample.master.server.").getKeyValues().get("port"));
+	}
+
+	@Test
+	@DisplayName("Given Indexed Keys When a Partial Segment Prefix Requested Then Filter the Sub Trie")
+	void givenIndexedKeys_whenPartialSegmentPrefixRequested_thenFilterSubTrie() {
+		Map<String, String> sample = trie.getKeyValues("dev.sam").getKeyValues();
+		assertEquals(2, sample.size());
+		assertEquals("8080", sample.get("ple.master.server.port"));
+		assertEquals("HelloUser", sample.get("ple.value"));
+	}
+
+	@Test
+	@DisplayName("Given Keys With Regex Metacharacters When Prefix Requested Then Match Literally")
+	void givenKeysWithRegexMetacharacters_whenPrefixRequested_thenMatchLiterally() {
+		trie.put("dev.my+app.value", "literal", 5L);
+		assertEquals("literal", trie.getKeyValues("dev.my+app.").getKeyValues().get("value"));
+	}
+
+	@Test
+	@DisplayName("Given Indexed Keys When a Key is Removed Then Remove It From All Prefixes")
+	void givenIndexedKeys_whenKeyRemoved_thenRemoveFromAllPrefixes() {
+		trie.remove("dev.other.value");
+		assertTrue(trie.getKeyValues("dev.other.").getKeyValues().isEmpty());
+		assertEquals(2, trie.getKeyValues("dev.").getKeyValues().size());
+		assertNull(trie.get("dev.other.value"));
+		assertEquals(3, trie.size());
+	}
+}
@@ -0,0 +1,125 @@
+package com.noap.msfrw.etcd.util.replica;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KeyspaceSnapshotFileTest {
+
+	@TempDir
+	Path directory;
+
+	private KeyspaceSnapshot createSnapshot(long revision) {
+		Map<String, String> keyValues = new HashMap<>();
+		Map<String, Long> modRevisions = new HashMap<>();
+		keyValues.put("dev.sample.master.value", "first");
+		modRevisions.put("dev.sample.master.value", 5L);
+		keyValues.put("dev.sample.master.unicode", "değer");
+		modRevisions.put("dev.sample.master.unicode", 7L);
+		keyValues.put("dev.sample.master.empty", "");
+		modRevisions.put("dev.sample.master.empty", 8L);
+		return new KeyspaceSnapshot(keyValues, modRevisions, revision);
+	}
+
+	@Test
+	@DisplayName("Given a Written Snapshot When Read Then Return the Same Key Values, Modification Revisions and Revision")
+	void givenWrittenSnapshot_whenRead_thenReturnSameContent() throws Exception {
+		KeyspaceSnapshotFile file = new KeyspaceSnapshotFile(directory.resolve("nested").resolve("keyspace.snapshot"));
+		file.write(createSnapshot(9L));
+		file.write(createSnapshot(10L));
+
+		KeyspaceSnapshot read = file.read();
+		assertEquals(10L, read.getRevision());
+		assertEquals(createSnapshot(10L).getKeyValues(), read.getKeyValues());
+		assertEquals(createSnapshot(10L).getModRevisions(), read.getModRevisions());
+		assertTrue(read.getPrefixes().isEmpty());
+		assertFalse(Files.exists(directory.resolve("nested").resolve("keyspace.snapshot.tmp")));
+
+		EtcdKeyspaceReplica replica = new EtcdKeyspaceReplica(3, '.');
+		replica.load(read);
+		assertEquals("değer", replica.getKeyValues("dev.sample.master.").getKeyValues().get("unicode"));
+		assertEquals(10L, replica.createSnapshot().getRevision());
+	}
+
+	@Test
+	@DisplayName("Given a Written Snapshot of Some Prefixes When Read Then Return the Same Prefixes")
+	void givenWrittenSnapshotOfPrefixes_whenRead_thenReturnSamePrefixes() throws Exception {
+		KeyspaceSnapshotFile file = new KeyspaceSnapshotFile(directory.resolve("keyspace.snapshot"));
+		KeyspaceSnapshot snapshot = createSnapshot(10L);
+		file.write(new KeyspaceSnapshot(snapshot.getKeyValues(), snapshot.getModRevisions(), 10L,
+				Arrays.asList("dev.", "prod.")));
+
+		KeyspaceSnapshot read = file.read();
+		assertEquals(Arrays.asList("dev.", "prod."), read.getPrefixes());
+		assertEquals(snapshot.getKeyValues(), read.getKeyValues());
+	}
+
+	@Test
+	@DisplayName("Given a Missing or Corrupt Snapshot File When Read Then Return No Snapshot")
+	void givenMissingOrCorruptSnapshotFile_whenRead_thenReturnNull() throws Exception {
+		Path path = directory.resolve("keyspace.snapshot");
+		KeyspaceSnapshotFile file = new KeyspaceSnapshotFile(path);
+		assertNull(file.read());
+
+		file.write(createSnapshot(10L));
+		byte[] content = Files.readAllBytes(path);
+		content[content.length / 2] ^= 0x7f;
+		Files.write(path, content);
+		assertNull(file.read());
+
+		Files.write(path, new byte[] {1, 2, 3});
+		assertNull(file.read());
+	}
+
+	@Test
+	@DisplayName("Given a Snapshot Writer When Replica Changes Then Write the Snapshot Once per Change")
+	void givenSnapshotWriter_whenReplicaChanges_thenWriteOncePerChange() throws Exception {
+		KeyspaceSnapshotFile file = new KeyspaceSnapshotFile(directory.resolve("keyspace.snapshot"));
+		EtcdKeyspaceReplica replica = new EtcdKeyspaceReplica(3, '.');
+		replica.load(createSnapshot(10L));
+		KeyspaceSnapshotWriter writer = new KeyspaceSnapshotWriter(file, replica::createSnapshot, 60000L);
+		writer.written();
+		assertFalse(writer.write());
+
+		replica.put("dev.sample.master.value", "second", 11L);
+		writer.changed();
+		writer.shutdown();
+		assertEquals(11L, file.read().getRevision());
+		assertEquals("second", file.read().getKeyValues().get("dev.sample.master.value"));
+		assertTrue(Files.exists(file.getPath()));
+	}
+
+	@Test
+	@DisplayName("Given a Snapshot Revision Held Back by an Idle Watcher When Replica Changes Then Write the Changed Snapshot")
+	void givenSnapshotRevisionHeldBack_whenReplicaChanges_thenWriteChangedSnapshot() throws Exception {
+		KeyspaceSnapshotFile file = new KeyspaceSnapshotFile(directory.resolve("keyspace.snapshot"));
+		EtcdKeyspaceReplica replica = new EtcdKeyspaceReplica(3, '.');
+		replica.load(createSnapshot(10L));
+		// the revision all watchers have processed stays at 10 while one of them is idle
+		KeyspaceSnapshotWriter writer = new KeyspaceSnapshotWriter(file, () -> {
+			KeyspaceSnapshot snapshot = replica.createSnapshot();
+			return new KeyspaceSnapshot(snapshot.getKeyValues(), snapshot.getModRevisions(), 10L);
+		}, 60000L);
+		writer.changed();
+		assertTrue(writer.write());
+		assertFalse(writer.write());
+
+		replica.put("dev.sample.master.value", "second", 11L);
+		writer.changed();
+		assertTrue(writer.write());
+		assertEquals(10L, file.read().getRevision());
+		assertEquals("second", file.read().getKeyValues().get("dev.sample.master.value"));
+		writer.shutdown();
+	}
+}
@@ -0,0 +1,120 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.noap.msfrw.etcd.util.metrics.EtcdMetrics;
+
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+
+@ExtendWith(MockitoExtension.class)
+class EtcdWatchShardTest {
+
+	private WatchResponse mockResponse(long modRevision) {
+		KeyValue keyValue = Mockito.mock(KeyValue.class);
+		Mockito.when(keyValue.getModRevision()).thenReturn(modRevision);
+		WatchEvent event = Mockito.mock(WatchEvent.class);
+		Mockito.when(event.getKeyValue()).thenReturn(keyValue);
+		WatchResponse response = Mockito.mock(WatchResponse.class);
+		Mockito.when(response.getEvents()).thenReturn(Collections.singletonList(event));
+		return response;
+	}
+
+	private static void awaitProcessedRevision(EtcdWatchShard shard, long revision) throws InterruptedException {
+		for (int i = 0; i < 500 && shard.getProcessedRevision() < revision; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	@DisplayName("Given a Started Shard When Responses are Handed Off Then Process Them in Order and Track the Processed Revision")
+	void givenStartedShard_whenResponsesHandedOff_thenProcessInOrderAndTrackRevision() throws InterruptedException {
+		List<WatchResponse> processed = new CopyOnWriteArrayList<>();
+		EtcdWatchShard shard = new EtcdWatchShard("etcd-watch-test", 16, 5L, processed::add, () -> 0L,
+				EtcdMetrics.noop());
+		assertEquals(4L, shard.getProcessedRevision());
+		WatchResponse first = mockResponse(5L);
+		WatchResponse second = mockResponse(7L);
+
+		Consumer<WatchResponse> stream = shard.openStream();
+		shard.start();
+		stream.accept(first);
+		stream.accept(second);
+		awaitProcessedRevision(shard, 7L);
+		shard.stop();
+
+		assertEquals(Arrays.asList(first, second), processed);
+		assertEquals(7L, shard.getProcessedRevision());
+	}
+
+	@Test
+	@DisplayName("Given a Full Response Queue When More Responses are Handed Off Then Drop Them and Resync Once")
+	void givenFullResponseQueue_whenMoreResponsesHandedOff_thenDropThemAndResyncOnce() throws InterruptedException {
+		CountDownLatch processing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger resyncs = new AtomicInteger();
+		EtcdWatchShard shard = new EtcdWatchShard("etcd-watch-test", 1, 0L, response -> {
+			processing.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}, () -> {
+			resyncs.incrementAndGet();
+			return 42L;
+		}, EtcdMetrics.noop());
+
+		Consumer<WatchResponse> stream = shard.openStream();
+		shard.start();
+		stream.accept(mockResponse(1L));
+		assertTrue(processing.await(5, TimeUnit.SECONDS));
+		stream.accept(Mockito.mock(WatchResponse.class)); // queued, cleared by the resync
+		stream.accept(Mockito.mock(WatchResponse.class)); // dropped, the queue holds one response
+		release.countDown();
+		awaitProcessedRevision(shard, 42L);
+		shard.stop();
+
+		assertEquals(1, resyncs.get());
+		assertEquals(42L, shard.getProcessedRevision());
+	}
+
+	@Test
+	@DisplayName("Given Streams of a Shard When One Stream Lags Behind Then Report Its Processed Revision")
+	void givenShardStreams_whenOneStreamLagsBehind_thenReportItsProcessedRevision() throws InterruptedException {
+		List<WatchResponse> processed = new CopyOnWriteArrayList<>();
+		EtcdWatchShard shard = new EtcdWatchShard("etcd-watch-test", 16, 5L, processed::add, () -> 0L,
+				EtcdMetrics.noop());
+		Consumer<WatchResponse> busy = shard.openStream();
+		Consumer<WatchResponse> quiet = shard.openStream();
+
+		shard.start();
+		busy.accept(mockResponse(9L));
+		quiet.accept(mockResponse(6L));
+		awaitProcessedRevision(shard, 6L);
+		long lagging = shard.getProcessedRevision();
+		quiet.accept(mockResponse(12L));
+		awaitProcessedRevision(shard, 9L);
+		shard.stop();
+
+		assertEquals(6L, lagging);
+		assertEquals(9L, shard.getProcessedRevision());
+	}
+}
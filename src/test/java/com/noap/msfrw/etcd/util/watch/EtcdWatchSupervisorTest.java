@@ -0,0 +1,124 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+
+@ExtendWith(MockitoExtension.class)
+class EtcdWatchSupervisorTest {
+
+	private static final ByteSequence ALL_KEYS = ByteSequence.from("\0".getBytes());
+
+	// a watch opened by the supervisor
+	private static class WatchAttempt {
+		private final WatchOption option;
+		private final Watch.Listener listener;
+
+		private WatchAttempt(WatchOption option, Watch.Listener listener) {
+			this.option = option;
+			this.listener = listener;
+		}
+	}
+
+	private Watch mockWatchClient(BlockingQueue<WatchAttempt> attempts) {
+		Watch watchClient = Mockito.mock(Watch.class);
+		Mockito.when(watchClient.watch(any(ByteSequence.class), any(WatchOption.class), any(Watch.Listener.class)))
+				.thenAnswer(invocation -> {
+					attempts.add(new WatchAttempt(invocation.getArgument(1), invocation.getArgument(2)));
+					return Mockito.mock(Watch.Watcher.class);
+				});
+		return watchClient;
+	}
+
+	private WatchResponse mockResponse(long modRevision) {
+		KeyValue keyValue = Mockito.mock(KeyValue.class);
+		Mockito.when(keyValue.getModRevision()).thenReturn(modRevision);
+		WatchEvent event = Mockito.mock(WatchEvent.class);
+		Mockito.when(event.getKeyValue()).thenReturn(keyValue);
+		WatchResponse response = Mockito.mock(WatchResponse.class);
+		Mockito.when(response.getEvents()).thenReturn(Collections.singletonList(event));
+		return response;
+	}
+
+	private WatchAttempt nextAttempt(BlockingQueue<WatchAttempt> attempts) throws InterruptedException {
+		WatchAttempt attempt = attempts.poll(5, TimeUnit.SECONDS);
+		assertNotNull(attempt);
+		return attempt;
+	}
+
+	@Test
+	@DisplayName("Given a Broken Watch Stream When Reconnecting Then Resume Right After the Last Processed Revision")
+	void givenBrokenWatchStream_whenReconnecting_thenResumeAfterLastProcessedRevision() throws InterruptedException {
+		BlockingQueue<WatchAttempt> attempts = new LinkedBlockingQueue<>();
+		Watch watchClient = mockWatchClient(attempts);
+		AtomicInteger processed = new AtomicInteger();
+		EtcdWatchSupervisor supervisor = new EtcdWatchSupervisor(() -> watchClient, ALL_KEYS, ALL_KEYS, 5L,
+				response -> processed.incrementAndGet(), () -> 0L, () -> 0L, 1L, 10L);
+		Thread watchThread = new Thread(supervisor);
+		watchThread.start();
+
+		WatchAttempt first = nextAttempt(attempts);
+		assertEquals(5L, first.option.getRevision());
+		first.listener.onNext(mockResponse(12L));
+		first.listener.onError(new IllegalStateException("connection lost"));
+
+		WatchAttempt second = nextAttempt(attempts);
+		assertEquals(13L, second.option.getRevision());
+		assertEquals(12L, supervisor.getLastRevision());
+		assertEquals(1, processed.get());
+
+		supervisor.stop();
+		second.listener.onCompleted();
+		watchThread.join(5000);
+		assertEquals(false, watchThread.isAlive());
+	}
+
+	@Test
+	@DisplayName("Given a Compacted Revision When Reconnecting Then Resync and Resume After the Resync Revision")
+	void givenCompactedRevision_whenReconnecting_thenResyncAndResumeAfterResyncRevision() throws InterruptedException {
+		BlockingQueue<WatchAttempt> attempts = new LinkedBlockingQueue<>();
+		Watch watchClient = mockWatchClient(attempts);
+		AtomicInteger resyncs = new AtomicInteger();
+		EtcdWatchSupervisor supervisor = new EtcdWatchSupervisor(() -> watchClient, ALL_KEYS, ALL_KEYS, 0L,
+				response -> {
+				}, () -> {
+					resyncs.incrementAndGet();
+					return 50L;
+				}, () -> 20L, 1L, 10L);
+		Thread watchThread = new Thread(supervisor);
+		watchThread.start();
+
+		WatchAttempt first = nextAttempt(attempts);
+		assertEquals(21L, first.option.getRevision());
+		first.listener.onError(Mockito.mock(CompactedException.class));
+
+		WatchAttempt second = nextAttempt(attempts);
+		assertEquals(51L, second.option.getRevision());
+		assertEquals(1, resyncs.get());
+
+		supervisor.stop();
+		second.listener.onCompleted();
+		watchThread.join(5000);
+		assertEquals(false, watchThread.isAlive());
+	}
+}
@@ -0,0 +1,69 @@
+package com.noap.msfrw.etcd.util.watch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshCoalescerTest {
+
+	@Test
+	@DisplayName("Given a Burst of Submissions When Quiet Window Passes Then Publish Each Destination Once")
+	void givenBurstOfSubmissions_whenQuietWindowPasses_thenPublishEachDestinationOnce() throws InterruptedException {
+		List<String> published = new CopyOnWriteArrayList<>();
+		RefreshCoalescer coalescer = new RefreshCoalescer(50L, 5000L, published::add);
+		for (int i = 0; i < 200; i++) {
+			coalescer.submit(i % 2 == 0 ? "app" : "other");
+		}
+		assertEquals(Collections.emptyList(), published);
+		Thread.sleep(500L);
+		assertEquals(Arrays.asList("app", "other"), published);
+		coalescer.shutdown();
+	}
+
+	@Test
+	@DisplayName("Given All Destinations Pending When Flushed Then Publish Only the All Destinations Event")
+	void givenAllDestinationsPending_whenFlushed_thenPublishOnlyAllDestinations() {
+		List<String> published = new CopyOnWriteArrayList<>();
+		RefreshCoalescer coalescer = new RefreshCoalescer(60000L, 60000L, published::add);
+		coalescer.submit("app");
+		coalescer.submit("*");
+		assertEquals(2, coalescer.getPendingCount());
+		coalescer.flush();
+		assertEquals(Collections.singletonList("*"), published);
+		assertEquals(0, coalescer.getPendingCount());
+		coalescer.shutdown();
+	}
+
+	@Test
+	@DisplayName("Given Continuous Submissions When Max Delay Passes Then Publish Without Waiting for Quiet Window")
+	void givenContinuousSubmissions_whenMaxDelayPasses_thenPublish() throws InterruptedException {
+		List<String> published = new CopyOnWriteArrayList<>();
+		RefreshCoalescer coalescer = new RefreshCoalescer(100L, 200L, published::add);
+		long start = System.currentTimeMillis();
+		while (published.isEmpty() && System.currentTimeMillis() - start < 3000L) {
+			coalescer.submit("app");
+			Thread.sleep(20L);
+		}
+		assertEquals("app", published.get(0));
+		coalescer.shutdown();
+	}
+
+	@Test
+	@DisplayName("Given Disabled Quiet Window When Submitted Then Publish Immediately")
+	void givenDisabledQuietWindow_whenSubmitted_thenPublishImmediately() {
+		List<String> published = new CopyOnWriteArrayList<>();
+		RefreshCoalescer coalescer = new RefreshCoalescer(0L, 0L, published::add);
+		coalescer.submit("app");
+		coalescer.submit("app");
+		assertEquals(Arrays.asList("app", "app"), published);
+	}
+}
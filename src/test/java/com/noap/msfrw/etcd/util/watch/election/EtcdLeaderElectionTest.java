@@ -0,0 +1,128 @@
+package com.noap.msfrw.etcd.util.watch.election;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Election;
+import io.etcd.jetcd.Lease;
+import io.etcd.jetcd.election.CampaignResponse;
+import io.etcd.jetcd.election.LeaderKey;
+import io.etcd.jetcd.election.ResignResponse;
+import io.etcd.jetcd.lease.LeaseGrantResponse;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import io.etcd.jetcd.lease.LeaseRevokeResponse;
+
+@ExtendWith(MockitoExtension.class)
+class EtcdLeaderElectionTest {
+
+	private static final long LEASE_ID = 7L;
+
+	Client client;
+	Election electionClient;
+	Lease leaseClient;
+
+	@BeforeEach
+	void init() {
+		client = Mockito.mock(Client.class);
+		electionClient = Mockito.mock(Election.class);
+		leaseClient = Mockito.mock(Lease.class);
+		Mockito.lenient().when(client.getElectionClient()).thenReturn(electionClient);
+		Mockito.when(client.getLeaseClient()).thenReturn(leaseClient);
+		Mockito.when(leaseClient.grant(anyLong())).thenReturn(CompletableFuture.completedFuture(new LeaseGrantResponse(
+				io.etcd.jetcd.api.LeaseGrantResponse.newBuilder().setID(LEASE_ID).setTTL(1L).build())));
+	}
+
+	private void campaignSucceeds() {
+		Mockito.when(electionClient.campaign(any(ByteSequence.class), eq(LEASE_ID), any(ByteSequence.class)))
+				.thenReturn(CompletableFuture.completedFuture(new CampaignResponse(io.etcd.jetcd.api.CampaignResponse
+						.newBuilder().setLeader(io.etcd.jetcd.api.LeaderKey.newBuilder().setLease(LEASE_ID).build()).build())));
+	}
+
+	private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	@DisplayName("Given a Candidate When Its Campaign Succeeds Then Lead Until Stopped and Resign With Its Lease Revoked")
+	void givenCandidate_whenCampaignSucceeds_thenLeadUntilStoppedAndResign() throws InterruptedException {
+		campaignSucceeds();
+		Mockito.when(leaseClient.keepAliveOnce(LEASE_ID)).thenReturn(CompletableFuture.completedFuture(
+				new LeaseKeepAliveResponse(io.etcd.jetcd.api.LeaseKeepAliveResponse.newBuilder().setTTL(1L).build())));
+		Mockito.when(electionClient.resign(any(LeaderKey.class)))
+				.thenReturn(CompletableFuture.completedFuture(Mockito.mock(ResignResponse.class)));
+		Mockito.when(leaseClient.revoke(LEASE_ID))
+				.thenReturn(CompletableFuture.completedFuture(Mockito.mock(LeaseRevokeResponse.class)));
+		AtomicInteger elected = new AtomicInteger();
+		EtcdLeaderElection election = new EtcdLeaderElection(() -> client, "election", "candidate", 1L);
+		election.setElectedListener(elected::incrementAndGet);
+
+		election.start();
+		waitUntil(election::isLeader);
+		assertTrue(election.isLeader());
+		Thread.sleep(700); // a keep alive is sent and the leadership is kept
+		assertTrue(election.isLeader());
+		election.stop();
+
+		assertFalse(election.isLeader());
+		assertEquals(1, elected.get());
+		Mockito.verify(leaseClient, Mockito.atLeastOnce()).keepAliveOnce(LEASE_ID);
+		Mockito.verify(electionClient).resign(any(LeaderKey.class));
+		Mockito.verify(leaseClient).revoke(LEASE_ID);
+	}
+
+	@Test
+	@DisplayName("Given a Leader When Its Lease Can Not Be Kept Alive Then Step Down and Campaign Again")
+	void givenLeader_whenLeaseCanNotBeKeptAlive_thenStepDownAndCampaignAgain() throws InterruptedException {
+		campaignSucceeds();
+		CompletableFuture<LeaseKeepAliveResponse> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("etcd is unreachable"));
+		Mockito.when(leaseClient.keepAliveOnce(LEASE_ID)).thenReturn(failed);
+		EtcdLeaderElection election = new EtcdLeaderElection(() -> client, "election", "candidate", 1L);
+
+		election.start();
+		waitUntil(election::isLeader);
+		assertTrue(election.isLeader());
+		waitUntil(() -> !election.isLeader());
+		assertFalse(election.isLeader());
+		Mockito.verify(leaseClient, Mockito.timeout(5000).atLeast(2)).grant(anyLong());
+		election.stop();
+	}
+
+	@Test
+	@DisplayName("Given a Candidate When Another Candidate Leads Then Wait in Line Without Leading")
+	void givenCandidate_whenAnotherCandidateLeads_thenWaitWithoutLeading() throws InterruptedException {
+		Mockito.when(electionClient.campaign(any(ByteSequence.class), eq(LEASE_ID), any(ByteSequence.class)))
+				.thenReturn(new CompletableFuture<>());
+		Mockito.when(leaseClient.keepAliveOnce(LEASE_ID)).thenReturn(CompletableFuture.completedFuture(
+				new LeaseKeepAliveResponse(io.etcd.jetcd.api.LeaseKeepAliveResponse.newBuilder().setTTL(1L).build())));
+		Mockito.when(leaseClient.revoke(LEASE_ID))
+				.thenReturn(CompletableFuture.completedFuture(Mockito.mock(LeaseRevokeResponse.class)));
+		EtcdLeaderElection election = new EtcdLeaderElection(() -> client, "election", "candidate", 1L);
+
+		election.start();
+		Mockito.verify(leaseClient, Mockito.timeout(5000)).keepAliveOnce(LEASE_ID);
+		assertFalse(election.isLeader());
+		election.stop();
+		Mockito.verify(electionClient, Mockito.never()).resign(any(LeaderKey.class));
+		Mockito.verify(leaseClient).revoke(LEASE_ID);
+	}
+}
@@ -0,0 +1,34 @@
+package com.noap.msfrw.etcd.util.watch.election;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FollowerRefreshBacklogTest {
+
+	@Test
+	@DisplayName("Given Destinations Held Back When Drained Then Return Each Once in the Order Last Held")
+	void givenDestinationsHeldBack_whenDrained_thenReturnEachOnceInOrder() {
+		FollowerRefreshBacklog backlog = new FollowerRefreshBacklog(60000L);
+		backlog.add("app1");
+		backlog.add("app2");
+		backlog.add("app1");
+
+		assertEquals(Arrays.asList("app2", "app1"), backlog.drain());
+		assertEquals(0, backlog.size());
+	}
+
+	@Test
+	@DisplayName("Given Destinations Held Back When Older Than the Retention Window Then Drop Them")
+	void givenDestinationsHeldBack_whenOlderThanRetention_thenDropThem() throws InterruptedException {
+		FollowerRefreshBacklog backlog = new FollowerRefreshBacklog(50L);
+		backlog.add("app1");
+		Thread.sleep(100);
+
+		assertEquals(Collections.emptyList(), backlog.drain());
+	}
+}
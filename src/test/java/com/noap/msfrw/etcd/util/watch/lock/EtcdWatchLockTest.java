@@ -1,11 +1,13 @@
 package com.noap.msfrw.etcd.util.watch.lock;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -131,4 +133,54 @@ class EtcdWatchLockTest {
 			Mockito.verify(runnable).runInsideLock();
 	    }	
 	}
+
+	@Test
+	@DisplayName("Given a Lock Lost to Another Node When the Same Lock is Requested Again Then Skip Without Calling Redis")
+	void givenLockLostToAnotherNode_whenSameLockRequestedAgain_thenSkipWithoutCallingRedis() throws InterruptedException {
+		InsideLockRunnable runnable = Mockito.mock(InsideLockRunnable.class);
+		RedissonClient mockClient = Mockito.mock(RedissonClient.class);
+		RedisConfigurationProperties rcp = Mockito.mock(RedisConfigurationProperties.class);
+		Config config = Mockito.mock(Config.class);
+		RLock lock = Mockito.mock(RLock.class);
+		SingleServerConfig ssc = Mockito.mock(SingleServerConfig.class);
+		Mockito.when(rcp.getDistributedLockEnabled()).thenReturn(Boolean.TRUE);
+		Mockito.when(rcp.getLockLeaseTime()).thenReturn(10L);
+		Mockito.when(rcp.getUrlsWithRedisPrefix()).thenReturn(Stream.of("").collect(Collectors.toList()));
+		Mockito.when(config.useSingleServer()).thenReturn(ssc);
+		Mockito.when(ssc.setAddress(anyString())).then(invocation -> null);
+		try (MockedStatic<Redisson> redissonUtil = Mockito.mockStatic(Redisson.class)) {
+			redissonUtil.when(Redisson::create).then(invocation -> null);
+			EtcdWatchLock ewl = new EtcdWatchLock(rcp, config);
+			ewl.setRedisson(mockClient);
+			Mockito.when(mockClient.getLock(anyString())).thenReturn(lock);
+			Mockito.when(lock.tryLock(anyLong(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+			ewl.processWithLock("revisions:5-7", runnable);
+			ewl.processWithLock("revisions:5-7", runnable);
+			Mockito.verify(lock, Mockito.times(1)).tryLock(anyLong(), anyLong(), any(TimeUnit.class));
+			Mockito.verify(runnable, Mockito.never()).runInsideLock();
+		}
+	}
+
+	@Test
+	@DisplayName("Given Lock Batching is Enabled When Process With Lock is Requested Asynchronously Then Run the Method on the Lock Thread")
+	void givenLockBatchingEnabled_whenProcessWithLockAsyncRequested_thenRunOnLockThread() throws Exception {
+		RedisConfigurationProperties rcp = Mockito.mock(RedisConfigurationProperties.class);
+		Config config = Mockito.mock(Config.class);
+		SingleServerConfig ssc = Mockito.mock(SingleServerConfig.class);
+		Mockito.when(rcp.getDistributedLockEnabled()).thenReturn(Boolean.FALSE);
+		Mockito.when(rcp.getLockBatchingEnabled()).thenReturn(Boolean.TRUE);
+		Mockito.when(rcp.getUrlsWithRedisPrefix()).thenReturn(Stream.of("").collect(Collectors.toList()));
+		Mockito.when(config.useSingleServer()).thenReturn(ssc);
+		Mockito.when(ssc.setAddress(anyString())).then(invocation -> null);
+		try (MockedStatic<Redisson> redissonUtil = Mockito.mockStatic(Redisson.class)) {
+			redissonUtil.when(Redisson::create).then(invocation -> null);
+			EtcdWatchLock ewl = new EtcdWatchLock(rcp, config);
+			AtomicReference<String> threadName = new AtomicReference<>();
+			ewl.processWithLockAsync("revisions:5-7", () -> threadName.set(Thread.currentThread().getName()))
+					.get(5, TimeUnit.SECONDS);
+			ewl.shutdown();
+			assertTrue(ewl.isBatchingEnabled());
+			assertEquals("redis-watch-lock", threadName.get());
+		}
+	}
 }
@@ -57,6 +57,13 @@ class RedisConfigurationPropertiesTest {
 		assertEquals(locklTime, 10l);
 	}
 	
+	@Test
+	@DisplayName("Test setter and getter for lockBatchingEnabled")
+	void whenGetLockBatchingEnabled_thenSuccess() {
+		rcp.setLockBatchingEnabled(Boolean.TRUE);
+		assertEquals(Boolean.TRUE, rcp.getLockBatchingEnabled());
+	}
+
 	@Test
 	@DisplayName("Test getter for URLs With Redis Prefix")
 	void whenGetUrlsWithPrefixCalled_thenSuccess() {